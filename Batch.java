@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+
+/** Runs many Gitlet commands in one process against a single copy of the
+ *  commit tree. Each line of a batch is one command, written as it would
+ *  be on the command line; double quotes group words containing spaces,
+ *  and a backslash inside quotes escapes the next character. Blank lines
+ *  and lines starting with # are ignored, and a line reading "checkpoint"
+ *  writes the commit tree to HEAD. The tree is otherwise written once,
+ *  after the last command.
+ *  @author ryangaray
+ */
+class Batch {
+
+    /** Runs every command read from IN on REPO, printing to OUT exactly
+     *  what the same commands would print if run one at a time. A command
+     *  that fails prints its error and the batch goes on with the next
+     *  one. An unexpected internal error ends the batch without writing
+     *  anything since the last checkpoint. */
+    static void run(Repository repo, BufferedReader in, PrintStream out)
+        throws IOException {
+        repo.beginBatch();
+        try {
+            for (String line = in.readLine(); line != null;
+                 line = in.readLine()) {
+                try {
+                    String[] args = split(line);
+                    if (args.length == 0 || args[0].startsWith("#")) {
+                        continue;
+                    } else if (args.length == 1
+                               && args[0].equals("checkpoint")) {
+                        repo.checkpoint();
+                    } else if (args[0].equals("batch")
+                               || args[0].equals("daemon")) {
+                        throw Utils.error("Cannot run %s in a batch.",
+                                          args[0]);
+                    } else {
+                        Main.dispatch(repo, out, args);
+                    }
+                } catch (GitletException excp) {
+                    out.println(excp.getMessage());
+                }
+            }
+            repo.checkpoint();
+        } finally {
+            repo.endBatch();
+        }
+    }
+
+    /** Returns the words of LINE. */
+    static String[] split(String line) {
+        ArrayList<String> words = new ArrayList<>();
+        StringBuilder word = null;
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i += 1) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"') {
+                    quoted = false;
+                } else if (c == '\\' && i + 1 < line.length()) {
+                    i += 1;
+                    word.append(line.charAt(i));
+                } else {
+                    word.append(c);
+                }
+            } else if (Character.isWhitespace(c)) {
+                if (word != null) {
+                    words.add(word.toString());
+                    word = null;
+                }
+            } else {
+                if (word == null) {
+                    word = new StringBuilder();
+                }
+                if (c == '"') {
+                    quoted = true;
+                } else {
+                    word.append(c);
+                }
+            }
+        }
+        if (quoted) {
+            throw Utils.error("Unterminated quote in batch: %s", line);
+        }
+        if (word != null) {
+            words.add(word.toString());
+        }
+        return words.toArray(new String[0]);
+    }
+}
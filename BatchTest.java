@@ -0,0 +1,101 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+/** Tests of batches of commands run on one Repository.
+ *  @author ryangaray
+ */
+public class BatchTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Runs on REPO a command that creates the branch NAME and then
+     *  fails, asserting that it fails. */
+    static void failAfterBranching(Repository repo, String name) {
+        try {
+            repo.update(tree -> {
+                tree.branch(name);
+                throw Utils.error("Failed.");
+            });
+            fail("command did not fail");
+        } catch (GitletException excp) {
+            assertEquals("Failed.", excp.getMessage());
+        }
+    }
+
+    @Test
+    public void failedCommandLeavesNoTrace() throws IOException {
+        Repository repo = _repos.create();
+        failAfterBranching(repo, "lost");
+        assertFalse(repo.branches().containsKey("lost"));
+    }
+
+    @Test
+    public void failedBatchedCommandLeavesNoTrace() throws IOException {
+        Repository repo = _repos.create();
+        repo.beginBatch();
+        failAfterBranching(repo, "lost");
+        assertFalse(repo.branches().containsKey("lost"));
+        repo.branch("kept");
+        failAfterBranching(repo, "lost");
+        assertTrue(repo.branches().containsKey("kept"));
+        assertFalse(repo.branches().containsKey("lost"));
+        repo.checkpoint();
+        repo.endBatch();
+        assertTrue(repo.branches().containsKey("kept"));
+        assertFalse(repo.branches().containsKey("lost"));
+    }
+
+    @Test
+    public void failedBatchedCommitIsUndone() throws IOException {
+        Repository repo = _repos.create();
+        repo.beginBatch();
+        CommitNode kept = PackTest.commitFile(repo, "a.txt", "a\n", "kept");
+        Utils.writeContents(repo.workingFile("b.txt"), "b\n");
+        repo.add("b.txt");
+        try {
+            repo.update(tree -> {
+                tree.commit("lost");
+                tree.branch("lost");
+                throw Utils.error("Failed.");
+            });
+            fail("command did not fail");
+        } catch (GitletException excp) {
+            assertEquals("Failed.", excp.getMessage());
+        }
+        assertEquals(kept.getID(), repo.branches().get("master"));
+        assertFalse(repo.branches().containsKey("lost"));
+        repo.branch("other");
+        repo.checkpoint();
+        repo.endBatch();
+        assertEquals(2, repo.log().size());
+        assertEquals(kept.getID(), repo.branches().get("other"));
+        int history = repo.read(tree ->
+            tree.getBranchHistory().get("master").size());
+        assertEquals(1, history);
+    }
+
+    @Test
+    public void endBatchDropsUncheckpointedUpdates() throws IOException {
+        Repository repo = _repos.create();
+        repo.beginBatch();
+        repo.branch("saved");
+        repo.checkpoint();
+        repo.branch("dropped");
+        assertTrue(repo.branches().containsKey("dropped"));
+        repo.endBatch();
+        assertTrue(repo.branches().containsKey("saved"));
+        assertFalse(repo.branches().containsKey("dropped"));
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
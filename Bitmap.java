@@ -0,0 +1,462 @@
+package gitlet;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/** A compressed set of non-negative ints in the style of a Roaring
+ *  bitmap. Values are grouped by their high 16 bits; each group is kept
+ *  in a container that is a sorted array of low halves while it holds at
+ *  most ARRAY_MAX values, and a 65536-bit bitmap otherwise. Unions,
+ *  intersections and differences work a container at a time.
+ *  @author ryangaray
+ */
+class Bitmap {
+
+    /** Largest number of values in an array container. */
+    static final int ARRAY_MAX = 4096;
+
+    /** An empty bitmap. */
+    Bitmap() {
+        _keys = new char[4];
+        _containers = new Container[4];
+    }
+
+    /** Returns a copy of this bitmap. */
+    Bitmap copy() {
+        Bitmap result = new Bitmap();
+        result._keys = Arrays.copyOf(_keys, Math.max(4, _size));
+        result._containers = new Container[result._keys.length];
+        for (int i = 0; i < _size; i += 1) {
+            result._containers[i] = _containers[i].copy();
+        }
+        result._size = _size;
+        return result;
+    }
+
+    /** Adds VALUE, which must not be negative. */
+    void add(int value) {
+        char key = (char) (value >>> 16);
+        int i = find(key);
+        if (i < 0) {
+            i = -i - 1;
+            insert(i, key, new ArrayContainer());
+        }
+        _containers[i] = _containers[i].add((char) value);
+    }
+
+    /** Returns iff VALUE is in this bitmap. */
+    boolean contains(int value) {
+        if (value < 0) {
+            return false;
+        }
+        int i = find((char) (value >>> 16));
+        return i >= 0 && _containers[i].contains((char) value);
+    }
+
+    /** Returns the number of values in this bitmap. */
+    int cardinality() {
+        int result = 0;
+        for (int i = 0; i < _size; i += 1) {
+            result += _containers[i].cardinality();
+        }
+        return result;
+    }
+
+    /** Returns iff this bitmap is empty. */
+    boolean isEmpty() {
+        return _size == 0;
+    }
+
+    /** Adds the values of OTHER to this bitmap. */
+    void or(Bitmap other) {
+        for (int j = 0; j < other._size; j += 1) {
+            int i = find(other._keys[j]);
+            if (i < 0) {
+                insert(-i - 1, other._keys[j], other._containers[j].copy());
+            } else {
+                _containers[i] = _containers[i].or(other._containers[j]);
+            }
+        }
+    }
+
+    /** Removes the values of OTHER from this bitmap. */
+    void andNot(Bitmap other) {
+        int n = 0;
+        for (int i = 0; i < _size; i += 1) {
+            int j = other.find(_keys[i]);
+            Container c = _containers[i];
+            if (j >= 0) {
+                c = c.andNot(other._containers[j]);
+            }
+            if (c.cardinality() > 0) {
+                _keys[n] = _keys[i];
+                _containers[n] = c;
+                n += 1;
+            }
+        }
+        Arrays.fill(_containers, n, _size, null);
+        _size = n;
+    }
+
+    /** Removes the values not in OTHER from this bitmap. */
+    void and(Bitmap other) {
+        int n = 0;
+        for (int i = 0; i < _size; i += 1) {
+            int j = other.find(_keys[i]);
+            if (j >= 0) {
+                Container c = _containers[i].and(other._containers[j]);
+                if (c.cardinality() > 0) {
+                    _keys[n] = _keys[i];
+                    _containers[n] = c;
+                    n += 1;
+                }
+            }
+        }
+        Arrays.fill(_containers, n, _size, null);
+        _size = n;
+    }
+
+    /** Calls ACTION on each value, in increasing order. */
+    void forEach(IntConsumer action) {
+        for (int i = 0; i < _size; i += 1) {
+            _containers[i].forEach(_keys[i] << 16, action);
+        }
+    }
+
+    /** Writes this bitmap to OUT. */
+    void write(DataOutput out) throws IOException {
+        out.writeInt(_size);
+        for (int i = 0; i < _size; i += 1) {
+            out.writeChar(_keys[i]);
+            _containers[i].write(out);
+        }
+    }
+
+    /** Returns a bitmap read from IN, as written by write. */
+    static Bitmap read(DataInput in) throws IOException {
+        Bitmap result = new Bitmap();
+        int size = in.readInt();
+        for (int i = 0; i < size; i += 1) {
+            char key = in.readChar();
+            int cardinality = in.readInt();
+            Container c;
+            if (cardinality <= ARRAY_MAX) {
+                char[] values = new char[cardinality];
+                for (int k = 0; k < cardinality; k += 1) {
+                    values[k] = in.readChar();
+                }
+                c = new ArrayContainer(values, cardinality);
+            } else {
+                long[] words = new long[BitmapContainer.WORDS];
+                for (int k = 0; k < words.length; k += 1) {
+                    words[k] = in.readLong();
+                }
+                c = new BitmapContainer(words, cardinality);
+            }
+            result.insert(result._size, key, c);
+        }
+        return result;
+    }
+
+    /** Returns the index of the container for KEY, or -(i + 1) if there
+     *  is none and it would go at index i. */
+    private int find(char key) {
+        return Arrays.binarySearch(_keys, 0, _size, key);
+    }
+
+    /** Inserts container C for KEY at index I. */
+    private void insert(int i, char key, Container c) {
+        if (_size == _keys.length) {
+            _keys = Arrays.copyOf(_keys, 2 * _size);
+            _containers = Arrays.copyOf(_containers, 2 * _size);
+        }
+        System.arraycopy(_keys, i, _keys, i + 1, _size - i);
+        System.arraycopy(_containers, i, _containers, i + 1, _size - i);
+        _keys[i] = key;
+        _containers[i] = c;
+        _size += 1;
+    }
+
+    /** A set of 16-bit values: the low halves of the values of one
+     *  container of a Bitmap. */
+    private abstract static class Container {
+        /** Returns this container with V added, which may be a new
+         *  container. */
+        abstract Container add(char v);
+
+        /** Returns iff V is in this container. */
+        abstract boolean contains(char v);
+
+        /** Returns the number of values. */
+        abstract int cardinality();
+
+        /** Returns a copy of this container. */
+        abstract Container copy();
+
+        /** Returns this container as a bitmap container. */
+        abstract BitmapContainer toBitmap();
+
+        /** Calls ACTION on HIGH plus each value, in increasing order. */
+        abstract void forEach(int high, IntConsumer action);
+
+        /** Writes the cardinality and values to OUT. */
+        abstract void write(DataOutput out) throws IOException;
+
+        /** Returns the union of this container and OTHER. */
+        Container or(Container other) {
+            BitmapContainer result = toBitmap().copy();
+            BitmapContainer that = other.toBitmap();
+            for (int k = 0; k < BitmapContainer.WORDS; k += 1) {
+                result._words[k] |= that._words[k];
+            }
+            return result.recount();
+        }
+
+        /** Returns the values of this container not in OTHER. */
+        Container andNot(Container other) {
+            BitmapContainer result = toBitmap().copy();
+            BitmapContainer that = other.toBitmap();
+            for (int k = 0; k < BitmapContainer.WORDS; k += 1) {
+                result._words[k] &= ~that._words[k];
+            }
+            return result.recount();
+        }
+
+        /** Returns the values of this container also in OTHER. */
+        Container and(Container other) {
+            BitmapContainer result = toBitmap().copy();
+            BitmapContainer that = other.toBitmap();
+            for (int k = 0; k < BitmapContainer.WORDS; k += 1) {
+                result._words[k] &= that._words[k];
+            }
+            return result.recount();
+        }
+    }
+
+    /** A container holding its values in a sorted array. */
+    private static final class ArrayContainer extends Container {
+        /** An empty container. */
+        ArrayContainer() {
+            this(new char[4], 0);
+        }
+
+        /** A container of the first SIZE values of VALUES, which are
+         *  sorted. */
+        ArrayContainer(char[] values, int size) {
+            _values = values;
+            _size = size;
+        }
+
+        @Override
+        Container add(char v) {
+            int i = Arrays.binarySearch(_values, 0, _size, v);
+            if (i >= 0) {
+                return this;
+            }
+            if (_size == ARRAY_MAX) {
+                return toBitmap().add(v);
+            }
+            i = -i - 1;
+            if (_size == _values.length) {
+                _values = Arrays.copyOf(_values,
+                                        Math.min(ARRAY_MAX, 2 * _size));
+            }
+            System.arraycopy(_values, i, _values, i + 1, _size - i);
+            _values[i] = v;
+            _size += 1;
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return Arrays.binarySearch(_values, 0, _size, v) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return _size;
+        }
+
+        @Override
+        Container copy() {
+            return new ArrayContainer(Arrays.copyOf(_values,
+                                                    Math.max(4, _size)),
+                                      _size);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            long[] words = new long[BitmapContainer.WORDS];
+            for (int i = 0; i < _size; i += 1) {
+                words[_values[i] >>> 6] |= 1L << _values[i];
+            }
+            return new BitmapContainer(words, _size);
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int i = 0; i < _size; i += 1) {
+                action.accept(high | _values[i]);
+            }
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeInt(_size);
+            for (int i = 0; i < _size; i += 1) {
+                out.writeChar(_values[i]);
+            }
+        }
+
+        @Override
+        Container or(Container other) {
+            if (!(other instanceof ArrayContainer)
+                || _size + other.cardinality() > ARRAY_MAX) {
+                return super.or(other);
+            }
+            ArrayContainer that = (ArrayContainer) other;
+            char[] result = new char[_size + that._size];
+            int i = 0;
+            int j = 0;
+            int n = 0;
+            while (i < _size || j < that._size) {
+                char v;
+                if (j == that._size
+                    || i < _size && _values[i] < that._values[j]) {
+                    v = _values[i++];
+                } else if (i == _size || that._values[j] < _values[i]) {
+                    v = that._values[j++];
+                } else {
+                    v = _values[i++];
+                    j += 1;
+                }
+                result[n++] = v;
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container andNot(Container other) {
+            char[] result = new char[_size];
+            int n = 0;
+            for (int i = 0; i < _size; i += 1) {
+                if (!other.contains(_values[i])) {
+                    result[n++] = _values[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        @Override
+        Container and(Container other) {
+            char[] result = new char[_size];
+            int n = 0;
+            for (int i = 0; i < _size; i += 1) {
+                if (other.contains(_values[i])) {
+                    result[n++] = _values[i];
+                }
+            }
+            return new ArrayContainer(result, n);
+        }
+
+        /** The values, sorted. */
+        private char[] _values;
+        /** Number of values. */
+        private int _size;
+    }
+
+    /** A container holding its values as bits. */
+    private static final class BitmapContainer extends Container {
+        /** Number of words of bits. */
+        static final int WORDS = 1 << 10;
+
+        /** A container whose bits are WORDS, of which CARDINALITY are
+         *  set. */
+        BitmapContainer(long[] words, int cardinality) {
+            _words = words;
+            _cardinality = cardinality;
+        }
+
+        @Override
+        Container add(char v) {
+            long bit = 1L << v;
+            if ((_words[v >>> 6] & bit) == 0) {
+                _words[v >>> 6] |= bit;
+                _cardinality += 1;
+            }
+            return this;
+        }
+
+        @Override
+        boolean contains(char v) {
+            return (_words[v >>> 6] & (1L << v)) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return _cardinality;
+        }
+
+        @Override
+        BitmapContainer copy() {
+            return new BitmapContainer(_words.clone(), _cardinality);
+        }
+
+        @Override
+        BitmapContainer toBitmap() {
+            return this;
+        }
+
+        @Override
+        void forEach(int high, IntConsumer action) {
+            for (int k = 0; k < WORDS; k += 1) {
+                long word = _words[k];
+                while (word != 0) {
+                    action.accept(high | k << 6
+                                  | Long.numberOfTrailingZeros(word));
+                    word &= word - 1;
+                }
+            }
+        }
+
+        @Override
+        void write(DataOutput out) throws IOException {
+            out.writeInt(_cardinality);
+            for (long word : _words) {
+                out.writeLong(word);
+            }
+        }
+
+        /** Recomputes the cardinality, returning an array container
+         *  instead if it is small enough. */
+        Container recount() {
+            int n = 0;
+            for (long word : _words) {
+                n += Long.bitCount(word);
+            }
+            _cardinality = n;
+            if (n > ARRAY_MAX) {
+                return this;
+            }
+            char[] values = new char[n];
+            int[] count = {0};
+            forEach(0, v -> values[count[0]++] = (char) v);
+            return new ArrayContainer(values, n);
+        }
+
+        /** The bits. */
+        private final long[] _words;
+        /** Number of bits set. */
+        private int _cardinality;
+    }
+
+    /** The high halves of the values in each container, sorted. */
+    private char[] _keys;
+    /** The containers, in order of key. */
+    private Container[] _containers;
+    /** Number of containers. */
+    private int _size;
+}
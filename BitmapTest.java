@@ -0,0 +1,167 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Random;
+
+/** Tests of Bitmap and of saving the CommitGraph that holds them.
+ *  @author ryangaray
+ */
+public class BitmapTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Returns a bitmap and, in MODEL, a BitSet of N random values below
+     *  LIMIT chosen by RANDOM. */
+    static Bitmap random(Random random, int n, int limit, BitSet model) {
+        Bitmap result = new Bitmap();
+        for (int i = 0; i < n; i += 1) {
+            int value = random.nextInt(limit);
+            result.add(value);
+            model.set(value);
+        }
+        return result;
+    }
+
+    /** Asserts that BITMAP holds exactly the values of MODEL, in
+     *  order. */
+    static void assertSame(BitSet model, Bitmap bitmap) {
+        assertEquals(model.cardinality(), bitmap.cardinality());
+        int[] next = { model.nextSetBit(0) };
+        bitmap.forEach(value -> {
+            assertEquals(next[0], value);
+            next[0] = model.nextSetBit(value + 1);
+        });
+        assertEquals(-1, next[0]);
+    }
+
+    @Test
+    public void containersChangeWithDensity() {
+        Bitmap bitmap = new Bitmap();
+        BitSet model = new BitSet();
+        for (int v = 0; v < 2 * Bitmap.ARRAY_MAX + 2; v += 2) {
+            bitmap.add(v);
+            model.set(v);
+        }
+        assertSame(model, bitmap);
+        assertTrue(bitmap.contains(2 * Bitmap.ARRAY_MAX));
+        assertFalse(bitmap.contains(1));
+        Bitmap most = new Bitmap();
+        for (int v = 0; v < 2 * Bitmap.ARRAY_MAX - 20; v += 1) {
+            most.add(v);
+            model.clear(v);
+        }
+        bitmap.andNot(most);
+        assertSame(model, bitmap);
+        bitmap.add(1 << 20);
+        model.set(1 << 20);
+        assertSame(model, bitmap);
+        assertFalse(bitmap.contains(-1));
+    }
+
+    @Test
+    public void setOperationsMatchBitSet() {
+        Random random = new Random(38);
+        for (int round = 0; round < 20; round += 1) {
+            int limit = 1 << (12 + random.nextInt(8));
+            BitSet a = new BitSet();
+            BitSet b = new BitSet();
+            Bitmap x = random(random, random.nextInt(20000), limit, a);
+            Bitmap y = random(random, random.nextInt(20000), limit, b);
+            Bitmap union = x.copy();
+            union.or(y);
+            BitSet expected = (BitSet) a.clone();
+            expected.or(b);
+            assertSame(expected, union);
+            Bitmap difference = x.copy();
+            difference.andNot(y);
+            expected = (BitSet) a.clone();
+            expected.andNot(b);
+            assertSame(expected, difference);
+            Bitmap intersection = x.copy();
+            intersection.and(y);
+            expected = (BitSet) a.clone();
+            expected.and(b);
+            assertSame(expected, intersection);
+            assertSame(a, x);
+        }
+    }
+
+    @Test
+    public void writeRoundTrip() throws IOException {
+        BitSet model = new BitSet();
+        Bitmap bitmap = random(new Random(1), 30000, 1 << 18, model);
+        bitmap.add(1 << 24);
+        model.set(1 << 24);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        bitmap.write(new DataOutputStream(bytes));
+        Bitmap copy = Bitmap.read(new DataInputStream(
+            new ByteArrayInputStream(bytes.toByteArray())));
+        assertSame(model, copy);
+    }
+
+    @Test
+    public void commitGraphFileRoundTrip() throws IOException {
+        Repository repo = _repos.create();
+        PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        repo.branch("other");
+        for (int i = 0; i < 100; i += 1) {
+            PackTest.commitFile(repo, "b.txt", i + "\n", "b" + i);
+        }
+        repo.checkoutBranch("other");
+        PackTest.commitFile(repo, "c.txt", "c\n", "c");
+        repo.checkoutBranch("master");
+        repo.merge("other");
+        CommitGraph graph = CommitGraphTest.graph(repo);
+        File file = new File(repo.root(), "graph");
+        graph.write(file);
+        CommitGraph copy = CommitGraph.read(repo, file);
+        assertEquals(graph.size(), copy.size());
+        for (int p = 0; p < graph.size(); p += 1) {
+            assertEquals(graph.id(p), copy.id(p));
+            assertArrayEquals(graph.parents(p), copy.parents(p));
+            BitSet model = new BitSet();
+            graph.reachable(p).forEach(model::set);
+            assertSame(model, copy.reachable(p));
+        }
+        int head = copy.position(repo.branches().get("master"));
+        assertEquals(graph.size(), copy.reachable(head).cardinality());
+        assertTrue(repo.isAncestor("other", "master"));
+        assertEquals(101, repo.countCommits("master", "other"));
+    }
+
+    @Test
+    public void reachabilityOfDroppedCommits() throws IOException {
+        Repository repo = _repos.create();
+        CommitNode base = PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        PackTest.commitFile(repo, "a.txt", "b\n", "b");
+        CommitNode dropped = PackTest.commitFile(repo, "a.txt", "c\n", "c");
+        repo.reset(base.getID());
+        assertTrue(repo.isAncestor("master", dropped.getID()));
+        assertFalse(repo.isAncestor(dropped.getID(), "master"));
+        assertEquals(2, repo.countCommits(dropped.getID(), "master"));
+        assertEquals(0, repo.countCommits("master", dropped.getID()));
+        try {
+            repo.countCommits(Utils.sha1("no such commit"), "master");
+            fail("unknown commit counted");
+        } catch (GitletException excp) {
+            assertEquals("No commit with that id exists.", excp.getMessage());
+        }
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
@@ -0,0 +1,149 @@
+package gitlet;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/** The result of the blame command: each line of a file in the head
+ *  commit with the commit that last changed it. Lines are traced back
+ *  along first parents through the CommitGraph. Where a commit has the
+ *  same blob for the file as its parent, the line numbers carry over
+ *  without the blob being read; elsewhere Diff matches the lines of the
+ *  two versions, and the lines the parent lacks belong to the commit.
+ *  The walk ends as soon as every line belongs to some commit.
+ *  @author ryangaray
+ */
+public class Blame {
+
+    /** Returns the blame of the file NAME in the head of TREE, in
+     *  REPO. */
+    static Blame compute(Repository repo, CommitTree tree, String name) {
+        CommitNode commit = tree.getHead();
+        String blob = blobOf(commit, name);
+        if (blob == null) {
+            throw Utils.error("File does not exist in that commit.");
+        }
+        Map<String, Integer> numbers = new HashMap<>();
+        String[] lines = lines(repo, blob);
+        Blame result = new Blame(lines);
+        int[] current = number(lines, numbers);
+        int[] pending = new int[lines.length];
+        for (int i = 0; i < pending.length; i += 1) {
+            pending[i] = i;
+        }
+        int remaining = lines.length;
+        CommitGraph graph = repo.graph(tree);
+        int position = graph.position(commit.getID());
+        while (remaining > 0) {
+            int parentPosition = position == CommitGraph.NONE
+                ? CommitGraph.NONE : graph.parents(position)[0];
+            CommitNode parent = parentPosition == CommitGraph.NONE ? null
+                : repo.readObject(repo.commitFile(
+                      graph.id(parentPosition).toString()), CommitNode.class);
+            String parentBlob = parent == null ? null : blobOf(parent, name);
+            if (parentBlob == null) {
+                for (int line : pending) {
+                    if (line >= 0) {
+                        result._origins[line] = commit;
+                    }
+                }
+                break;
+            }
+            if (!parentBlob.equals(blob)) {
+                int[] old = number(lines(repo, parentBlob), numbers);
+                int[] match = Diff.match(old, current);
+                int[] carried = new int[old.length];
+                Arrays.fill(carried, -1);
+                for (int i = 0; i < current.length; i += 1) {
+                    if (pending[i] < 0) {
+                        continue;
+                    } else if (match[i] >= 0) {
+                        carried[match[i]] = pending[i];
+                    } else {
+                        result._origins[pending[i]] = commit;
+                        remaining -= 1;
+                    }
+                }
+                current = old;
+                pending = carried;
+                blob = parentBlob;
+            }
+            commit = parent;
+            position = parentPosition;
+        }
+        return result;
+    }
+
+    /** A blame of LINES, whose origins are yet to be found. */
+    private Blame(String[] lines) {
+        _lines = lines;
+        _origins = new CommitNode[lines.length];
+    }
+
+    /** Returns the number of lines. */
+    public int size() {
+        return _lines.length;
+    }
+
+    /** Returns line I, numbered from 0. */
+    public String line(int i) {
+        return _lines[i];
+    }
+
+    /** Returns the commit that last changed line I. */
+    public CommitNode origin(int i) {
+        return _origins[i];
+    }
+
+    /** Returns the lines printed by the blame command: the abbreviated
+     *  ID and date of the commit, the line number and the line. */
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        String format = "%s (%s %" + Integer.toString(_lines.length).length()
+            + "d) %s%n";
+        for (int i = 0; i < _lines.length; i += 1) {
+            result.append(String.format(format,
+                _origins[i].getID().substring(0, SHORT_ID),
+                _origins[i].timestamp(), i + 1, _lines[i]));
+        }
+        return result.toString();
+    }
+
+    /** Returns the ID of the blob of the file NAME in COMMIT, or null. */
+    private static String blobOf(CommitNode commit, String name) {
+        return commit.getFiles() == null ? null : commit.getFiles().get(name);
+    }
+
+    /** Returns the lines of the blob ID in REPO, without their
+     *  newlines. */
+    private static String[] lines(Repository repo, String id) {
+        String contents = Blob.fromFileObj(repo, id).getContents(repo);
+        if (contents.isEmpty()) {
+            return new String[0];
+        }
+        if (contents.endsWith("\n")) {
+            contents = contents.substring(0, contents.length() - 1);
+        }
+        return contents.split("\n", -1);
+    }
+
+    /** Returns the number of each of LINES in NUMBERS, numbering lines not
+     *  seen before. */
+    private static int[] number(String[] lines, Map<String, Integer> numbers) {
+        int[] result = new int[lines.length];
+        for (int i = 0; i < lines.length; i += 1) {
+            Integer n = numbers.putIfAbsent(lines[i], numbers.size());
+            result[i] = n == null ? numbers.size() - 1 : n;
+        }
+        return result;
+    }
+
+    /** Number of hex digits of the IDs printed. */
+    private static final int SHORT_ID = 8;
+
+    /** The lines of the file. */
+    private final String[] _lines;
+    /** The commit that last changed each line. */
+    private final CommitNode[] _origins;
+}
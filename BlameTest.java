@@ -0,0 +1,109 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+/** Tests of Diff and Blame.
+ *  @author ryangaray
+ */
+public class BlameTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Returns the length of the longest common subsequence of A and B,
+     *  by dynamic programming. */
+    static int lcs(int[] a, int[] b) {
+        int[][] table = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i += 1) {
+            for (int j = 1; j <= b.length; j += 1) {
+                table[i][j] = a[i - 1] == b[j - 1] ? table[i - 1][j - 1] + 1
+                    : Math.max(table[i - 1][j], table[i][j - 1]);
+            }
+        }
+        return table[a.length][b.length];
+    }
+
+    /** Returns N random ints below RANGE from RANDOM. */
+    static int[] random(Random random, int n, int range) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i += 1) {
+            result[i] = random.nextInt(range);
+        }
+        return result;
+    }
+
+    @Test
+    public void matchIsALongestCommonSubsequence() {
+        Random random = new Random(45);
+        for (int round = 0; round < 500; round += 1) {
+            int[] a = random(random, random.nextInt(40), 1 + round % 6);
+            int[] b = random(random, random.nextInt(40), 1 + round % 6);
+            int[] match = Diff.match(a, b);
+            assertEquals(b.length, match.length);
+            int matched = 0;
+            int last = -1;
+            for (int j = 0; j < b.length; j += 1) {
+                if (match[j] >= 0) {
+                    assertTrue(match[j] > last);
+                    assertEquals(a[match[j]], b[j]);
+                    last = match[j];
+                    matched += 1;
+                }
+            }
+            assertEquals(lcs(a, b), matched);
+        }
+    }
+
+    @Test
+    public void matchKeepsCommonEnds() {
+        int[] a = {1, 2, 3, 4, 5};
+        int[] b = {1, 2, 9, 4, 5};
+        assertArrayEquals(new int[] {0, 1, -1, 3, 4}, Diff.match(a, b));
+        assertArrayEquals(new int[0], Diff.match(a, new int[0]));
+        assertArrayEquals(new int[] {-1, -1, -1, -1, -1},
+                          Diff.match(new int[0], a));
+    }
+
+    @Test
+    public void blameAttributesLines() throws IOException {
+        Repository repo = _repos.create();
+        CommitNode first = PackTest.commitFile(repo, "f.txt",
+                                               "one\ntwo\nthree\n", "1");
+        PackTest.commitFile(repo, "g.txt", "unrelated\n", "2");
+        CommitNode third = PackTest.commitFile(repo, "f.txt",
+                                               "one\n2\nthree\nfour\n", "3");
+        Blame blame = repo.blame("f.txt");
+        assertEquals(4, blame.size());
+        String[] lines = {"one", "2", "three", "four"};
+        CommitNode[] origins = {first, third, first, third};
+        for (int i = 0; i < 4; i += 1) {
+            assertEquals(lines[i], blame.line(i));
+            assertEquals(origins[i].getID(), blame.origin(i).getID());
+        }
+    }
+
+    @Test
+    public void blameKeepsShiftedLines() throws IOException {
+        Repository repo = _repos.create();
+        CommitNode first = PackTest.commitFile(repo, "f.txt", "a\nb\nc\n",
+                                               "1");
+        CommitNode second = PackTest.commitFile(repo, "f.txt",
+                                                "new\na\nb\nc\n", "2");
+        Blame blame = repo.blame("f.txt");
+        assertEquals(second.getID(), blame.origin(0).getID());
+        for (int i = 1; i < 4; i += 1) {
+            assertEquals(first.getID(), blame.origin(i).getID());
+        }
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
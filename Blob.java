@@ -1,28 +1,60 @@
 package gitlet;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /** A representation of a file within a commit.
  * @author ryangaray
  * */
 public class Blob implements Serializable {
 
-    /** Constructs a new Blob whose file is FILE. */
-    public Blob(File file) {
-        _file = file;
-        contents = Utils.readContentsAsString(file);
-        fileID = Utils.sha1((Object) Utils.readContents(file));
-        _ID = Utils.sha1((Object) Utils.serialize(this));
-        File idFile = Utils.join(Main.OBJECTS, _ID);
-        Utils.writeObject(idFile, this);
+    /** Constructs a new Blob of the file named NAME in the working
+     * directory of REPO and saves it to REPO's objects. */
+    public Blob(Repository repo, String name) {
+        _file = new File(name);
+        load(repo, repo.workingFile(name));
+        _ID = repo.hash(Utils.serialize(this));
+        File idFile = repo.objectFile(_ID);
+        repo.writeObject(idFile, this);
     }
 
-    /** Returns the Blob stored as a file in OBJECTS with name NAME. */
-    public static Blob fromFileObj(String name) {
+    /** A copy of BLOB for the file named NAME, saved to REPO's
+     *  objects. */
+    private Blob(Repository repo, Blob blob, String name) {
+        _file = new File(name);
+        fileID = blob.fileID;
+        contents = blob.contents;
+        _bytes = blob._bytes;
+        _chunks = blob._chunks;
+        _ID = repo.hash(Utils.serialize(this));
+        repo.writeObject(repo.objectFile(_ID), this);
+    }
+
+    /** Returns this blob as the file named NAME, saved to REPO's
+     *  objects. */
+    public Blob renamed(Repository repo, String name) {
+        return new Blob(repo, this, name);
+    }
+
+    /** Returns the Blob stored in REPO's objects with name NAME, fetching
+     *  it first if REPO is a partial clone that lacks it. */
+    public static Blob fromFileObj(Repository repo, String name) {
         Blob blob = null;
-        File file = new File(Main.OBJECTS, name);
+        File file = repo.objectFile(name);
+        if (!file.exists()) {
+            repo.prefetch(Collections.singletonList(name));
+        }
         if (file.exists()) {
-            blob = Utils.readObject(file, Blob.class);
+            blob = repo.readObject(file, Blob.class);
         }
         if (blob != null) {
             return blob;
@@ -31,16 +63,16 @@ public class Blob implements Serializable {
         }
     }
 
-    /** Stages this blob for addition. */
-    public void saveBlob() {
-        File file = new File(Main.STAGE, _file.getName());
-        Utils.writeObject(file, this);
+    /** Stages this blob for addition in REPO. */
+    public void saveBlob(Repository repo) {
+        File file = new File(repo.stageDir(), getName());
+        repo.writeObject(file, this);
     }
 
-    /** Stages this blob for removal. */
-    public void deleteBlob() {
-        File file = new File(Main.REMOVE, _file.getName());
-        Utils.writeObject(file, this);
+    /** Stages this blob for removal in REPO. */
+    public void deleteBlob(Repository repo) {
+        File file = new File(repo.removeDir(), getName());
+        repo.writeObject(file, this);
     }
 
     /** Returns the ID of this blob. */
@@ -48,46 +80,194 @@ public class Blob implements Serializable {
         return _ID;
     }
 
-    /** Returns the file this blob represents. */
+    /** Returns iff ID is the ID of this blob, just read, in REPO: the
+     *  hash of this blob as it was serialized before it had an ID. */
+    boolean hasID(Repository repo, String id) {
+        if (!id.equals(_ID)) {
+            return false;
+        }
+        _ID = null;
+        try {
+            return repo.hash(Utils.serialize(this)).equals(id);
+        } finally {
+            _ID = id;
+        }
+    }
+
+    /** Returns the ID of the contents of this blob, which unlike its own
+     *  ID does not depend on the name of its file. */
+    public String getFileID() {
+        return fileID;
+    }
+
+    /** Returns the file this blob represents, relative to the working
+     *  directory. */
     public File getFile() {
         return _file;
     }
 
-    /** Sets the file to FILE. */
-    public void setFile(File file) {
-        _file = file;
-        fileID = Utils.sha1((Object) Utils.readContents(file));
-        contents = Utils.readContentsAsString(file);
+    /** Returns the name of the file this blob represents. */
+    public String getName() {
+        return _file.getName();
+    }
+
+    /** Sets the file to the one named NAME in REPO. */
+    public void setFile(Repository repo, String name) {
+        _file = new File(name);
+        load(repo, repo.workingFile(name));
+    }
+
+    /** Sets the contents of this blob to those of FILE in REPO. Files of
+     *  CHUNKED_SIZE bytes or more are split into chunks, which are stored
+     *  in REPO as they are read, and hashed in the same pass. */
+    private void load(Repository repo, File file) {
+        if (file.length() < CHUNKED_SIZE) {
+            byte[] bytes = Utils.readContents(file);
+            _bytes = bytes;
+            contents = null;
+            fileID = repo.hash(bytes);
+            _chunks = null;
+            return;
+        }
+        MessageDigest whole = repo.hashAlgorithm().newDigest();
+        ArrayList<String> chunks = new ArrayList<>();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            Chunker chunker = new Chunker(in);
+            for (byte[] chunk = chunker.next(); chunk != null;
+                 chunk = chunker.next()) {
+                whole.update(chunk);
+                chunks.add(repo.writeChunk(chunk));
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read %s: %s", file.getName(),
+                              excp.getMessage());
+        }
+        contents = null;
+        _bytes = null;
+        fileID = ObjectId.wrap(whole.digest()).toString();
+        _chunks = chunks;
+    }
+
+    /** Returns iff this blob's contents are stored as chunks. */
+    public boolean isChunked() {
+        return _chunks != null;
+    }
+
+    /** Returns the IDs of the chunks of this blob's contents, in order,
+     *  or null if it is not chunked. */
+    public List<String> getChunks() {
+        return _chunks;
     }
 
-    /** Returns the contents of this Blob's file. */
-    public String getContents() {
+    /** Returns the contents of this Blob's file as text. A chunked blob,
+     *  being too large to hold as one String, is refused: write it with
+     *  writeTo instead. REPO is the repository holding this blob. */
+    public String getContents(Repository repo) {
+        if (_chunks != null) {
+            throw Utils.error("File %s is too large to read as text.",
+                              getName());
+        } else if (_bytes != null) {
+            return new String(_bytes, StandardCharsets.UTF_8);
+        }
         return contents;
     }
 
-    /** Returns iff this Blob's file is modified. */
-    public boolean modified() {
-        return !Utils.readContentsAsString(_file).equals(contents);
+    /** Returns the bytes of this unchunked blob's file: the bytes it was
+     *  read from, or for a blob stored as text by an older Gitlet, that
+     *  text in UTF-8. */
+    private byte[] bytes() {
+        if (_bytes != null) {
+            return _bytes;
+        }
+        return contents.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns iff this blob and OTHER have the same contents. */
+    public boolean sameContents(Blob other) {
+        return fileID.equals(other.fileID);
+    }
+
+    /** Returns iff this Blob's file in REPO is modified. The file is
+     *  hashed, memory-mapped if it is large, and never decoded. */
+    public boolean modified(Repository repo) {
+        Path file = repo.workingFile(getName()).toPath();
+        return !repo.hashAlgorithm().hash(file).equals(
+            ObjectId.fromHex(fileID));
+    }
+
+    /** Returns iff this blob's file in REPO is deleted. */
+    public boolean deleted(Repository repo) {
+        return !repo.workingFile(getName()).exists();
+    }
+
+    /** Delete's this Blob's file in REPO. */
+    public void destroyBlob(Repository repo) {
+        File file = repo.workingFile(getName());
+        if (file.exists()) {
+            file.delete();
+        }
+    }
+
+    /** Writes this Blob's contents to its file in REPO. */
+    public void toWorkingDir(Repository repo) {
+        Events.WorkingTreeWrite event = Events.WorkingTreeWrite.start(fileID);
+        event.finish(1, writeTo(repo, repo.workingFile(getName())));
     }
 
-    /** Returns iff this blob's file is deleted. */
-    public boolean deleted() {
-        return !_file.exists();
+    /** Writes this Blob's contents in REPO to FILE, streaming the chunks
+     *  of a chunked blob. Returns the number of bytes written. */
+    long writeTo(Repository repo, File file) {
+        if (_chunks == null) {
+            byte[] bytes = bytes();
+            Utils.writeContents(file, bytes);
+            return bytes.length;
+        }
+        try (OutputStream out = Files.newOutputStream(file.toPath())) {
+            return writeTo(repo, out);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s: %s", file.getName(),
+                              excp.getMessage());
+        }
     }
 
-    /** Delete's this Blob's file. */
-    public void destroyBlob() {
-        if (_file.exists()) {
-            _file.delete();
+    /** Writes this Blob's contents in REPO to OUT, a chunk at a time if
+     *  it is chunked. Returns the number of bytes written. */
+    long writeTo(Repository repo, OutputStream out) throws IOException {
+        if (_chunks == null) {
+            byte[] bytes = bytes();
+            out.write(bytes);
+            return bytes.length;
+        }
+        long length = 0;
+        for (String chunk : _chunks) {
+            byte[] data = Utils.readContents(repo.chunkFile(chunk));
+            out.write(data);
+            length += data.length;
         }
+        return length;
     }
 
+    /** Size in bytes of the smallest file stored in chunks. */
+    static final long CHUNKED_SIZE = 1 << 20;
+
+    /** Fixes the serialized form of blobs. */
+    private static final long serialVersionUID = -8239865304450608859L;
+
     /** The file of this blob. */
     private File _file;
     /** ID of the file. */
     private String fileID;
     /** The SHA-1 ID of this blob. */
     private String _ID;
-    /** The contents of this Blob's file. */
+    /** The contents of this Blob's file as text, kept only by blobs
+     *  written by older versions, which decoded every file as UTF-8. */
     private String contents;
+    /** The bytes of this Blob's file, or null if it is chunked or an
+     *  older blob holding contents instead. Kept as read, so that a file
+     *  that is not UTF-8 is written back unchanged and hashes to
+     *  fileID. */
+    private byte[] _bytes;
+    /** The IDs of the chunks of this Blob's file, or null if it is not
+     *  chunked. */
+    private ArrayList<String> _chunks;
 }
@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/** A single file carrying part of a repository's history to one that
+ *  cannot reach it: the branches it brings, the commits the receiver
+ *  must already have, and a Pack of everything else. It is written and
+ *  read in one streaming pass, one object at a time, straight from and
+ *  into the object store.
+ *
+ *  A bundle is an int MAGIC, an int VERSION and the name of the hash
+ *  algorithm, then an int count of refs, each a name and a commit ID,
+ *  an int count of prerequisite commit IDs, and the pack. Every ID read
+ *  is checked to be a full ID before it is used.
+ *  @author ryangaray
+ */
+class Bundle {
+
+    /** First int of a bundle. */
+    static final int MAGIC = 0x47424e44;
+    /** Format version. */
+    static final int VERSION = 1;
+
+    /** Writes to FILE a bundle from REPO, whose commit tree is TREE, of
+     *  the refs REFS, which map names to commit IDs, and the commits
+     *  reachable from them and not from the commit IDs HAVES. The bundle
+     *  is written to a temporary file beside FILE and renamed to FILE
+     *  only once complete, so a failure leaves no partial bundle. Returns
+     *  the number of objects and commits written. */
+    static int write(Repository repo, CommitTree tree,
+                     Map<String, String> refs, Collection<String> haves,
+                     File file) {
+        Pack pack = new Pack(repo, tree, refs.values(), haves);
+        Path temp;
+        try {
+            temp = Files.createTempFile(
+                file.getAbsoluteFile().getParentFile().toPath(),
+                file.getName(), ".tmp");
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write bundle: %s", excp.getMessage());
+        }
+        try {
+            int written = write(repo, refs, pack, temp);
+            Files.move(temp, file.toPath(),
+                       StandardCopyOption.REPLACE_EXISTING,
+                       StandardCopyOption.ATOMIC_MOVE);
+            return written;
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write bundle: %s", excp.getMessage());
+        } finally {
+            temp.toFile().delete();
+        }
+    }
+
+    /** Writes to FILE the bundle from REPO of the refs REFS and PACK, the
+     *  pack of what they bring. Returns the number of objects and commits
+     *  written. */
+    private static int write(Repository repo, Map<String, String> refs,
+                             Pack pack, Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(repo.hashAlgorithm().algorithmName());
+            out.writeInt(refs.size());
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                out.writeUTF(ref.getKey());
+                out.writeUTF(ref.getValue());
+            }
+            out.writeInt(pack.edge().size());
+            for (String id : pack.edge()) {
+                out.writeUTF(id);
+            }
+            return pack.write(out);
+        }
+    }
+
+    /** Adds the objects and commits of the bundle FILE to REPO. Returns
+     *  its refs, which map names to commit IDs. */
+    static Map<String, String> read(Repository repo, File file) {
+        if (!file.isFile()) {
+            throw Utils.error("Bundle does not exist.");
+        }
+        try (DataInputStream in = new DataInputStream(
+                 new BufferedInputStream(
+                     Files.newInputStream(file.toPath())))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw Utils.error("Not a bundle.");
+            }
+            if (!in.readUTF().equals(
+                    repo.hashAlgorithm().algorithmName())) {
+                throw Utils.error("The bundle uses a different hash "
+                                  + "algorithm.");
+            }
+            Map<String, String> refs = new LinkedHashMap<>();
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                refs.put(in.readUTF(), Pack.checkID(repo, in.readUTF()));
+            }
+            for (int n = in.readInt(); n > 0; n -= 1) {
+                String id = Pack.checkID(repo, in.readUTF());
+                if (!repo.commitFile(id).exists()) {
+                    throw Utils.error("The bundle needs commits this "
+                                      + "repository does not have.");
+                }
+            }
+            Pack.read(repo, in, false);
+            return refs;
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read bundle: %s", excp.getMessage());
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/** Splits a stream into chunks at content-defined boundaries, in the
+ *  manner of FastCDC: a gear hash rolls over the bytes, and a chunk ends
+ *  where enough of its bits are zero. Boundaries depend only on nearby
+ *  bytes, so inserting or deleting bytes in a file changes the chunks
+ *  around the edit and no others. Before the average size a stricter
+ *  mask is used, and after it a looser one, which keeps chunk sizes close
+ *  to the average.
+ *  @author ryangaray
+ */
+class Chunker {
+
+    /** Smallest chunk, except at the end of the stream. */
+    static final int MIN_SIZE = 16 << 10;
+    /** Typical chunk size. */
+    static final int AVERAGE_SIZE = 64 << 10;
+    /** Largest chunk. */
+    static final int MAX_SIZE = 256 << 10;
+
+    /** A chunker of the bytes of IN. */
+    Chunker(InputStream in) {
+        _in = in;
+        _buffer = new byte[2 * MAX_SIZE];
+    }
+
+    /** Returns the next chunk, or null at the end of the stream. */
+    byte[] next() throws IOException {
+        if (_end - _start < MAX_SIZE && !_eof) {
+            fill();
+        }
+        if (_start == _end) {
+            return null;
+        }
+        int length = cut(_buffer, _start, Math.min(_end - _start, MAX_SIZE));
+        byte[] chunk = Arrays.copyOfRange(_buffer, _start, _start + length);
+        _start += length;
+        return chunk;
+    }
+
+    /** Moves the unread bytes to the front of the buffer and reads until
+     *  it is full or the stream ends. */
+    private void fill() throws IOException {
+        System.arraycopy(_buffer, _start, _buffer, 0, _end - _start);
+        _end -= _start;
+        _start = 0;
+        while (_end < _buffer.length) {
+            int n = _in.read(_buffer, _end, _buffer.length - _end);
+            if (n < 0) {
+                _eof = true;
+                break;
+            }
+            _end += n;
+        }
+    }
+
+    /** Returns the length of the chunk starting at START in BYTES, of
+     *  which N bytes are available. */
+    static int cut(byte[] bytes, int start, int n) {
+        if (n <= MIN_SIZE) {
+            return n;
+        }
+        long hash = 0;
+        int i = MIN_SIZE;
+        int normal = Math.min(AVERAGE_SIZE, n);
+        for (; i < normal; i += 1) {
+            hash = (hash << 1) + GEAR[bytes[start + i] & 0xff];
+            if ((hash & MASK_SMALL) == 0) {
+                return i + 1;
+            }
+        }
+        for (; i < n; i += 1) {
+            hash = (hash << 1) + GEAR[bytes[start + i] & 0xff];
+            if ((hash & MASK_LARGE) == 0) {
+                return i + 1;
+            }
+        }
+        return n;
+    }
+
+    /** Mask applied before the average size: 18 bits, so boundaries are
+     *  rarer than one per AVERAGE_SIZE bytes. The high bits of the gear
+     *  hash are used because they depend on the most bytes. */
+    private static final long MASK_SMALL = ((1L << 18) - 1) << 40;
+    /** Mask applied after the average size: 14 bits. */
+    private static final long MASK_LARGE = ((1L << 14) - 1) << 40;
+    /** A fixed random value for each byte. The seed must never change, or
+     *  files would be chunked differently than before. */
+    private static final long[] GEAR = new long[256];
+
+    static {
+        Random random = new Random(0x6769746c6574L);
+        for (int b = 0; b < GEAR.length; b += 1) {
+            GEAR[b] = random.nextLong();
+        }
+    }
+
+    /** The stream split. */
+    private final InputStream _in;
+    /** Bytes read and not yet returned lie between _start and _end. */
+    private final byte[] _buffer;
+    /** Start of the unread bytes in _buffer. */
+    private int _start;
+    /** End of the unread bytes in _buffer. */
+    private int _end;
+    /** True once the stream has ended. */
+    private boolean _eof;
+}
@@ -0,0 +1,192 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+/** Tests of content-defined chunking and chunked blobs.
+ *  @author ryangaray
+ */
+public class ChunkerTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Returns N pseudo-random bytes from SEED. */
+    static byte[] random(int n, long seed) {
+        byte[] result = new byte[n];
+        new Random(seed).nextBytes(result);
+        return result;
+    }
+
+    /** Returns the chunks of DATA. */
+    static List<byte[]> chunks(byte[] data) throws IOException {
+        Chunker chunker = new Chunker(new ByteArrayInputStream(data));
+        List<byte[]> result = new ArrayList<>();
+        for (byte[] chunk = chunker.next(); chunk != null;
+             chunk = chunker.next()) {
+            result.add(chunk);
+        }
+        return result;
+    }
+
+    /** Returns the SHA-1 IDs of CHUNKS. */
+    static Set<String> ids(List<byte[]> chunks) {
+        Set<String> result = new HashSet<>();
+        for (byte[] chunk : chunks) {
+            result.add(Utils.sha1(chunk));
+        }
+        return result;
+    }
+
+    @Test
+    public void smallBlobsKeepTheirBytes() throws IOException {
+        Repository repo = _repos.create();
+        byte[] data = random(1000, 43);
+        File file = repo.workingFile("binary");
+        Utils.writeContents(file, data);
+        repo.add("binary");
+        repo.commit("binary");
+        Utils.writeContents(file, "changed");
+        repo.checkoutFile("binary");
+        assertArrayEquals(data, Utils.readContents(file));
+        assertTrue(repo.status().getModified().isEmpty());
+    }
+
+    @Test
+    public void chunkSizesAreBounded() throws IOException {
+        byte[] data = random(4 << 20, 1);
+        List<byte[]> chunks = chunks(data);
+        int total = 0;
+        for (int i = 0; i < chunks.size(); i += 1) {
+            int size = chunks.get(i).length;
+            assertTrue(size <= Chunker.MAX_SIZE);
+            if (i < chunks.size() - 1) {
+                assertTrue(size >= Chunker.MIN_SIZE);
+            }
+            total += size;
+        }
+        assertEquals(data.length, total);
+        assertTrue(chunks.size() > 8);
+    }
+
+    @Test
+    public void boundariesSurviveInsertion() throws IOException {
+        byte[] data = random(4 << 20, 2);
+        int at = data.length / 2;
+        byte[] edited = new byte[data.length + 100];
+        System.arraycopy(data, 0, edited, 0, at);
+        System.arraycopy(random(100, 3), 0, edited, at, 100);
+        System.arraycopy(data, at, edited, at + 100, data.length - at);
+        Set<String> before = ids(chunks(data));
+        Set<String> after = ids(chunks(edited));
+        Set<String> changed = new HashSet<>(after);
+        changed.removeAll(before);
+        assertTrue(changed.size() <= 3);
+    }
+
+    @Test
+    public void chunkedBlobsRoundTrip() throws IOException {
+        Repository repo = _repos.create();
+        byte[] data = random((int) Blob.CHUNKED_SIZE + 12345, 4);
+        Utils.writeContents(repo.workingFile("big.bin"), data);
+        repo.add("big.bin");
+        CommitNode first = repo.commit("big");
+        Blob blob = repo.readBlob(first.getFiles().get("big.bin"));
+        assertTrue(blob.isChunked());
+        try {
+            blob.getContents(repo);
+            fail("chunked blob read as text");
+        } catch (GitletException excp) {
+            assertEquals("File big.bin is too large to read as text.",
+                         excp.getMessage());
+        }
+        Utils.writeContents(repo.workingFile("big.bin"), "small\n");
+        repo.add("big.bin");
+        repo.commit("small");
+        repo.checkoutFile(first.getID(), "big.bin");
+        assertArrayEquals(data,
+                          Utils.readContents(repo.workingFile("big.bin")));
+    }
+
+    @Test
+    public void gcDropsCorruptChunks() throws IOException {
+        Repository repo = _repos.create();
+        byte[] data = random((int) Blob.CHUNKED_SIZE + 1, 8);
+        File file = repo.workingFile("big.bin");
+        Utils.writeContents(file, data);
+        repo.add("big.bin");
+        CommitNode commit = repo.commit("big");
+        String chunk = repo.readBlob(commit.getFiles().get("big.bin"))
+            .getChunks().get(0);
+        File chunkFile = repo.chunkFile(chunk);
+        byte[] torn = new byte[(int) chunkFile.length()];
+        Utils.writeContents(chunkFile, torn);
+        repo.add("big.bin");
+        assertArrayEquals(torn, Utils.readContents(chunkFile));
+        assertEquals(1, repo.gc(GarbageCollector.GRACE).deletedFiles());
+        assertFalse(chunkFile.exists());
+        Utils.writeContents(file, data, "more\n");
+        repo.add("big.bin");
+        assertTrue(chunkFile.exists());
+        Utils.writeContents(file, "small\n");
+        repo.checkoutFile(commit.getID(), "big.bin");
+        assertArrayEquals(data, Utils.readContents(file));
+    }
+
+    @Test
+    public void conflictsStreamChunkedBlobs() throws IOException {
+        Repository repo = _repos.create();
+        byte[] base = random((int) Blob.CHUNKED_SIZE + 1, 5);
+        byte[] ours = random((int) Blob.CHUNKED_SIZE + 2, 6);
+        byte[] theirs = random((int) Blob.CHUNKED_SIZE + 3, 7);
+        Utils.writeContents(repo.workingFile("big.bin"), base);
+        repo.add("big.bin");
+        repo.commit("base");
+        repo.branch("other");
+        Utils.writeContents(repo.workingFile("big.bin"), ours);
+        repo.add("big.bin");
+        repo.commit("ours");
+        repo.checkoutBranch("other");
+        Utils.writeContents(repo.workingFile("big.bin"), theirs);
+        repo.add("big.bin");
+        repo.commit("theirs");
+        repo.checkoutBranch("master");
+        assertEquals(MergeResult.CONFLICTED, repo.merge("other"));
+        byte[] expected = concat("<<<<<<< HEAD\n".getBytes(), ours,
+                                 "=======\n".getBytes(), theirs,
+                                 ">>>>>>>\n".getBytes());
+        assertArrayEquals(expected,
+                          Utils.readContents(repo.workingFile("big.bin")));
+    }
+
+    /** Returns PARTS joined. */
+    static byte[] concat(byte[]... parts) {
+        int length = 0;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        byte[] result = new byte[length];
+        int at = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, result, at, part.length);
+            at += part.length;
+        }
+        return result;
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
@@ -0,0 +1,459 @@
+package gitlet;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** The commit graph of a repository, reduced to ints: every commit has a
+ *  position, parents come before their children, and a commit's parents
+ *  are kept as positions, so the graph can be walked without reading a
+ *  single CommitNode. Some commits also have a Bitmap of the positions
+ *  of every commit reachable from them; the commits reachable from any
+ *  other commit are found by walking back to the nearest of those.
+ *  Every commit added also gets a Bloom filter of the names of the files
+ *  it changed from its first parent, so that path-limited history can
+ *  skip most commits without reading them.
+ *
+ *  The graph is stored in .gitlet/commit-graph as a header followed by
+ *  chunks, each an int tag, an int length and that many bytes, so that
+ *  readers skip chunks they do not know. A file written before the
+ *  filters existed is not read, so the graph is rebuilt with them.
+ *  @author ryangaray
+ */
+class CommitGraph {
+
+    /** First int of a commit-graph file. */
+    static final int MAGIC = 0x474c4347;
+    /** Format version. */
+    static final int VERSION = 1;
+    /** Chunk of commit IDs. */
+    static final int IDS = 0x4f494453;
+    /** Chunk of parent positions. */
+    static final int PARENTS = 0x50524e54;
+    /** Chunk of reachability bitmaps. */
+    static final int BITMAPS = 0x424d4150;
+    /** Chunk of changed-path Bloom filters. */
+    static final int BLOOMS = 0x424c4f4d;
+    /** Position meaning "no parent". */
+    static final int NONE = -1;
+    /** Fewest positions between commits selected for bitmaps. */
+    static final int MIN_SPACING = 64;
+    /** Greatest number of evenly spaced commits with bitmaps. */
+    static final int SELECTED = 256;
+    /** Bits of a Bloom filter per changed path. */
+    static final int BITS_PER_PATH = 10;
+    /** Number of bits set in a Bloom filter for each path. */
+    static final int HASHES = 7;
+    /** Most changed paths a commit's filter records; a commit that
+     *  changes more gets a filter that matches every path. */
+    static final int MAX_PATHS = 512;
+
+    /** An empty graph of the commits of REPO. */
+    CommitGraph(Repository repo) {
+        _repo = repo;
+        _ids = new ObjectId[16];
+        _parents = new int[32];
+        _filters = new byte[16][];
+    }
+
+    /** Returns the graph of REPO stored in FILE, or an empty graph if
+     *  there is none or it cannot be read. */
+    static CommitGraph read(Repository repo, File file) {
+        CommitGraph graph = new CommitGraph(repo);
+        if (!file.exists()) {
+            return graph;
+        }
+        try {
+            graph.read(Utils.readContents(file));
+        } catch (IOException | IllegalArgumentException excp) {
+            return new CommitGraph(repo);
+        }
+        return graph;
+    }
+
+    /** Returns the number of commits. */
+    synchronized int size() {
+        return _size;
+    }
+
+    /** Returns the position of the commit whose ID is ID, or NONE. */
+    synchronized int position(String id) {
+        return _positions.get(ObjectId.fromHex(id), NONE);
+    }
+
+    /** Returns the ID of the commit at POSITION. */
+    synchronized ObjectId id(int position) {
+        return _ids[position];
+    }
+
+    /** Returns the positions of the parents of the commit at POSITION,
+     *  NONE for a missing parent. */
+    synchronized int[] parents(int position) {
+        return new int[] {
+            _parents[2 * position], _parents[2 * position + 1] };
+    }
+
+    /** Returns false if the commit at POSITION certainly did not change
+     *  the file NAME from its first parent, and true if it may have. */
+    synchronized boolean mayHaveChanged(int position, String name) {
+        byte[] filter = _filters[position];
+        if (filter.length == 0) {
+            return true;
+        }
+        long hash = hash(name);
+        for (int i = 0; i < HASHES; i += 1) {
+            int bit = bit(hash, i, 8 * filter.length);
+            if ((filter[bit >>> 3] & (1 << (bit & 7))) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Adds every commit reachable from the commits whose IDs are ROOTS
+     *  and is not yet in this graph, skipping IDs of commits that do not
+     *  exist, then computes the bitmaps of newly selected commits.
+     *  Returns iff anything was added. */
+    synchronized boolean update(Collection<String> roots) {
+        int size = _size;
+        for (String root : roots) {
+            if (root != null) {
+                add(root);
+            }
+        }
+        if (_size == size) {
+            return false;
+        }
+        select(size, roots);
+        return true;
+    }
+
+    /** Returns the positions of the commits reachable from the commit at
+     *  POSITION, including itself. The result may be modified. */
+    synchronized Bitmap reachable(int position) {
+        Bitmap result = new Bitmap();
+        Deque<Integer> stack = new ArrayDeque<>();
+        stack.push(position);
+        while (!stack.isEmpty()) {
+            int p = stack.pop();
+            if (p == NONE || result.contains(p)) {
+                continue;
+            }
+            Bitmap stored = _bitmaps.get(p);
+            if (stored != null) {
+                result.or(stored);
+                continue;
+            }
+            result.add(p);
+            stack.push(_parents[2 * p + 1]);
+            stack.push(_parents[2 * p]);
+        }
+        return result;
+    }
+
+    /** Returns the positions of the commits reachable from any of the
+     *  commits whose IDs are IDS. IDs not in the graph are ignored. */
+    synchronized Bitmap reachable(Collection<String> ids) {
+        Bitmap result = new Bitmap();
+        for (String id : ids) {
+            int p = id == null ? NONE : position(id);
+            if (p != NONE && !result.contains(p)) {
+                result.or(reachable(p));
+            }
+        }
+        return result;
+    }
+
+    /** Writes this graph to FILE. */
+    synchronized void write(File file) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(_repo.hashAlgorithm().length());
+            ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(chunk);
+            data.writeInt(_size);
+            for (int p = 0; p < _size; p += 1) {
+                data.write(_ids[p].toByteArray());
+            }
+            writeChunk(out, IDS, chunk);
+            for (int p = 0; p < 2 * _size; p += 1) {
+                data.writeInt(_parents[p]);
+            }
+            writeChunk(out, PARENTS, chunk);
+            data.writeInt(_bitmaps.size());
+            for (Map.Entry<Integer, Bitmap> entry : _bitmaps.entrySet()) {
+                data.writeInt(entry.getKey());
+                entry.getValue().write(data);
+            }
+            writeChunk(out, BITMAPS, chunk);
+            data.writeInt(_size);
+            for (int p = 0; p < _size; p += 1) {
+                data.writeInt(_filters[p].length);
+                data.write(_filters[p]);
+            }
+            writeChunk(out, BLOOMS, chunk);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s: %s", file.getName(),
+                              excp.getMessage());
+        }
+        Utils.writeAtomically(file, _repo.tmpDir(), bytes.toByteArray(),
+                              false);
+    }
+
+    /** Writes the contents of CHUNK to OUT as a chunk tagged TAG, and
+     *  empties CHUNK. */
+    private static void writeChunk(DataOutputStream out, int tag,
+                                   ByteArrayOutputStream chunk)
+        throws IOException {
+        out.writeInt(tag);
+        out.writeInt(chunk.size());
+        chunk.writeTo(out);
+        chunk.reset();
+    }
+
+    /** Reads the graph in CONTENTS, the contents of a commit-graph
+     *  file. */
+    private void read(byte[] contents) throws IOException {
+        DataInputStream in =
+            new DataInputStream(new ByteArrayInputStream(contents));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION
+            || in.readInt() != _repo.hashAlgorithm().length()) {
+            throw new IOException("not a commit graph");
+        }
+        int length = _repo.hashAlgorithm().length();
+        boolean filtered = false;
+        while (in.available() > 0) {
+            int tag = in.readInt();
+            byte[] chunk = new byte[in.readInt()];
+            in.readFully(chunk);
+            DataInputStream data =
+                new DataInputStream(new ByteArrayInputStream(chunk));
+            if (tag == IDS) {
+                int size = data.readInt();
+                grow(size);
+                byte[] id = new byte[length];
+                for (int p = 0; p < size; p += 1) {
+                    data.readFully(id);
+                    _ids[p] = ObjectId.wrap(id.clone());
+                    _positions.put(_ids[p], p);
+                }
+                _size = size;
+            } else if (tag == PARENTS) {
+                for (int p = 0; p < 2 * _size; p += 1) {
+                    _parents[p] = data.readInt();
+                }
+            } else if (tag == BITMAPS) {
+                int n = data.readInt();
+                for (int i = 0; i < n; i += 1) {
+                    int p = data.readInt();
+                    _bitmaps.put(p, Bitmap.read(data));
+                }
+            } else if (tag == BLOOMS) {
+                int size = data.readInt();
+                grow(size);
+                for (int p = 0; p < size; p += 1) {
+                    _filters[p] = new byte[data.readInt()];
+                    data.readFully(_filters[p]);
+                }
+                filtered = true;
+            }
+        }
+        if (!filtered) {
+            throw new IOException("no changed-path filters");
+        }
+    }
+
+    /** Adds the commit whose ID is ROOT and its ancestors, parents before
+     *  children, if they are not already in the graph. */
+    private void add(String root) {
+        Deque<CommitNode> stack = new ArrayDeque<>();
+        CommitNode previous = null;
+        CommitNode first = readCommit(root);
+        if (first != null) {
+            stack.push(first);
+        }
+        while (!stack.isEmpty()) {
+            CommitNode node = stack.peek();
+            if (_positions.containsKey(ObjectId.fromHex(node.getID()))) {
+                stack.pop();
+                continue;
+            }
+            CommitNode missing = missingParent(node.getParent());
+            if (missing == null && node.isMerged()) {
+                missing = missingParent(node.secondParent());
+            }
+            if (missing != null) {
+                stack.push(missing);
+                continue;
+            }
+            stack.pop();
+            String parentID = node.getParent();
+            CommitNode parent = previous != null && parentID != null
+                && parentID.equals(previous.getID()) ? previous
+                : parentID == null ? null : readCommit(parentID);
+            append(node, parent);
+            previous = node;
+        }
+    }
+
+    /** Returns the commit whose ID is ID if it exists and is not in the
+     *  graph, and otherwise null. */
+    private CommitNode missingParent(String id) {
+        if (id == null || _positions.containsKey(ObjectId.fromHex(id))) {
+            return null;
+        }
+        return readCommit(id);
+    }
+
+    /** Returns the commit whose ID is ID, or null if there is none. */
+    private CommitNode readCommit(String id) {
+        File file = _repo.commitFile(id);
+        if (!file.exists()) {
+            return null;
+        }
+        return _repo.readObject(file, CommitNode.class);
+    }
+
+    /** Appends NODE, whose parents are in the graph or missing, and
+     *  whose first parent is PARENT, or null if missing. */
+    private void append(CommitNode node, CommitNode parent) {
+        grow(_size + 1);
+        ObjectId id = ObjectId.fromHex(node.getID());
+        _ids[_size] = id;
+        _parents[2 * _size] = parentPosition(node.getParent());
+        _parents[2 * _size + 1] = node.isMerged()
+            ? parentPosition(node.secondParent()) : NONE;
+        _filters[_size] = filter(node, parent);
+        _positions.put(id, _size);
+        _size += 1;
+    }
+
+    /** Returns the Bloom filter of the names of the files NODE changed
+     *  from its first parent PARENT, which is null if NODE has none. */
+    private static byte[] filter(CommitNode node, CommitNode parent) {
+        Map<String, String> files = filesOf(node);
+        Map<String, String> parentFiles = filesOf(parent);
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> entry : files.entrySet()) {
+            if (!entry.getValue().equals(parentFiles.get(entry.getKey()))) {
+                changed.add(entry.getKey());
+            }
+        }
+        for (String name : parentFiles.keySet()) {
+            if (!files.containsKey(name)) {
+                changed.add(name);
+            }
+        }
+        if (changed.size() > MAX_PATHS) {
+            return new byte[] { -1 };
+        }
+        byte[] filter =
+            new byte[Math.max(1, (changed.size() * BITS_PER_PATH + 7) / 8)];
+        for (String name : changed) {
+            long hash = hash(name);
+            for (int i = 0; i < HASHES; i += 1) {
+                int bit = bit(hash, i, 8 * filter.length);
+                filter[bit >>> 3] |= 1 << (bit & 7);
+            }
+        }
+        return filter;
+    }
+
+    /** Returns the Ith bit of BITS set for a path whose hash is HASH,
+     *  by double hashing. */
+    private static int bit(long hash, int i, int bits) {
+        return Integer.remainderUnsigned((int) hash + i * (int) (hash >>> 32),
+                                         bits);
+    }
+
+    /** Returns the files of NODE, which may be null. */
+    private static Map<String, String> filesOf(CommitNode node) {
+        if (node == null || node.getFiles() == null) {
+            return Collections.emptyMap();
+        }
+        return node.getFiles();
+    }
+
+    /** Returns the 64-bit hash of NAME used by the Bloom filters: FNV-1a
+     *  over its UTF-8 bytes, then mixed as in MurmurHash3. Stored filters
+     *  depend on it, so it must never change. */
+    private static long hash(String name) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : name.getBytes(StandardCharsets.UTF_8)) {
+            h = (h ^ (b & 0xff)) * 0x100000001b3L;
+        }
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** Returns the position of the parent whose ID is ID, or NONE. */
+    private int parentPosition(String id) {
+        return id == null ? NONE : _positions.get(ObjectId.fromHex(id), NONE);
+    }
+
+    /** Selects commits for bitmaps among those at positions FROM and
+     *  after, namely ROOTS and evenly spaced commits, and computes their
+     *  bitmaps in order of position. */
+    private void select(int from, Collection<String> roots) {
+        int spacing = Math.max(MIN_SPACING, _size / SELECTED);
+        TreeSet<Integer> selected = new TreeSet<>();
+        for (int p = from; p < _size; p += 1) {
+            if (p % spacing == 0) {
+                selected.add(p);
+            }
+        }
+        for (String root : roots) {
+            int p = root == null ? NONE : position(root);
+            if (p >= from) {
+                selected.add(p);
+            }
+        }
+        for (int p : selected) {
+            _bitmaps.put(p, reachable(p));
+        }
+    }
+
+    /** Makes room for N commits. */
+    private void grow(int n) {
+        if (n > _ids.length) {
+            int capacity = Math.max(n, 2 * _ids.length);
+            _ids = Arrays.copyOf(_ids, capacity);
+            _parents = Arrays.copyOf(_parents, 2 * capacity);
+            _filters = Arrays.copyOf(_filters, capacity);
+        }
+    }
+
+    /** The repository. */
+    private final Repository _repo;
+    /** The ID of the commit at each position. */
+    private ObjectId[] _ids;
+    /** The positions of the two parents of the commit at each position,
+     *  at 2 * position and 2 * position + 1. */
+    private int[] _parents;
+    /** The changed-path Bloom filter of the commit at each position;
+     *  empty if unknown. */
+    private byte[][] _filters;
+    /** Number of commits. */
+    private int _size;
+    /** The position of each commit. */
+    private final ObjectIdIntMap _positions = new ObjectIdIntMap();
+    /** The reachability bitmaps of selected commits, by position. */
+    private final TreeMap<Integer, Bitmap> _bitmaps = new TreeMap<>();
+}
@@ -0,0 +1,76 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests of the CommitGraph and its changed-path Bloom filters.
+ *  @author ryangaray
+ */
+public class CommitGraphTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Returns the commit graph of REPO, brought up to date. */
+    static CommitGraph graph(Repository repo) {
+        return repo.read(repo::graph);
+    }
+
+    @Test
+    public void filtersRecordChangedPaths() throws IOException {
+        Repository repo = _repos.create();
+        CommitNode a = PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        CommitNode b = PackTest.commitFile(repo, "b.txt", "b\n", "b");
+        CommitGraph graph = graph(repo);
+        int pa = graph.position(a.getID());
+        int pb = graph.position(b.getID());
+        assertTrue(graph.mayHaveChanged(pa, "a.txt"));
+        assertTrue(graph.mayHaveChanged(pb, "b.txt"));
+        int excluded = 0;
+        for (int i = 0; i < 100; i += 1) {
+            if (!graph.mayHaveChanged(pa, "other" + i + ".txt")) {
+                excluded += 1;
+            }
+        }
+        assertTrue(excluded > 90);
+    }
+
+    @Test
+    public void pathLimitedLog() throws IOException {
+        Repository repo = _repos.create();
+        CommitNode first = PackTest.commitFile(repo, "a.txt", "1\n", "1");
+        PackTest.commitFile(repo, "b.txt", "b\n", "b");
+        CommitNode second = PackTest.commitFile(repo, "a.txt", "2\n", "2");
+        List<String> ids = new ArrayList<>();
+        for (CommitNode commit : repo.log("a.txt")) {
+            ids.add(commit.getID());
+        }
+        assertEquals(List.of(second.getID(), first.getID()), ids);
+    }
+
+    @Test
+    public void onlyWritersSaveTheGraph() throws IOException {
+        Repository repo = _repos.create();
+        PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        File file = new File(repo.gitletDir(), "commit-graph");
+        repo.log("a.txt");
+        assertTrue(repo.isAncestor("master", "master"));
+        assertFalse(file.exists());
+        PackTest.commitFile(repo, "b.txt", "b\n", "b");
+        assertTrue(file.exists());
+        CommitGraph saved = CommitGraph.read(repo, file);
+        assertEquals(graph(repo).size() - 1, saved.size());
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
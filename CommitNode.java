@@ -1,9 +1,17 @@
 package gitlet;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
 
 /** A node in a commit tree representing a commit.
  * @author ryangaray
@@ -11,69 +19,116 @@ import java.util.HashMap;
 public class CommitNode implements Serializable,
         Dumpable {
 
-    /** Constructs a new CommitNode with message MSG, and a
+    /** Constructs a new CommitNode in REPO with message MSG, and a
      * mapping of Filenames to SHA-1 IDs
      * in BLOBS. */
-    public CommitNode(String msg) {
+    public CommitNode(Repository repo, String msg) {
         _parent = null;
         _log = msg;
         Date date = new Date();
         _timestamp = date.toString().substring(0, _END)
                 + date.toString().substring(_LONGEND) + " -0800";
-        _ID = Utils.sha1((Object) Utils.serialize(this));
-        saveNode();
+        _ID = repo.hash(canonical());
+        saveNode(repo);
     }
 
-    /** Constructs a new CommitNode with message MSG, whose
+    /** Constructs a new CommitNode in REPO with message MSG, whose
      * parent is given by PARENT which
      * is a SHA-1 ID of another CommitNode.
      * This node retains the blobs of its parent. */
-    public CommitNode(String msg, String parent) {
+    public CommitNode(Repository repo, String msg, String parent) {
         _parent = parent;
-        buildBlobs();
+        buildBlobs(repo);
         _log = msg;
         Date date = new Date();
         _timestamp = date.toString().substring(0, _END)
                 + date.toString().substring(_LONGEND) + " -0800";
-        _ID = Utils.sha1((Object) Utils.serialize(this));
-        saveNode();
+        _ID = repo.hash(canonical());
+        saveNode(repo);
     }
 
-    /** Constructs a new CommitNode when a second parent is given.
+    /** Constructs a new CommitNode in REPO when a second parent is given.
      * Where message is MSG, first parent is FIRSTPARENT and second parent
      * is SECONDPARENT.*/
-    public CommitNode(String msg, String firstParent, String secondParent) {
+    public CommitNode(Repository repo, String msg, String firstParent,
+                      String secondParent) {
         _parent = firstParent;
         _secondParent = secondParent;
         _merged = true;
         _log = msg;
-        buildBlobs();
+        buildBlobs(repo);
         Date date = new Date();
         _timestamp = date.toString().substring(0, _END)
                 + date.toString().substring(_LONGEND) + " -0800";
-        _ID = Utils.sha1((Object) Utils.serialize(this));
-        saveNode();
+        _ID = repo.hash(canonical());
+        saveNode(repo);
     }
 
-    /** Builds the _files variable of this commit. Adds _files
+    /** Constructs a new CommitNode in REPO with message MSG whose parent
+     * is PARENT and whose files are FILES, which are given instead of
+     * being built from the stage. */
+    public CommitNode(Repository repo, String msg, String parent,
+                      Map<String, String> files) {
+        _parent = parent;
+        _files.putAll(files);
+        _log = msg;
+        Date date = new Date();
+        _timestamp = date.toString().substring(0, _END)
+                + date.toString().substring(_LONGEND) + " -0800";
+        _ID = repo.hash(canonical());
+        saveNode(repo);
+    }
+
+    /** A copy of NODE, not saved, tracking FILES instead of its own. */
+    private CommitNode(CommitNode node, Map<String, String> files) {
+        _log = node._log;
+        _timestamp = node._timestamp;
+        _ID = node._ID;
+        _version = node._version;
+        _parent = node._parent;
+        _secondParent = node._secondParent;
+        _merged = node._merged;
+        _files.putAll(files);
+    }
+
+    /** Returns this commit as it would be had each of its files named by
+     *  a key of RENAMES been named by the value instead, where no file
+     *  already has that name. The result is not saved, but the renamed
+     *  blobs are saved to REPO's objects. */
+    CommitNode renamed(Repository repo, Map<String, String> renames) {
+        if (getFiles() == null || renames.isEmpty()) {
+            return this;
+        }
+        HashMap<String, String> files = new HashMap<>(_files);
+        for (Map.Entry<String, String> rename : renames.entrySet()) {
+            String id = _files.get(rename.getKey());
+            if (id != null && !_files.containsKey(rename.getValue())) {
+                files.remove(rename.getKey());
+                files.put(rename.getValue(), Blob.fromFileObj(repo, id)
+                          .renamed(repo, rename.getValue()).getID());
+            }
+        }
+        return new CommitNode(this, files);
+    }
+
+    /** Builds the _files variable of this commit in REPO. Adds _files
      * from its _parent
      * and removes them if they are staged for removal.
      * Modifies them if they
      * are of a different version than their parent's.
      */
-    private void buildBlobs() {
-        File parent = new File(Main.NODES, _parent);
+    private void buildBlobs(Repository repo) {
+        File parent = repo.commitFile(_parent);
         if (parent.exists()) {
-            CommitNode parentCommit = Utils.readObject(parent,
+            CommitNode parentCommit = repo.readObject(parent,
                     CommitNode.class);
             if (parentCommit.getFiles() != null) {
                 _files.putAll(parentCommit.getFiles());
             }
             if (_merged) {
-                File secondParentFile = new File(Main.NODES,
-                        _secondParent);
+                File secondParentFile = repo.commitFile(_secondParent);
                 if (secondParentFile.exists()) {
-                    CommitNode secondParent = Utils.readObject(secondParentFile,
+                    CommitNode secondParent = repo.readObject(secondParentFile,
                             CommitNode.class);
                     if (secondParent.getFiles() != null) {
                         _files.putAll(secondParent.getFiles());
@@ -87,21 +142,21 @@ public class CommitNode implements Serializable,
             throw Utils.error("Parent " + _parent + " could not "
                     + "be found in NODES.");
         }
-        File[] files = Main.REMOVE.listFiles();
+        File[] files = Utils.listFiles(repo.removeDir());
         if (files != null) {
             for (File file : files) {
                 _files.remove(file.getName());
             }
         }
-        files = Main.STAGE.listFiles();
+        files = Utils.listFiles(repo.stageDir());
         if (files != null) {
             for (File file : files) {
-                Blob stageBlob = Utils.readObject(file, Blob.class);
-                String fileName = stageBlob.getFile().getName();
+                Blob stageBlob = repo.readObject(file, Blob.class);
+                String fileName = stageBlob.getName();
                 if (_files.containsKey(fileName)) {
-                    Blob fileBlob = Blob.fromFileObj(_files.get(fileName));
-                    if (!fileBlob.getContents().equals(
-                            stageBlob.getContents())) {
+                    Blob fileBlob = Blob.fromFileObj(repo,
+                            _files.get(fileName));
+                    if (!fileBlob.sameContents(stageBlob)) {
                         _files.remove(fileName);
                     }
                 }
@@ -110,29 +165,47 @@ public class CommitNode implements Serializable,
         }
     }
 
-    /** Saves this CommitNode to NODES. */
-    public void saveNode() {
-        File file = Utils.join(Main.NODES, _ID);
-        Utils.writeObject(file, this);
+    /** Saves this CommitNode to REPO's nodes. */
+    public void saveNode(Repository repo) {
+        File file = repo.commitFile(_ID);
+        repo.writeObject(file, this);
     }
 
-    /** Removes file with name NAME in _files. */
-    public void removeFile(String name) {
+    /** Removes file with name NAME in _files, saving the result in
+     * REPO. */
+    public void removeFile(Repository repo, String name) {
         if (_files.containsKey(name)) {
             _files.remove(name);
-            update();
+            update(repo);
         } else {
             throw Utils.error("Blob " + name + " does not exist in commit.");
         }
     }
 
-    /** Sends this commits files to the working directory. */
-    public void toWorkingDir() {
-        for (String filename : _files.keySet()) {
-            File file = new File(filename);
-            Blob blob = Blob.fromFileObj(_files.get(filename));
-            Utils.writeContents(file, blob.getContents());
+    /** Sends this commits files to the working directory of REPO, except
+     * those its sparse checkout leaves out. A partial clone fetches the
+     * blobs it lacks first, all at once. */
+    public void toWorkingDir(Repository repo) {
+        Events.WorkingTreeWrite event = Events.WorkingTreeWrite.start(_ID);
+        SparseCheckout sparse = repo.sparseCheckout();
+        List<String> blobs = new ArrayList<>();
+        for (Map.Entry<String, String> entry : _files.entrySet()) {
+            if (sparse.includes(entry.getKey())) {
+                blobs.add(entry.getValue());
+            }
         }
+        repo.prefetch(blobs);
+        Stream<Map.Entry<String, String>> files = _files.entrySet().stream()
+            .filter(entry -> sparse.includes(entry.getKey()));
+        if (_files.size() >= PARALLEL_FILES) {
+            files = files.parallel();
+        }
+        long bytes = files.mapToLong(entry -> {
+            File file = repo.workingFile(entry.getKey());
+            return Blob.fromFileObj(repo, entry.getValue())
+                .writeTo(repo, file);
+        }).sum();
+        event.finish(_files.size(), bytes);
     }
 
     /** Returns iff this commit contains file with NAME. */
@@ -140,13 +213,71 @@ public class CommitNode implements Serializable,
         return _files.containsKey(name);
     }
 
-    /** Updates the ID of this commit. */
-    private void update() {
-        File delete = new File(Main.NODES, _ID);
-        delete.delete();
-        _ID = Utils.sha1((Object) Utils.serialize(this));
-        File file = Utils.join(Main.NODES, _ID);
-        Utils.writeObject(file, this);
+    /** Updates the ID of this commit in REPO. A legacy commit becomes
+     *  a canonical one. */
+    private void update(Repository repo) {
+        repo.deleteObject(repo.commitFile(_ID));
+        _version = CANONICAL;
+        _ID = repo.hash(canonical());
+        saveNode(repo);
+    }
+
+    /** Returns the bytes whose hash is the ID of a canonical commit: its
+     *  version, message, timestamp, parents, whether it is a merge, and
+     *  its files sorted by name, each String written as its length in
+     *  UTF-8 bytes followed by those bytes, or -1 for null. Unlike the
+     *  serialized commit, these do not depend on how a HashMap lays out
+     *  the table of files. */
+    private byte[] canonical() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(_version);
+            writeString(out, _log);
+            writeString(out, _timestamp);
+            writeString(out, _parent);
+            writeString(out, _secondParent);
+            out.writeBoolean(_merged);
+            out.writeInt(_files.size());
+            for (Map.Entry<String, String> file
+                     : new TreeMap<>(_files).entrySet()) {
+                writeString(out, file.getKey());
+                writeString(out, file.getValue());
+            }
+            out.close();
+        } catch (IOException excp) {
+            throw Utils.error("Internal error hashing commit.");
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Writes S, which may be null, to OUT as canonical does. */
+    private static void writeString(DataOutputStream out, String s)
+        throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(utf8.length);
+            out.write(utf8);
+        }
+    }
+
+    /** Returns iff ID is the ID of this commit, just read, in REPO. The
+     *  ID of a canonical commit is checked by hashing it again. A legacy
+     *  commit, written before commits had a canonical form, was named by
+     *  the hash of its serialized form, which depends on the layout of
+     *  its table of files and, for one rewritten by rm, on its old ID,
+     *  neither of which can be recovered, so its ID is taken as given
+     *  iff TRUSTLEGACY. */
+    boolean hasID(Repository repo, String id, boolean trustLegacy) {
+        if (!id.equals(_ID)) {
+            return false;
+        } else if (_version == CANONICAL) {
+            return repo.hash(canonical()).equals(id);
+        } else {
+            return _version == LEGACY && trustLegacy;
+        }
     }
 
     /** Returns the timestamp of when this node was created. */
@@ -212,12 +343,27 @@ public class CommitNode implements Serializable,
         System.out.printf("size: %d%nmapping: %s%n", _files.size(), _files);
     }
 
+    /** Fixes the serialized form of commits. */
+    private static final long serialVersionUID = -5231277432036628811L;
+
+    /** Fewest files for which toWorkingDir writes files in parallel. */
+    static final int PARALLEL_FILES = 32;
+    /** Version of a commit written before commits had a canonical
+     *  form, whose ID is the hash of the serialized commit. */
+    static final int LEGACY = 0;
+    /** Version of a commit whose ID is the hash of its canonical
+     *  form. */
+    static final int CANONICAL = 1;
+
     /** The log message of this commit. */
     private String _log;
     /** The time when this commit was created. */
     private String _timestamp;
     /** The SHA-1 ID of this commit. */
     private String _ID;
+    /** How _ID was computed: LEGACY or CANONICAL. Legacy commits, read
+     *  from before this field existed, have the default of 0. */
+    private int _version = CANONICAL;
     /** The mapping of filenames to SHA-1 IDs contained in this commit. */
     private HashMap<String, String> _files = new HashMap<>();
     /** The parent of this commit. */
@@ -1,12 +1,20 @@
 package gitlet;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.Collections;
 import java.util.Arrays;
 
@@ -15,20 +23,30 @@ import java.util.Arrays;
  */
 public class CommitTree implements Serializable {
 
-    /** Construct the first commit in a tree which has no
+    /** Construct the first commit in a tree for REPO which has no
      * parent and inherits no files. Has log MSG. */
-    public CommitTree(String msg) {
-        _head = new CommitNode(msg);
+    public CommitTree(Repository repo, String msg) {
+        _repo = repo;
+        Events.CommitCreated event = Events.CommitCreated.start();
+        _head = new CommitNode(_repo, msg);
+        event.finish(_head);
         _headName = "master";
         _branches.put("master", _head.getID());
         _branchHistory.put(_headName, new LinkedList<>());
     }
 
+    /** Sets the repository this tree was read from to REPO. */
+    void attach(Repository repo) {
+        _repo = repo;
+    }
+
     /** Constructs a commit with log MSG whose parent is
      * the previous head commit. */
     public void commit(String msg) {
         _branchHistory.get(_headName).add(_head.getID());
-        _head = new CommitNode(msg, _head.getID());
+        Events.CommitCreated event = Events.CommitCreated.start();
+        _head = new CommitNode(_repo, msg, _head.getID());
+        event.finish(_head);
         if (_headName.equals("master")) {
             _branches.replace("master", _head.getID());
         } else {
@@ -47,7 +65,10 @@ public class CommitTree implements Serializable {
     public void commit(String msg, CommitNode secondParent) {
         _branchHistory.get(_headName).add(_head.getID());
         _branchHistory.get(_headName).add(secondParent.getID());
-        _head = new CommitNode(msg, _head.getID(), secondParent.getID());
+        Events.CommitCreated event = Events.CommitCreated.start();
+        _head = new CommitNode(_repo, msg, _head.getID(),
+                               secondParent.getID());
+        event.finish(_head);
         if (_headName.equals("master")) {
             _branches.replace("master", _head.getID());
         } else {
@@ -62,13 +83,13 @@ public class CommitTree implements Serializable {
 
     /** Clears the stage. */
     public void clear() {
-        File[] files = Main.STAGE.listFiles();
+        File[] files = Utils.listFiles(_repo.stageDir());
         if (files != null) {
             for (File file : files) {
                 file.delete();
             }
         }
-        File[] removeFiles = Main.REMOVE.listFiles();
+        File[] removeFiles = Utils.listFiles(_repo.removeDir());
         if (removeFiles != null) {
             for (File file : removeFiles) {
                 file.delete();
@@ -79,177 +100,206 @@ public class CommitTree implements Serializable {
     /** Creates a new branch with name NAME. */
     public void branch(String name) {
         if (_branches.containsKey(name)) {
-            System.out.println("A branch with that "
+            throw Utils.error("A branch with that "
                     + "name already exists.");
-            System.exit(0);
         }
         _branches.put(name, _head.getID());
         _branchHistory.put(name, new LinkedList<>());
         _branchHistory.get(name).addAll(_branchHistory.get(_headName));
     }
 
-    /** Prints information about all branches. */
-    public void status() {
-        String branches = "";
+    /** Returns information about all branches and the stage. */
+    public Status status() {
         String[] branchArray = _branches.keySet().toArray(String[]::new);
         Arrays.sort(branchArray);
-        for (String branch : branchArray) {
-            if (_headName.equals(branch)) {
-                branches += "*" + branch + "\n";
-            } else {
-                branches += branch + "\n";
-            }
-        }
-        String stagedForAdd = "";
-        String stagedForRm = "";
-        String untracked = "";
-        List<String> stageAdd = Utils.plainFilenamesIn(Main.STAGE);
-        List<String> stageRemove = Utils.plainFilenamesIn(Main.REMOVE);
+        List<String> stagedForAdd = new ArrayList<>();
+        List<String> stagedForRm = new ArrayList<>();
+        List<String> untracked = new ArrayList<>();
+        List<String> stageAdd = Utils.plainFilenamesIn(_repo.stageDir());
+        List<String> stageRemove = Utils.plainFilenamesIn(_repo.removeDir());
         if (stageAdd != null) {
-            for (String filename : stageAdd) {
-                Blob blob = Utils.readObject(new File(Main.STAGE,
-                        filename), Blob.class);
-                stagedForAdd += filename + "\n";
-            }
+            stagedForAdd.addAll(stageAdd);
         }
         if (stageRemove != null) {
-            for (String filename : stageRemove) {
-                stagedForRm += filename + "\n";
-            }
-        }
-        List<String> workingFiles = Utils.plainFilenamesIn(Main.CWD);
-        if (workingFiles != null) {
-            for (String filename : workingFiles) {
-                File stage = new File(Main.STAGE, filename);
-                File stageRm = new File(Main.REMOVE, filename);
-                if (!stage.exists() && _head.getFiles() != null
-                        && !_head.getFiles().containsKey(filename)) {
-                    untracked += filename + "\n";
-                } else if (stageRm.exists()) {
-                    untracked += filename + "\n";
-                }
+            stagedForRm.addAll(stageRemove);
+        }
+        Set<String> staged = new HashSet<>(stagedForAdd);
+        Set<String> removed = new HashSet<>(stagedForRm);
+        for (String filename : _repo.workingFiles()) {
+            if (!staged.contains(filename) && _head.getFiles() != null
+                    && !_head.getFiles().containsKey(filename)) {
+                untracked.add(filename);
+            } else if (removed.contains(filename)) {
+                untracked.add(filename);
             }
         }
-        System.out.println("=== Branches ===\n" + branches
-                + "\n=== Staged Files ===\n"
-                + stagedForAdd + "\n=== Removed Files ===\n"
-                + stagedForRm
-                + "\n=== Modifications Not Staged For Commit ===\n"
-                + "\n=== Untracked Files ===\n" + untracked);
+        return new Status(Arrays.asList(branchArray), _headName,
+                stagedForAdd, stagedForRm, new ArrayList<>(), untracked,
+                stagedRenames(stagedForAdd, stagedForRm));
     }
 
-    /** Prints logs of all commits ever made. */
-    public void globalLog() {
-        File[] files = Main.NODES.listFiles();
+    /** Returns the renames staged, where the files STAGED are staged for
+     *  addition and REMOVED for removal. */
+    private Map<String, String> stagedRenames(List<String> staged,
+                                              List<String> removed) {
+        if (staged.isEmpty() || removed.isEmpty()
+                || _head.getFiles() == null) {
+            return new TreeMap<>();
+        }
+        Map<String, String> files = new HashMap<>(_head.getFiles());
+        files.keySet().removeAll(removed);
+        for (String name : staged) {
+            files.put(name, _repo.readObject(new File(_repo.stageDir(), name),
+                    Blob.class).getID());
+        }
+        return Renames.detect(_repo, _head.getFiles(), files);
+    }
+
+    /** Returns all commits ever made. */
+    public List<CommitNode> globalLog() {
+        List<CommitNode> commits = new ArrayList<>();
+        File[] files = Utils.listFiles(_repo.nodesDir());
         if (files != null) {
             for (File file : files) {
-                CommitNode commit = Utils.readObject(file,
-                        CommitNode.class);
-                System.out.println(commit.toString());
+                commits.add(_repo.readObject(file, CommitNode.class));
             }
         }
+        return commits;
     }
 
     /** Removes file with NAME. */
     public void removeFile(String name) {
-        File file = new File(Main.STAGE, name);
+        File file = new File(_repo.stageDir(), name);
         boolean staged = false;
         if (file.exists()) {
             file.delete();
             staged = true;
         }
         if (_head.getFiles() != null && _head.containsFile(name)) {
-            File stagerm = new File(Main.REMOVE, file.getName());
+            File stagerm = new File(_repo.removeDir(), file.getName());
             try {
                 stagerm.createNewFile();
             } catch (IOException e) {
                 throw Utils.error(e.getMessage());
             }
-            Blob blob = Utils.readObject(new File(Main.OBJECTS,
-                    _head.getFiles().get(name)), Blob.class);
-            blob.deleteBlob();
-            blob.destroyBlob();
+            Blob blob = Blob.fromFileObj(_repo, _head.getFiles().get(name));
+            blob.deleteBlob(_repo);
+            blob.destroyBlob(_repo);
         } else if (!staged) {
-            System.out.println("No reason to remove the file.");
-            System.exit(0);
+            throw Utils.error("No reason to remove the file.");
         }
     }
 
     /** Removes branch from _branches with name NAME. */
     public void removeBranch(String name) {
         if (_headName.equals(name)) {
-            System.out.println("Cannot remove the current branch.");
-            System.exit(0);
+            throw Utils.error("Cannot remove the current branch.");
         } else if (!_branches.containsKey(name)) {
-            System.out.println("A branch with that name does not exist.");
-            System.exit(0);
+            throw Utils.error("A branch with that name does not exist.");
         }
         _branches.remove(name);
         _branchHistory.remove(name);
     }
 
+    /** Points the branch NAME, which need not exist, at the commit
+     * HEADID, whose ancestors are HISTORY. If NAME is the current branch,
+     * that commit becomes the head; the working directory is unchanged. */
+    void setBranch(String name, String headID, List<String> history) {
+        _branches.put(name, headID);
+        _branchHistory.put(name, new LinkedList<>(history));
+        if (_headName.equals(name)) {
+            _head = _repo.readObject(_repo.commitFile(headID),
+                    CommitNode.class);
+        }
+    }
+
+    /** Turns this tree, a copy of another repository's, into the tree of
+     *  a clone of it: each of its own branches NAME is kept as the
+     *  remote-tracking branch REMOTE/NAME, and only the current branch
+     *  stays a local branch. Its remote-tracking branches are dropped. */
+    void trackAs(String remote) {
+        for (String name : new ArrayList<>(_branches.keySet())) {
+            String head = _branches.get(name);
+            List<String> history = _branchHistory.get(name);
+            if (!name.equals(_headName)) {
+                _branches.remove(name);
+                _branchHistory.remove(name);
+            }
+            if (!name.contains("/")) {
+                _branches.put(remote + "/" + name, head);
+                _branchHistory.put(remote + "/" + name, new LinkedList<>(
+                        history == null ? Collections.emptyList() : history));
+            }
+        }
+    }
+
+    /** Moves the current branch forward to the head of BRANCH, which
+     *  descends from the current head, and checks that head out. */
+    void fastForward(String branch) {
+        String current = _headName;
+        checkout(branch);
+        _headName = current;
+        _branches.put(current, _head.getID());
+        _branchHistory.put(current,
+                new LinkedList<>(_branchHistory.get(branch)));
+    }
+
     /** Checks out a Blob BLOB. */
     public void checkout(Blob blob) {
         if (_head.getFiles() != null && _head.getFiles().containsKey(
-                blob.getFile().getName())) {
-            Utils.writeContents(blob.getFile(), blob.getContents());
+                blob.getName())) {
+            blob.toWorkingDir(_repo);
         } else {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
     }
 
     /** Checks out Blob BLOB found in COMMIT. */
     public void checkout(String commit, Blob blob) {
-        if (commit.length() < _shortIDLength) {
+        if (commit.length() < _repo.idLength()) {
             commit = findCommitID(commit);
         }
         if (commit == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw Utils.error("No commit with that id exists.");
         }
-        File nodeFile = new File(Main.NODES, commit);
+        File nodeFile = _repo.commitFile(commit);
         if (!nodeFile.exists()) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw Utils.error("No commit with that id exists.");
         }
-        CommitNode node = Utils.readObject(nodeFile, CommitNode.class);
+        CommitNode node = _repo.readObject(nodeFile, CommitNode.class);
         if (node.getFiles() != null && node.getFiles().containsKey(
-                blob.getFile().getName())) {
-            Utils.writeContents(blob.getFile(), blob.getContents());
+                blob.getName())) {
+            blob.toWorkingDir(_repo);
         } else {
-            System.out.println("File does not exist in that commit.");
-            System.exit(0);
+            throw Utils.error("File does not exist in that commit.");
         }
     }
 
     /** Checks out Branch BRANCH with given name. */
     public void checkout(String branch) {
         if (!_branches.containsKey(branch)) {
-            System.out.println("No such branch exists.");
-            System.exit(0);
+            throw Utils.error("No such branch exists.");
         } else if (branch.equals(_headName)) {
-            System.out.println("No need to checkout the current branch.");
-            System.exit(0);
+            throw Utils.error("No need to checkout the current branch.");
         }
-        CommitNode head = Utils.readObject(new File(Main.NODES,
+        CommitNode head = _repo.readObject(_repo.commitFile(
                 _branches.get(branch)), CommitNode.class);
-        for (String filename : Objects.requireNonNull(
-                Utils.plainFilenamesIn(Main.CWD))) {
+        for (String filename : _repo.workingFiles()) {
             if (!_head.containsFile(filename) && head.containsFile(filename)) {
-                System.out.println("There is an untracked file in the way; "
+                throw Utils.error("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
-                System.exit(0);
             }
         }
-        head.toWorkingDir();
+        head.toWorkingDir(_repo);
         _headName = branch;
+        SparseCheckout sparse = _repo.sparseCheckout();
         if (_head.getFiles() != null) {
             for (String filename : _head.getFiles().keySet()) {
-                if (!head.containsFile(filename)) {
-                    Blob blob = Blob.fromFileObj(
+                if (!head.containsFile(filename)
+                        && sparse.includes(filename)) {
+                    Blob blob = Blob.fromFileObj(_repo,
                             _head.getFiles().get(filename));
-                    blob.destroyBlob();
+                    blob.destroyBlob(_repo);
                 }
             }
         }
@@ -260,7 +310,7 @@ public class CommitTree implements Serializable {
 
     /** Returns the commitID from a SHORTID given. */
     public String findCommitID(String shortID) {
-        List<String> files = Utils.plainFilenamesIn(Main.NODES);
+        List<String> files = Utils.plainFilenamesIn(_repo.nodesDir());
         boolean passed = false;
         boolean found = false;
         if (files != null) {
@@ -280,130 +330,442 @@ public class CommitTree implements Serializable {
                 }
             }
         } else {
-            System.out.println("Nodes directory does not exist.");
-            System.exit(0);
+            throw Utils.error("Nodes directory does not exist.");
         }
         return null;
     }
 
     /** Merges the current head into BRANCH. */
-    public void merge(String branch) {
+    public MergeResult merge(String branch) {
         if (!_branches.containsKey(branch)) {
-            System.out.println("A branch with that name does "
+            throw Utils.error("A branch with that name does "
                     + "not exist.");
-            System.exit(0);
         }
-        CommitNode branchNode = Utils.readObject(new File(Main.NODES,
+        CommitNode branchNode = _repo.readObject(_repo.commitFile(
                 _branches.get(branch)), CommitNode.class);
-        File[] stage = Main.STAGE.listFiles(); File[] remove
-                = Main.REMOVE.listFiles();
+        File[] stage = Utils.listFiles(_repo.stageDir()); File[] remove
+                = Utils.listFiles(_repo.removeDir());
         if (stage != null && remove != null) {
             if (stage.length > 0 || remove.length > 0) {
-                System.out.println("You have uncommitted changes.");
-                System.exit(0);
+                throw Utils.error("You have uncommitted changes.");
             }
         }
         if (branchNode.getID().equals(_head.getID())) {
-            System.out.println("Cannot merge a branch with itself.");
-            System.exit(0);
+            throw Utils.error("Cannot merge a branch with itself.");
         }
-        for (String filename : Objects.requireNonNull(
-                Utils.plainFilenamesIn(Main.CWD))) {
+        for (String filename : _repo.workingFiles()) {
             if (!_head.containsFile(filename)
                     && branchNode.containsFile(filename)) {
-                System.out.println("There is an untracked file in the way; "
+                throw Utils.error("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
-                System.exit(0);
             }
         }
-        findAncestor(branch, 0, _head);
-        Integer min = Collections.min(_potentialAncestors.keySet());
-        CommitNode ancestor = _potentialAncestors.get(min);
-        _potentialAncestors.clear();
+        Events.MergePhase phase = Events.MergePhase.start(branch, "ancestor");
+        CommitNode ancestor;
+        try {
+            ancestor = splitPoint(branch);
+        } finally {
+            phase.finish();
+        }
         if (ancestor.getID().equals(branchNode.getID())
-                || _branchHistory.get(_headName).contains(branchNode.getID())) {
-            System.out.println("Given branch is an "
+                || _branchHistory.get(_headName)
+                        .contains(branchNode.getID())) {
+            throw Utils.error("Given branch is an "
                     + "ancestor of the current branch.");
-            System.exit(0);
         }
         if (_head.getID().equals(ancestor.getID())
                 || branchNode.getParent().equals(_head.getID())) {
             checkout(branch);
-            System.out.println("Current branch fast-forwarded.");
-            System.exit(0);
+            return MergeResult.FAST_FORWARDED;
         }
-        checkBranchNode(branchNode, ancestor);
-        checkAncestorNode(ancestor, branchNode);
+        List<String> blobs = new ArrayList<>();
+        SparseCheckout sparse = _repo.sparseCheckout();
+        for (CommitNode node : new CommitNode[] {ancestor, _head, branchNode}) {
+            if (node.getFiles() != null) {
+                for (Map.Entry<String, String> file
+                         : node.getFiles().entrySet()) {
+                    if (sparse.includes(file.getKey())) {
+                        blobs.add(file.getValue());
+                    }
+                }
+            }
+        }
+        _repo.prefetch(blobs);
+        phase = Events.MergePhase.start(branch, "renames");
+        Map<String, String> headRenames = Renames.detect(_repo,
+                ancestor.getFiles(), _head.getFiles());
+        Map<String, String> branchRenames = Renames.detect(_repo,
+                ancestor.getFiles(), branchNode.getFiles());
+        Map<String, String> unrenamed = new TreeMap<>();
+        for (Map.Entry<String, String> rename : branchRenames.entrySet()) {
+            if (_head.containsFile(rename.getKey())
+                    && !_head.containsFile(rename.getValue())) {
+                unrenamed.put(rename.getValue(), rename.getKey());
+            }
+        }
+        headRenames.keySet().removeAll(branchRenames.keySet());
+        CommitNode ancestorView = ancestor.renamed(_repo, headRenames);
+        CommitNode branchView = branchNode.renamed(_repo, headRenames)
+                .renamed(_repo, unrenamed);
+        phase.finish();
+        phase = Events.MergePhase.start(branch, "checkBranch");
+        checkBranchNode(branchView, ancestorView);
+        phase.finish();
+        phase = Events.MergePhase.start(branch, "checkAncestor");
+        checkAncestorNode(ancestorView, branchView);
+        phase.finish();
         if (_head.getFiles() != null) {
-            checkHeadNode(branchNode, ancestor);
+            phase = Events.MergePhase.start(branch, "checkHead");
+            checkHeadNode(branchView, ancestorView);
+            phase.finish();
         }
+        followRenames(branchNode, headRenames, unrenamed);
         commit("Merged " + branch + " into "
                 + _headName + ".", branchNode);
+        MergeResult result = MergeResult.MERGED;
         if (_conflicted) {
-            System.out.println("Encountered a merge conflict.");
+            result = MergeResult.CONFLICTED;
         }
         _conflicted = false;
+        return result;
+    }
+
+    /** Returns the latest common ancestor of the head and the head of
+     *  BRANCH. */
+    private CommitNode splitPoint(String branch) {
+        findAncestor(ObjectIdSet.ofHex(_branchHistory.get(branch)),
+                new ObjectIdIntMap(), 0, _head);
+        if (_potentialAncestors.isEmpty()) {
+            throw Utils.error("Given branch has no common ancestor with "
+                    + "the current branch.");
+        }
+        Integer min = Collections.min(_potentialAncestors.keySet());
+        CommitNode ancestor = _potentialAncestors.get(min);
+        _potentialAncestors.clear();
+        return ancestor;
+    }
+
+    /** Applies the changes the commit with given ID made to its first
+     * parent to the head, committing the result with its message. The
+     * trees are merged in memory and the working directory is written
+     * once. */
+    public void cherryPick(String id) {
+        checkStageEmpty();
+        CommitNode commit = commitNamed(id);
+        if (commit.getParent() == null) {
+            throw Utils.error("Cannot cherry-pick the initial commit.");
+        }
+        CommitNode head = replay(_head, commit);
+        if (head == _head) {
+            throw Utils.error("No changes added to the commit.");
+        }
+        List<String> history = new ArrayList<>(_branchHistory.get(_headName));
+        history.add(_head.getID());
+        moveHead(head, history);
+    }
+
+    /** Replays the commits of the current branch since it split from
+     * BRANCH on top of the head of BRANCH, in memory, and moves the
+     * current branch to the last of them, writing the working directory
+     * once. Commits that change nothing there are dropped. Returns
+     * FAST_FORWARDED if the current branch was simply moved to BRANCH,
+     * and MERGED otherwise. */
+    public MergeResult rebase(String branch) {
+        if (!_branches.containsKey(branch)) {
+            throw Utils.error("A branch with that name does not exist.");
+        } else if (branch.equals(_headName)) {
+            throw Utils.error("Cannot rebase a branch onto itself.");
+        }
+        checkStageEmpty();
+        CommitNode onto = _repo.readObject(_repo.commitFile(
+                _branches.get(branch)), CommitNode.class);
+        CommitNode ancestor = splitPoint(branch);
+        if (ancestor.getID().equals(onto.getID())
+                || _branchHistory.get(_headName)
+                        .contains(onto.getID())) {
+            throw Utils.error("Given branch is an "
+                    + "ancestor of the current branch.");
+        }
+        if (_head.getID().equals(ancestor.getID())) {
+            fastForward(branch);
+            return MergeResult.FAST_FORWARDED;
+        }
+        List<String> history = new ArrayList<>(_branchHistory.get(branch));
+        CommitNode head = onto;
+        for (CommitNode commit : commitsToReplay(onto)) {
+            CommitNode next = replay(head, commit);
+            if (next != head) {
+                history.add(head.getID());
+                head = next;
+            }
+        }
+        moveHead(head, history);
+        return MergeResult.MERGED;
+    }
+
+    /** Returns the commits reachable from the head but not from ONTO,
+     * parents before children, leaving out merge commits, whose changes
+     * are those of the commits they merged. */
+    private List<CommitNode> commitsToReplay(CommitNode onto) {
+        CommitGraph graph = _repo.graph(this);
+        Bitmap mine = graph.reachable(graph.position(_head.getID()));
+        mine.andNot(graph.reachable(graph.position(onto.getID())));
+        List<CommitNode> commits = new ArrayList<>();
+        mine.forEach(p -> {
+            CommitNode commit = _repo.readObject(
+                    _repo.commitFile(graph.id(p).toString()),
+                    CommitNode.class);
+            if (commit.getParent() != null && !commit.isMerged()) {
+                commits.add(commit);
+            }
+        });
+        return commits;
+    }
+
+    /** Returns a new commit applying the changes COMMIT made to its first
+     * parent to ONTO, with COMMIT's message, or ONTO if they change
+     * nothing there. The trees are merged in memory; only the commit is
+     * written, not the working directory. */
+    private CommitNode replay(CommitNode onto, CommitNode commit) {
+        CommitNode parent = _repo.readObject(
+                _repo.commitFile(commit.getParent()), CommitNode.class);
+        List<String> conflicts = new ArrayList<>();
+        Map<String, String> files = TreeMerge.merge(parent.getFiles(),
+                onto.getFiles(), commit.getFiles(), conflicts);
+        if (!conflicts.isEmpty()) {
+            throw Utils.error("Cannot apply %s: %s is in conflict.",
+                    commit.getID().substring(0, 7), conflicts.get(0));
+        }
+        Map<String, String> current = onto.getFiles();
+        if (files.equals(current == null ? Collections.emptyMap()
+                : current)) {
+            return onto;
+        }
+        Events.CommitCreated event = Events.CommitCreated.start();
+        CommitNode result = new CommitNode(_repo, commit.getLog(),
+                onto.getID(), files);
+        event.finish(result);
+        return result;
+    }
+
+    /** Makes HEAD, whose ancestors are HISTORY, the head of the current
+     * branch, updating only the working files that differ between the
+     * old head and HEAD and that the sparse checkout includes. */
+    private void moveHead(CommitNode head, List<String> history) {
+        Map<String, String> old = _head.getFiles() == null
+                ? Collections.emptyMap() : _head.getFiles();
+        Map<String, String> files = head.getFiles() == null
+                ? Collections.emptyMap() : head.getFiles();
+        for (String filename : _repo.workingFiles()) {
+            if (!old.containsKey(filename) && files.containsKey(filename)) {
+                throw Utils.error("There is an untracked file in the way; "
+                        + "delete it, or add and commit it first.");
+            }
+        }
+        SparseCheckout sparse = _repo.sparseCheckout();
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            if (!file.getValue().equals(old.get(file.getKey()))
+                    && sparse.includes(file.getKey())) {
+                changed.add(file.getValue());
+            }
+        }
+        _repo.prefetch(changed);
+        for (Map.Entry<String, String> file : files.entrySet()) {
+            if (!file.getValue().equals(old.get(file.getKey()))
+                    && sparse.includes(file.getKey())) {
+                Blob.fromFileObj(_repo, file.getValue()).toWorkingDir(_repo);
+            }
+        }
+        for (Map.Entry<String, String> file : old.entrySet()) {
+            if (!files.containsKey(file.getKey())
+                    && sparse.includes(file.getKey())) {
+                Blob.fromFileObj(_repo, file.getValue()).destroyBlob(_repo);
+            }
+        }
+        _head = head;
+        _branches.put(_headName, head.getID());
+        _branchHistory.put(_headName, new LinkedList<>(history));
+    }
+
+    /** Returns the commit whose possibly abbreviated ID is ID. */
+    private CommitNode commitNamed(String id) {
+        if (id.length() < _repo.idLength()) {
+            id = findCommitID(id);
+        }
+        if (id == null || !_repo.commitFile(id).exists()) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return _repo.readObject(_repo.commitFile(id), CommitNode.class);
+    }
+
+    /** Throws an error if any file is staged. */
+    private void checkStageEmpty() {
+        File[] stage = Utils.listFiles(_repo.stageDir());
+        File[] remove = Utils.listFiles(_repo.removeDir());
+        if (stage != null && stage.length > 0
+                || remove != null && remove.length > 0) {
+            throw Utils.error("You have uncommitted changes.");
+        }
+    }
+
+    /** Writes to the working file NAME, if the sparse checkout includes
+     * it, the conflict between the blobs with IDs OURS and THEIRS. A side
+     * with no file is null: the head's side is then written as an empty
+     * line, and the branch's as nothing. The blobs are streamed, so a
+     * chunked blob is never held in memory whole. */
+    private void writeConflict(String name, String ours, String theirs) {
+        if (!_repo.sparseCheckout().includes(name)) {
+            return;
+        }
+        File file = _repo.workingFile(name);
+        try (OutputStream out = new BufferedOutputStream(
+                Files.newOutputStream(file.toPath()))) {
+            out.write(CONFLICT_START);
+            if (ours == null) {
+                out.write('\n');
+            } else {
+                Blob.fromFileObj(_repo, ours).writeTo(_repo, out);
+            }
+            out.write(CONFLICT_MIDDLE);
+            if (theirs != null) {
+                Blob.fromFileObj(_repo, theirs).writeTo(_repo, out);
+            }
+            out.write(CONFLICT_END);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write %s: %s", name,
+                    excp.getMessage());
+        }
+    }
+
+    /** Brings the working directory in line with SPARSE: the head's files
+     * it includes are written if missing, and those it leaves out are
+     * deleted, provided none of those has changes not committed. */
+    void applySparseCheckout(SparseCheckout sparse) {
+        if (_head.getFiles() == null) {
+            return;
+        }
+        List<Blob> leftOut = new ArrayList<>();
+        for (Map.Entry<String, String> file : _head.getFiles().entrySet()) {
+            String name = file.getKey();
+            if (!sparse.includes(name) && _repo.workingFile(name).exists()) {
+                Blob blob = Blob.fromFileObj(_repo, file.getValue());
+                if (blob.modified(_repo)
+                        || new File(_repo.stageDir(), name).exists()) {
+                    throw Utils.error("File %s has uncommitted changes.",
+                            name);
+                }
+                leftOut.add(blob);
+            }
+        }
+        for (Blob blob : leftOut) {
+            blob.destroyBlob(_repo);
+        }
+        for (Map.Entry<String, String> file : _head.getFiles().entrySet()) {
+            if (sparse.includes(file.getKey())
+                    && !_repo.workingFile(file.getKey()).exists()
+                    && !new File(_repo.removeDir(), file.getKey()).exists()) {
+                Blob.fromFileObj(_repo, file.getValue()).toWorkingDir(_repo);
+            }
+        }
+    }
+
+    /** A helper function for merge which finishes merging files renamed
+     * on one side only. The merge is done under the head's names, so
+     * BRANCHNODE's copies of the files the head renamed as in HEADRENAMES
+     * are removed, and files the head kept under the names UNRENAMED
+     * maps BRANCHNODE's new names to are moved to the new names. */
+    private void followRenames(CommitNode branchNode,
+                               Map<String, String> headRenames,
+                               Map<String, String> unrenamed) {
+        for (Map.Entry<String, String> rename : headRenames.entrySet()) {
+            String old = rename.getKey();
+            if (branchNode.containsFile(old)
+                    && !branchNode.containsFile(rename.getValue())) {
+                Blob.fromFileObj(_repo, branchNode.getFiles().get(old))
+                        .deleteBlob(_repo);
+            }
+        }
+        for (Map.Entry<String, String> rename : unrenamed.entrySet()) {
+            String old = rename.getValue();
+            if (new File(_repo.removeDir(), old).exists()) {
+                continue;
+            }
+            Blob headBlob = Blob.fromFileObj(_repo, _head.getFiles().get(old));
+            File staged = new File(_repo.stageDir(), old);
+            Blob merged = headBlob;
+            if (staged.exists()) {
+                merged = _repo.readObject(staged, Blob.class);
+                staged.delete();
+            }
+            File file = _repo.workingFile(old);
+            if (file.exists()) {
+                file.renameTo(_repo.workingFile(rename.getKey()));
+            }
+            merged.renamed(_repo, rename.getKey()).saveBlob(_repo);
+            headBlob.deleteBlob(_repo);
+        }
+    }
+
+    /** Returns iff the blobs with IDs ONE and OTHER, both of the file
+     * NAME, have the same contents. Blobs of a file the sparse checkout
+     * leaves out are compared by ID alone, so they are never loaded: a
+     * blob's ID covers its name and contents. */
+    private boolean sameContents(String name, String one, String other) {
+        if (one.equals(other)) {
+            return true;
+        }
+        if (!_repo.sparseCheckout().includes(name)) {
+            return false;
+        }
+        return Blob.fromFileObj(_repo, one)
+                .sameContents(Blob.fromFileObj(_repo, other));
+    }
+
+
+    /** Checks out and stages the blob with ID, the merged branch's
+     * version of the file NAME. A file the sparse checkout leaves out is
+     * neither written nor loaded: the merge commit takes the branch's
+     * files unless something else is staged. */
+    private void takeBranch(String name, String id) {
+        if (_repo.sparseCheckout().includes(name)) {
+            Blob blob = Blob.fromFileObj(_repo, id);
+            blob.toWorkingDir(_repo);
+            blob.saveBlob(_repo);
+        }
+    }
+
+    /** Returns the blob ID NODE tracks for the file NAME, or null. */
+    private static String fileID(CommitNode node, String name) {
+        return node.getFiles() == null ? null : node.getFiles().get(name);
     }
 
     /** A helper function for merge which checks
      * the head against BRANCHNODE and ANCESTOR. */
     private void checkHeadNode(CommitNode branchNode, CommitNode ancestor) {
         for (String fil : _head.getFiles().keySet()) {
-            Blob headBlob = Blob.fromFileObj(_head.getFiles().get(fil));
-            if (((branchNode.getFiles() != null
-                    && !branchNode.getFiles().containsKey(fil))
-                    || branchNode.getFiles() == null)
-                    && (ancestor.getFiles() == null
-                    || (ancestor.getFiles() != null
-                    && !ancestor.getFiles().containsKey(fil)))) {
-                headBlob.saveBlob();
-            }
-            if (branchNode.getFiles() != null
-                    && branchNode.getFiles().containsKey(fil)
-                    && ancestor.getFiles() != null) {
-                Blob branchBlob = Blob.fromFileObj(
-                                branchNode.getFiles().get(fil));
-                Blob ancestorBlob =
-                        Blob.fromFileObj(
-                                ancestor.getFiles().get(fil));
-                if (ancestor.getFiles() != null
-                        && ancestor.getFiles().containsKey(fil)) {
-                    if (!headBlob.getContents().equals(
-                            ancestorBlob.getContents())
-                            && branchBlob.getContents().equals(
-                            ancestorBlob.getContents())) {
-                        headBlob.saveBlob();
-                    }
-                }
+            String headID = _head.getFiles().get(fil);
+            String branchID = fileID(branchNode, fil);
+            String ancestorID = fileID(ancestor, fil);
+            if (branchID == null && ancestorID == null) {
+                Blob.fromFileObj(_repo, headID).saveBlob(_repo);
             }
-            if (branchNode.getFiles() != null
-                    && branchNode.getFiles().containsKey(fil)) {
-                Blob branchBlob
-                        = Blob.fromFileObj(branchNode.getFiles().get(fil));
-                if (!branchBlob.getContents().equals(headBlob.getContents())
-                        && !_checkedOut) {
-                    Utils.writeContents(
-                            headBlob.getFile(), "<<<<<<< HEAD\n"
-                                    + headBlob.getContents() + "=======\n"
-                                    + branchBlob.getContents() + ">>>>>>>\n");
-
-                    headBlob.saveBlob();
+            if (branchID != null && ancestorID != null
+                    && !sameContents(fil, headID, ancestorID)
+                    && sameContents(fil, branchID, ancestorID)) {
+                Blob.fromFileObj(_repo, headID).saveBlob(_repo);
+            }
+            if (branchID != null) {
+                if (!sameContents(fil, branchID, headID) && !_checkedOut) {
+                    writeConflict(fil, headID, branchID);
+                    Blob.fromFileObj(_repo, headID).saveBlob(_repo);
                     _conflicted = true;
                 }
-            } else {
-                if (ancestor.getFiles() != null
-                        && ancestor.getFiles().containsKey(fil)) {
-                    Blob ancestorBlob
-                            = Blob.fromFileObj(ancestor.getFiles().get(fil));
-                    if (!ancestorBlob.getContents().equals(
-                            headBlob.getContents())) {
-                        Utils.writeContents(headBlob.getFile(),
-                                "<<<<<<< HEAD\n" + headBlob.getContents()
-                                        + "=======\n" + ">>>>>>>\n");
-                        headBlob.saveBlob();
-                        _conflicted = true;
-                    }
-                }
+            } else if (ancestorID != null
+                    && !sameContents(fil, ancestorID, headID)) {
+                writeConflict(fil, headID, null);
+                Blob.fromFileObj(_repo, headID).saveBlob(_repo);
+                _conflicted = true;
             }
         }
     }
@@ -414,33 +776,20 @@ public class CommitTree implements Serializable {
                                    CommitNode branchNode) {
         if (ancestor.getFiles() != null) {
             for (String filename : ancestor.getFiles().keySet()) {
-                Blob ancestorBlob
-                        = Blob.fromFileObj(ancestor.getFiles().get(filename));
-                if (_head.getFiles() != null
-                        && _head.getFiles().containsKey(filename)) {
-                    Blob headBlob = Blob.fromFileObj(
-                            _head.getFiles().get(filename));
-                    if (((branchNode.getFiles() != null
-                            && !branchNode.getFiles().containsKey(filename))
-                            || branchNode.getFiles() == null)
-                            && headBlob.getContents().equals(
-                                    ancestorBlob.getContents())) {
-                        Utils.restrictedDelete(
-                                new File(headBlob.getFile().getName()));
-                        headBlob.deleteBlob();
-                        _head.removeFile(filename);
-                    }
+                String ancestorID = ancestor.getFiles().get(filename);
+                String headID = fileID(_head, filename);
+                String branchID = fileID(branchNode, filename);
+                if (headID != null && branchID == null
+                        && sameContents(filename, headID, ancestorID)) {
+                    Blob headBlob = Blob.fromFileObj(_repo, headID);
+                    Utils.restrictedDelete(
+                            _repo.workingFile(headBlob.getName()));
+                    headBlob.deleteBlob(_repo);
+                    _head.removeFile(_repo, filename);
                 }
-                if (branchNode.getFiles() != null
-                        && branchNode.getFiles().containsKey(filename)
-                        && !_head.getFiles().containsKey(filename)) {
-                    Blob branchBlob
-                            = Blob.fromFileObj(
-                                    branchNode.getFiles().get(filename));
-                    if (branchBlob.getContents().equals(
-                            ancestorBlob.getContents())) {
-                        branchBlob.deleteBlob();
-                    }
+                if (branchID != null && headID == null
+                        && sameContents(filename, branchID, ancestorID)) {
+                    Blob.fromFileObj(_repo, branchID).deleteBlob(_repo);
                 }
             }
         }
@@ -452,169 +801,159 @@ public class CommitTree implements Serializable {
                                  CommitNode ancestor) {
         if (branchNode.getFiles() != null) {
             for (String fil : branchNode.getFiles().keySet()) {
-                Blob branchBlob = Blob.fromFileObj(
-                        branchNode.getFiles().get(fil));
-                if (ancestor.getFiles() != null
-                        && ancestor.getFiles().containsKey(fil)
-                        && _head.getFiles()
-                        != null && _head.getFiles().containsKey(fil)) {
-                    Blob headBlob = Blob.fromFileObj(_head.getFiles().get(fil));
-                    Blob ancestorB
-                            = Blob.fromFileObj(ancestor.getFiles().get(fil));
-                    if (headBlob.getContents().equals(ancestorB.getContents())
-                        && !branchBlob.getContents().equals(
-                                ancestorB.getContents())) {
-                        checkout(branchNode.getID(), branchBlob);
-                        branchBlob.saveBlob();
+                String branchID = branchNode.getFiles().get(fil);
+                String headID = fileID(_head, fil);
+                String ancestorID = fileID(ancestor, fil);
+                if (ancestorID != null && headID != null) {
+                    if (sameContents(fil, headID, ancestorID)
+                        && !sameContents(fil, branchID, ancestorID)) {
+                        takeBranch(fil, branchID);
                         _checkedOut = true;
                     }
-                    if (headBlob.getContents().equals(
-                            branchBlob.getContents())
-                            && !headBlob.getContents().equals(
-                                    ancestorB.getContents())) {
-                        headBlob.saveBlob();
+                    if (sameContents(fil, headID, branchID)
+                            && !sameContents(fil, headID, ancestorID)) {
+                        Blob.fromFileObj(_repo, headID).saveBlob(_repo);
                     }
                 }
-                if (((ancestor.getFiles() != null
-                        && !ancestor.getFiles().containsKey(fil))
-                        || ancestor.getFiles() == null)
-                        && (_head.getFiles() == null || (_head.getFiles()
-                        != null && !_head.getFiles().containsKey(fil)))) {
-                    checkout(branchNode.getID(), branchBlob);
-                    branchBlob.saveBlob();
+                if (ancestorID == null && headID == null) {
+                    takeBranch(fil, branchID);
                 }
-                if (ancestor.getFiles() != null
-                        && ancestor.getFiles().containsKey(fil)) {
-                    Blob ancestorBlob = Blob.fromFileObj(
-                            ancestor.getFiles().get(fil));
-                    if (((_head.getFiles() != null
-                            && !_head.getFiles().containsKey(fil))
-                            || _head.getFiles() == null)
-                            && !ancestorBlob.getContents().equals(
-                                    branchBlob.getContents())) {
-                        Utils.writeContents(ancestorBlob.getFile(),
-                                "<<<<<<< HEAD\n" + "\n"
-                                + "=======\n" + branchBlob.getContents()
-                                        + ">>>>>>>\n");
-                        ancestorBlob.saveBlob();
-                        _conflicted = true;
-                    }
+                if (ancestorID != null && headID == null
+                        && !sameContents(fil, ancestorID, branchID)) {
+                    writeConflict(fil, null, branchID);
+                    Blob.fromFileObj(_repo, ancestorID).saveBlob(_repo);
+                    _conflicted = true;
                 }
             }
         }
     }
 
-    /** Finds the ancestor of the current head
-     * and given BRANCHNAME for merge.
-     * Starts at START and tracks PATHLENGTH. */
-    private void findAncestor(String branchName, int pathLength,
-                              CommitNode start) {
+    /** Finds the ancestor of the current head and the branch whose
+     * history is HISTORY for merge. Starts at START and tracks
+     * PATHLENGTH. VISITED maps the commits already walked to the shortest
+     * path length they were reached by; walking one again by a path no
+     * shorter can find only farther ancestors, so it is skipped. */
+    private void findAncestor(ObjectIdSet history, ObjectIdIntMap visited,
+                              int pathLength, CommitNode start) {
         CommitNode currHead = start;
         while (currHead != null) {
+            ObjectId id = ObjectId.fromHex(currHead.getID());
+            if (visited.get(id, Integer.MAX_VALUE) <= pathLength) {
+                return;
+            }
+            visited.put(id, pathLength);
             if (currHead.isMerged()) {
-                CommitNode secondParent = Utils.readObject(
-                        new File(Main.NODES,
-                        currHead.secondParent()), CommitNode.class);
-                if (_branchHistory.get(branchName).contains(
-                        currHead.secondParent())) {
+                CommitNode secondParent = _repo.readObject(
+                        _repo.commitFile(currHead.secondParent()),
+                        CommitNode.class);
+                if (history.contains(currHead.secondParent())) {
                     _potentialAncestors.put(pathLength, secondParent);
                     return;
                 } else {
-                    findAncestor(branchName, pathLength + 1, secondParent);
+                    findAncestor(history, visited, pathLength + 1,
+                            secondParent);
                 }
             }
-            if (_branchHistory.get(branchName).contains(
-                    currHead.getID())) {
-                _potentialAncestors.put(pathLength, Utils.readObject(
-                        new File(Main.NODES, currHead.getID()),
+            if (history.contains(id)) {
+                _potentialAncestors.put(pathLength, _repo.readObject(
+                        _repo.commitFile(currHead.getID()),
                         CommitNode.class));
                 return;
             }
             if (currHead.getParent() == null) {
                 break;
             }
-            currHead = Utils.readObject(new File(Main.NODES,
+            currHead = _repo.readObject(_repo.commitFile(
                     currHead.getParent()), CommitNode.class);
             pathLength++;
         }
     }
 
-    /** Finds the commit with given MSG. */
-    public void find(String msg) {
-        boolean found = false;
-        File[] files = Main.NODES.listFiles();
+    /** Returns the IDs of the commits with given MSG. */
+    public List<String> find(String msg) {
+        List<String> found = new ArrayList<>();
+        File[] files = Utils.listFiles(_repo.nodesDir());
         if (files != null) {
             for (File file : files) {
-                CommitNode curr = Utils.readObject(file,
+                CommitNode curr = _repo.readObject(file,
                         CommitNode.class);
                 if (curr.getLog().equals(msg)) {
-                    System.out.println(curr.getID());
-                    found = true;
+                    found.add(curr.getID());
                 }
             }
-            if (!found) {
-                System.out.println("Found no commit with that "
+            if (found.isEmpty()) {
+                throw Utils.error("Found no commit with that "
                         + "message.");
-                System.exit(0);
             }
         } else {
-            System.out.println("Found no commit with that "
+            throw Utils.error("Found no commit with that "
                     + "message.");
-            System.exit(0);
         }
+        return found;
     }
 
-    /** Returns metadata for each commit. */
-    public void log() {
+    /** Returns each commit from the head back to the initial commit. */
+    public List<CommitNode> log() {
+        List<CommitNode> commits = new ArrayList<>();
         CommitNode curr = _head;
         while (curr != null) {
-            System.out.println(curr.toString());
+            commits.add(curr);
             if (curr.getParent() == null) {
                 break;
             } else {
-                curr = Utils.readObject(new File(Main.NODES,
+                curr = _repo.readObject(_repo.commitFile(
                     curr.getParent()), CommitNode.class);
             }
         }
+        return commits;
     }
 
     /** Resets to the COMMIT with given ID. */
     public void reset(String commit) {
-        if (commit.length() < _shortIDLength) {
+        if (commit.length() < _repo.idLength()) {
             commit = findCommitID(commit);
         }
         if (commit == null) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw Utils.error("No commit with that id exists.");
         }
-        File file = new File(Main.NODES, commit);
+        File file = _repo.commitFile(commit);
         if (!file.exists()) {
-            System.out.println("No commit with that id exists.");
-            System.exit(0);
+            throw Utils.error("No commit with that id exists.");
         }
-        CommitNode commitNode = Utils.readObject(file, CommitNode.class);
-        for (String filename : Objects.requireNonNull(
-                Utils.plainFilenamesIn(Main.CWD))) {
+        CommitNode commitNode = _repo.readObject(file, CommitNode.class);
+        for (String filename : _repo.workingFiles()) {
             if (!_head.containsFile(filename)
                     && commitNode.containsFile(filename)) {
-                System.out.println("There is an untracked file in the way; "
+                throw Utils.error("There is an untracked file in the way; "
                         + "delete it, or add and commit it first.");
-                System.exit(0);
             }
         }
+        SparseCheckout sparse = _repo.sparseCheckout();
         if (commitNode.getFiles() != null) {
+            List<String> blobs = new ArrayList<>();
+            for (Map.Entry<String, String> entry
+                     : commitNode.getFiles().entrySet()) {
+                if (sparse.includes(entry.getKey())) {
+                    blobs.add(entry.getValue());
+                }
+            }
+            _repo.prefetch(blobs);
             for (String filename : commitNode.getFiles().keySet()) {
+                if (!sparse.includes(filename)) {
+                    continue;
+                }
                 String blobID = commitNode.getFiles().get(filename);
-                Blob blob = Blob.fromFileObj(blobID);
+                Blob blob = Blob.fromFileObj(_repo, blobID);
                 checkout(commitNode.getID(), blob);
             }
         }
         if (_head.getFiles() != null) {
             for (String filename : _head.getFiles().keySet()) {
-                if (!commitNode.containsFile(filename)) {
-                    Blob blob = Blob.fromFileObj(
+                if (!commitNode.containsFile(filename)
+                        && sparse.includes(filename)) {
+                    Blob blob = Blob.fromFileObj(_repo,
                             _head.getFiles().get(filename));
-                    blob.destroyBlob();
+                    blob.destroyBlob(_repo);
                 }
             }
         }
@@ -633,11 +972,93 @@ public class CommitTree implements Serializable {
         return _branches;
     }
 
+    /** Returns the history of each branch. */
+    public HashMap<String, LinkedList<String>> getBranchHistory() {
+        return _branchHistory;
+    }
+
     /** Returns _headName. */
     public String currentBranch() {
         return _headName;
     }
 
+    /** Returns a record of the state of this tree that restore can put
+     *  back, taken in time proportional to the number of branches. */
+    Savepoint savepoint() {
+        return new Savepoint(this);
+    }
+
+    /** Puts this tree back as it was when SAVED was taken. Branch
+     *  histories are only ever appended to in place or replaced, so
+     *  each is restored by putting back the list it had then and
+     *  dropping what was appended to it since. */
+    void restore(Savepoint saved) {
+        _head = saved._head;
+        _headName = saved._headName;
+        _branches = new HashMap<>(saved._branches);
+        _branchHistory = new HashMap<>();
+        for (Map.Entry<String, LinkedList<String>> entry
+                 : saved._histories.entrySet()) {
+            LinkedList<String> history = entry.getValue();
+            int size = saved._sizes.get(entry.getKey());
+            while (history.size() > size) {
+                history.removeLast();
+            }
+            _branchHistory.put(entry.getKey(), history);
+        }
+        _potentialAncestors.clear();
+        _conflicted = saved._conflicted;
+        _checkedOut = saved._checkedOut;
+    }
+
+    /** The state of a CommitTree at some point, from which it can be
+     *  restored. */
+    static final class Savepoint {
+        /** Records the state of TREE. */
+        private Savepoint(CommitTree tree) {
+            _head = tree._head;
+            _headName = tree._headName;
+            _branches = new HashMap<>(tree._branches);
+            _histories = new HashMap<>(tree._branchHistory);
+            for (Map.Entry<String, LinkedList<String>> entry
+                     : tree._branchHistory.entrySet()) {
+                _sizes.put(entry.getKey(), entry.getValue().size());
+            }
+            _conflicted = tree._conflicted;
+            _checkedOut = tree._checkedOut;
+        }
+
+        /** The head commit. */
+        private final CommitNode _head;
+        /** The name of the current branch. */
+        private final String _headName;
+        /** A copy of the mapping of branches to commits. */
+        private final HashMap<String, String> _branches;
+        /** Each branch mapped to its history list. */
+        private final HashMap<String, LinkedList<String>> _histories;
+        /** Each branch mapped to the length of its history. */
+        private final HashMap<String, Integer> _sizes = new HashMap<>();
+        /** Whether a merge was in conflict. */
+        private final boolean _conflicted;
+        /** Whether a branch was checked out during merge. */
+        private final boolean _checkedOut;
+    }
+
+    /** Fixes the serialized form of commit trees. */
+    private static final long serialVersionUID = -3619323633401443207L;
+
+    /** The line opening a conflicted file. */
+    private static final byte[] CONFLICT_START =
+            "<<<<<<< HEAD\n".getBytes(StandardCharsets.UTF_8);
+    /** The line between the two sides of a conflicted file. */
+    private static final byte[] CONFLICT_MIDDLE =
+            "=======\n".getBytes(StandardCharsets.UTF_8);
+    /** The line closing a conflicted file. */
+    private static final byte[] CONFLICT_END =
+            ">>>>>>>\n".getBytes(StandardCharsets.UTF_8);
+
+    /** The repository holding this tree. */
+    private transient Repository _repo;
     /** The current head of this tree. */
     private CommitNode _head;
     /**The current name of the active branch. */
@@ -655,7 +1076,5 @@ public class CommitTree implements Serializable {
     private boolean _conflicted;
     /** Check for whether or not branch has been checked out during merge. */
     private boolean _checkedOut;
-    /** Short ID length. */
-    private final int _shortIDLength = 40;
 
 }
@@ -0,0 +1,172 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/** An opt-in server that owns the repository in the working directory
+ *  and runs commands forwarded to it over a UNIX domain socket, so that
+ *  the commit tree and objects stay warm in one JVM between commands and
+ *  the working directory is watched instead of listed.
+ *  Start it with "daemon" (or "daemon start") and stop it with
+ *  "daemon stop". Commands are run one at a time.
+ *  @author ryangaray
+ */
+class Daemon {
+
+    /** Milliseconds a client has to send its command. */
+    static final long READ_TIMEOUT = 10_000;
+    /** Most arguments a forwarded command may have. */
+    static final int MAX_ARGS = 1 << 16;
+
+    /** Returns the socket a daemon for REPO listens on. */
+    static File socket(Repository repo) {
+        return new File(repo.gitletDir(), "daemon.sock");
+    }
+
+    /** Sends the command ARGS to a running daemon for REPO and copies
+     *  everything it prints to System.out. Returns false without doing
+     *  anything if no daemon is listening, in which case the caller
+     *  should run ARGS itself. */
+    static boolean forward(Repository repo, String... args) {
+        File socket = socket(repo);
+        if (!socket.exists()) {
+            return false;
+        }
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(
+                UnixDomainSocketAddress.of(socket.toPath()));
+        } catch (IOException excp) {
+            return false;
+        }
+        try (channel) {
+            DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(args.length);
+            for (String arg : args) {
+                out.writeUTF(arg);
+            }
+            out.flush();
+            Channels.newInputStream(channel).transferTo(System.out);
+            System.out.flush();
+            return true;
+        } catch (IOException excp) {
+            throw Utils.error("Lost connection to the Gitlet daemon: %s",
+                excp.getMessage());
+        }
+    }
+
+    /** Listens on the socket for REPO and runs forwarded commands on it
+     *  until told to stop. */
+    static void serve(Repository repo) {
+        if (forward(repo, "daemon", "ping")) {
+            throw Utils.error("A Gitlet daemon is already running.");
+        }
+        File socket = socket(repo);
+        socket.delete();
+        ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "gitlet-daemon-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+        try (ServerSocketChannel server =
+                 ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+            server.bind(UnixDomainSocketAddress.of(socket.toPath()));
+            repo.watchWorkingTree();
+            boolean running = true;
+            while (running) {
+                try (SocketChannel client = server.accept()) {
+                    running = handle(repo, client, timer);
+                } catch (IOException | RuntimeException excp) {
+                    System.err.println("Gitlet daemon: " + excp);
+                }
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Gitlet daemon failed: %s", excp.getMessage());
+        } finally {
+            timer.shutdownNow();
+            repo.unwatchWorkingTree();
+            socket.delete();
+        }
+    }
+
+    /** Reads one command from CLIENT, runs it on REPO and sends back
+     *  everything it printed. A client that has not sent its whole
+     *  command within READ_TIMEOUT milliseconds is disconnected by a task
+     *  on TIMER, so that it cannot hold up the others. Returns false iff
+     *  the command was "daemon stop". */
+    private static boolean handle(Repository repo, SocketChannel client,
+                                  ScheduledExecutorService timer)
+        throws IOException {
+        DataInputStream in = new DataInputStream(
+            new BufferedInputStream(Channels.newInputStream(client)));
+        String[] args;
+        ScheduledFuture<?> timeout =
+            timer.schedule(() -> disconnect(client), READ_TIMEOUT,
+                           TimeUnit.MILLISECONDS);
+        try {
+            int count = in.readInt();
+            if (count < 0 || count > MAX_ARGS) {
+                throw new IOException("malformed command");
+            }
+            args = new String[count];
+            for (int i = 0; i < args.length; i += 1) {
+                args[i] = in.readUTF();
+            }
+        } finally {
+            timeout.cancel(false);
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        boolean stop = false;
+        if (args.length == 2 && args[0].equals("daemon")) {
+            stop = args[1].equals("stop");
+        } else {
+            execute(repo, args, output);
+        }
+        OutputStream out = Channels.newOutputStream(client);
+        out.write(output.toByteArray());
+        out.flush();
+        return !stop;
+    }
+
+    /** Closes CLIENT, which has taken too long to send its command. */
+    private static void disconnect(SocketChannel client) {
+        try {
+            client.close();
+        } catch (IOException excp) {
+            /* Already closed. */
+        }
+    }
+
+    /** Runs the command ARGS on REPO, printing to OUTPUT. */
+    private static void execute(Repository repo, String[] args,
+                                ByteArrayOutputStream output) {
+        PrintStream out = new PrintStream(output, true);
+        try {
+            Main.run(repo, out, args);
+        } catch (GitletException excp) {
+            out.println(excp.getMessage());
+        } catch (RuntimeException excp) {
+            out.println("Internal error: " + excp);
+        } finally {
+            out.flush();
+        }
+    }
+}
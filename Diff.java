@@ -0,0 +1,128 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** Finds the lines two versions of a file have in common, by Myers'
+ *  O(ND) algorithm in its linear-space form: the middle snake of the
+ *  shortest edit script is found by searching forward and backward at
+ *  once, and the halves on either side of it are solved in turn. Common
+ *  leading and trailing lines, usually almost all of them, are matched
+ *  before any searching. Lines are compared as ints, so callers number
+ *  equal lines equally first.
+ *  @author ryangaray
+ */
+class Diff {
+
+    /** Returns, for each line of B, the index of the line of A it is
+     *  matched with by a shortest edit script from A to B, or -1 if it
+     *  was inserted. */
+    static int[] match(int[] a, int[] b) {
+        int[] result = new int[b.length];
+        Arrays.fill(result, -1);
+        new Diff(a, b, result).diff(0, a.length, 0, b.length);
+        return result;
+    }
+
+    /** A diff from A to B recording matches in RESULT. */
+    private Diff(int[] a, int[] b, int[] result) {
+        _a = a;
+        _b = b;
+        _result = result;
+        int size = 2 * (a.length + b.length) + 4;
+        _forward = new int[size];
+        _backward = new int[size];
+    }
+
+    /** Matches the lines of _A from ALO to AHI with those of _B from BLO
+     *  to BHI. */
+    private void diff(int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && _a[aLo] == _b[bLo]) {
+            _result[bLo] = aLo;
+            aLo += 1;
+            bLo += 1;
+        }
+        while (aLo < aHi && bLo < bHi && _a[aHi - 1] == _b[bHi - 1]) {
+            aHi -= 1;
+            bHi -= 1;
+            _result[bHi] = aHi;
+        }
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+        int[] snake = middleSnake(aLo, aHi, bLo, bHi);
+        diff(aLo, snake[0], bLo, snake[1]);
+        for (int i = 0; snake[0] + i < snake[2]; i += 1) {
+            _result[snake[1] + i] = snake[0] + i;
+        }
+        diff(snake[2], aHi, snake[3], bHi);
+    }
+
+    /** Returns the middle snake of a shortest edit script from the lines
+     *  of _A from ALO to AHI to those of _B from BLO to BHI, as the start
+     *  and end points {x, y, u, v} of its diagonal run. */
+    private int[] middleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int offset = (n + m + 1) / 2 + 1;
+        int max = (n + m + 1) / 2;
+        _forward[offset + 1] = 0;
+        _backward[offset + 1] = 0;
+        for (int d = 0; d <= max; d += 1) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d
+                    && _forward[offset + k - 1] < _forward[offset + k + 1]
+                    ? _forward[offset + k + 1] : _forward[offset + k - 1] + 1;
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m && _a[aLo + x] == _b[bLo + y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _forward[offset + k] = x;
+                int c = delta - k;
+                if (odd && c >= -(d - 1) && c <= d - 1
+                    && x + _backward[offset + c] >= n) {
+                    return new int[] {
+                        aLo + x0, bLo + y0, aLo + x, bLo + y };
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d
+                    && _backward[offset + k - 1] < _backward[offset + k + 1]
+                    ? _backward[offset + k + 1]
+                    : _backward[offset + k - 1] + 1;
+                int y = x - k;
+                int x0 = x;
+                int y0 = y;
+                while (x < n && y < m
+                       && _a[aHi - 1 - x] == _b[bHi - 1 - y]) {
+                    x += 1;
+                    y += 1;
+                }
+                _backward[offset + k] = x;
+                int c = delta - k;
+                if (!odd && c >= -d && c <= d
+                    && x + _forward[offset + c] >= n) {
+                    return new int[] {
+                        aHi - x, bHi - y, aHi - x0, bHi - y0 };
+                }
+            }
+        }
+        throw new IllegalStateException("no middle snake");
+    }
+
+    /** The old lines. */
+    private final int[] _a;
+    /** The new lines. */
+    private final int[] _b;
+    /** The index in _a of the match of each line of _b, or -1. */
+    private final int[] _result;
+    /** Furthest x reached on each diagonal searching forward. */
+    private final int[] _forward;
+    /** Furthest distance from the end reached on each diagonal searching
+     *  backward. */
+    private final int[] _backward;
+}
@@ -0,0 +1,38 @@
+package gitlet;
+
+import java.util.Locale;
+
+/** How hard a Repository works to keep what it writes across a crash of
+ *  the machine. Every object and the head file are replaced atomically
+ *  whatever the durability, so a crash never leaves a torn file; the
+ *  durability decides when writes are forced to disk.
+ *  @author ryangaray
+ */
+public enum Durability {
+    /** Force each object, and its directory, to disk as it is written. */
+    OBJECT,
+    /** Keep the objects, commits and chunks written by a command in
+     *  .gitlet/tmp until just before the head file that refers to them
+     *  is replaced, then force them to disk together, rename them into
+     *  place and sync each directory once. The default. */
+    COMMAND,
+    /** Never force writes to disk, leaving it to the operating system. */
+    NONE;
+
+    /** Name of the system property giving the default durability. */
+    static final String PROPERTY = "gitlet.durability";
+
+    /** Returns the durability named by the system property PROPERTY, or
+     *  COMMAND if it is not set. */
+    static Durability fromProperty() {
+        String name = System.getProperty(PROPERTY);
+        if (name == null) {
+            return COMMAND;
+        }
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException excp) {
+            throw Utils.error("Unknown durability %s.", name);
+        }
+    }
+}
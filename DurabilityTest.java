@@ -0,0 +1,77 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+/** Tests of when and how a Repository writes its files to disk.
+ *  @author ryangaray
+ */
+public class DurabilityTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    @Test
+    public void commandWritesWaitForFlush() throws IOException {
+        Repository repo = _repos.create();
+        repo.setDurability(Durability.COMMAND);
+        byte[] chunk = "a chunk\n".getBytes();
+        String id = repo.writeChunk(chunk);
+        File chunks = new File(repo.gitletDir(), "chunks");
+        File file = new File(chunks, id);
+        assertFalse(file.exists());
+        assertNotEquals(chunks, repo.chunkFile(id).getParentFile());
+        assertArrayEquals(chunk, Utils.readContents(repo.chunkFile(id)));
+        repo.flush();
+        assertEquals(file, repo.chunkFile(id));
+        assertArrayEquals(chunk, Utils.readContents(file));
+    }
+
+    @Test
+    public void commandsFlushTheirObjects() throws IOException {
+        Repository repo = _repos.create();
+        repo.setDurability(Durability.COMMAND);
+        CommitNode head = PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        File blob = repo.objectFile(head.getFiles().get("a.txt"));
+        assertEquals(repo.objectsDir(), blob.getParentFile());
+        assertTrue(blob.exists());
+        assertEquals(new File(repo.gitletDir(), "commits"),
+                     repo.commitFile(head.getID()).getParentFile());
+    }
+
+    @Test
+    public void gcKeepsWritesWaitingForFlush() throws IOException {
+        Repository repo = _repos.create();
+        repo.setDurability(Durability.COMMAND);
+        Utils.writeContents(repo.workingFile("a.txt"), "a\n");
+        Blob blob = new Blob(repo, "a.txt");
+        blob.saveBlob(repo);
+        repo.gc(0);
+        File file = repo.objectFile(blob.getID());
+        assertEquals(repo.objectsDir(), file.getParentFile());
+        assertEquals("a\n", repo.readBlob(blob.getID()).getContents(repo));
+    }
+
+    @Test
+    public void tornChunksAreRewritten() throws IOException {
+        Repository repo = _repos.create();
+        repo.setDurability(Durability.NONE);
+        byte[] chunk = "a longer chunk\n".getBytes();
+        String id = repo.writeChunk(chunk);
+        File file = repo.chunkFile(id);
+        Utils.writeContents(file, Arrays.copyOf(chunk, 4));
+        assertEquals(id, repo.writeChunk(chunk));
+        assertArrayEquals(chunk, Utils.readContents(file));
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
@@ -0,0 +1,198 @@
+package gitlet;
+
+import java.io.File;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/** Java Flight Recorder events for Gitlet's object store, commits, merges
+ *  and working-tree writes, shown under "Gitlet" in JDK Mission Control.
+ *  Each event is started by a static start method and recorded by
+ *  finish; when JFR is not recording these do nothing.
+ *  @author ryangaray
+ */
+final class Events {
+
+    /** Not instantiable. */
+    private Events() {
+    }
+
+    /** Reading an object or commit from the object store. */
+    @Name("gitlet.ObjectRead")
+    @Label("Object Read")
+    @Category("Gitlet")
+    @Description("Read and deserialize an object")
+    static final class ObjectRead extends Event {
+        /** File name of the object, normally its ID. */
+        @Label("ID")
+        private String id;
+        /** Class of the object. */
+        @Label("Type")
+        private String type;
+        /** Size of the serialized object. */
+        @Label("Bytes")
+        @DataAmount
+        private long bytes;
+
+        /** Returns a started event reading FILE as an object of class
+         *  TYPE. */
+        static ObjectRead start(File file, Class<?> type) {
+            ObjectRead event = new ObjectRead();
+            event.id = file.getName();
+            event.type = type.getSimpleName();
+            event.begin();
+            return event;
+        }
+
+        /** Records this event, which read BYTES bytes. */
+        void finish(long bytes) {
+            if (shouldCommit()) {
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    /** Writing an object or commit to the object store. */
+    @Name("gitlet.ObjectWrite")
+    @Label("Object Write")
+    @Category("Gitlet")
+    @Description("Serialize and write an object")
+    static final class ObjectWrite extends Event {
+        /** File name of the object, normally its ID. */
+        @Label("ID")
+        private String id;
+        /** Class of the object. */
+        @Label("Type")
+        private String type;
+        /** Size of the serialized object. */
+        @Label("Bytes")
+        @DataAmount
+        private long bytes;
+
+        /** Returns a started event writing OBJ to FILE. */
+        static ObjectWrite start(File file, Object obj) {
+            ObjectWrite event = new ObjectWrite();
+            event.id = file.getName();
+            event.type = obj.getClass().getSimpleName();
+            event.begin();
+            return event;
+        }
+
+        /** Records this event, which wrote BYTES bytes. */
+        void finish(long bytes) {
+            if (shouldCommit()) {
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+
+    /** Creating a commit, including snapshotting its files. */
+    @Name("gitlet.CommitCreated")
+    @Label("Commit Created")
+    @Category("Gitlet")
+    @Description("Create and save a commit")
+    static final class CommitCreated extends Event {
+        /** ID of the commit. */
+        @Label("ID")
+        private String id;
+        /** Log message of the commit. */
+        @Label("Message")
+        private String message;
+        /** Number of files the commit tracks. */
+        @Label("Files")
+        private int files;
+        /** True iff the commit is a merge. */
+        @Label("Merge")
+        private boolean merge;
+
+        /** Returns a started event. */
+        static CommitCreated start() {
+            CommitCreated event = new CommitCreated();
+            event.begin();
+            return event;
+        }
+
+        /** Records this event, which created NODE. */
+        void finish(CommitNode node) {
+            if (shouldCommit()) {
+                id = node.getID();
+                message = node.getLog();
+                files = node.getFiles() == null ? 0 : node.getFiles().size();
+                merge = node.isMerged();
+                commit();
+            }
+        }
+    }
+
+    /** One phase of a merge. */
+    @Name("gitlet.MergePhase")
+    @Label("Merge Phase")
+    @Category("Gitlet")
+    @Description("Ancestor search or a pass over one side of a merge")
+    static final class MergePhase extends Event {
+        /** Branch being merged into the current one. */
+        @Label("Branch")
+        private String branch;
+        /** Name of the phase. */
+        @Label("Phase")
+        private String phase;
+
+        /** Returns a started event for PHASE of merging BRANCH. */
+        static MergePhase start(String branch, String phase) {
+            MergePhase event = new MergePhase();
+            event.branch = branch;
+            event.phase = phase;
+            event.begin();
+            return event;
+        }
+
+        /** Records this event. */
+        void finish() {
+            if (shouldCommit()) {
+                commit();
+            }
+        }
+    }
+
+    /** Writing files into the working directory. */
+    @Name("gitlet.WorkingTreeWrite")
+    @Label("Working Tree Write")
+    @Category("Gitlet")
+    @Description("Write tracked files to the working directory")
+    static final class WorkingTreeWrite extends Event {
+        /** ID of the commit or blob written. */
+        @Label("Source")
+        private String source;
+        /** Number of files written. */
+        @Label("Files")
+        private int files;
+        /** Bytes written. */
+        @Label("Bytes")
+        @DataAmount
+        private long bytes;
+
+        /** Returns a started event writing the files of SOURCE. */
+        static WorkingTreeWrite start(String source) {
+            WorkingTreeWrite event = new WorkingTreeWrite();
+            event.source = source;
+            event.begin();
+            return event;
+        }
+
+        /** Records this event, which wrote FILES files of BYTES
+         *  bytes. */
+        void finish(int files, long bytes) {
+            if (shouldCommit()) {
+                this.files = files;
+                this.bytes = bytes;
+                commit();
+            }
+        }
+    }
+}
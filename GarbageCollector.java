@@ -0,0 +1,188 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/** Deletes the objects, chunks and commits of a repository that cannot
+ *  be reached from its branches, head or stage. Marking finds the
+ *  reachable commits with the bitmaps of the CommitGraph and reads them
+ *  in parallel for their blobs, and those blobs for their chunks if there
+ *  are any chunks; sweeping deletes whatever was not marked, except files
+ *  written within a grace period, which may belong to a command still
+ *  running in another process. Sweeping also reads the marked chunks
+ *  back, since writing a chunk trusts one already stored under its name,
+ *  and deletes any that are corrupt.
+ *  @author ryangaray
+ */
+class GarbageCollector {
+
+    /** Default grace period in seconds: two weeks. */
+    static final long GRACE = 14 * 24 * 60 * 60;
+
+    /** A collector for REPO, whose commit tree is TREE and commit graph
+     *  GRAPH, sparing files modified less than GRACESECONDS seconds
+     *  ago. */
+    GarbageCollector(Repository repo, CommitTree tree, CommitGraph graph,
+                     long graceSeconds) {
+        _repo = repo;
+        _tree = tree;
+        _graph = graph;
+        _cutoff = System.currentTimeMillis() - 1000 * graceSeconds;
+    }
+
+    /** Marks every reachable commit and blob. */
+    void mark() {
+        List<String> roots = new ArrayList<>(_tree.getBranches().values());
+        roots.add(_tree.getHead().getID());
+        for (Collection<String> history
+                 : _tree.getBranchHistory().values()) {
+            roots.addAll(history);
+        }
+        markBlobs(_tree.getHead());
+        markStaged(_repo.stageDir());
+        markStaged(_repo.removeDir());
+
+        _graph.update(roots);
+        List<ObjectId> commits = new ArrayList<>();
+        _graph.reachable(roots).forEach(p -> commits.add(_graph.id(p)));
+        _commits.addAll(commits);
+        commits.parallelStream().forEach(id -> {
+            File file = _repo.commitFile(id.toString());
+            if (file.exists()) {
+                markBlobs(Utils.readObject(file, CommitNode.class));
+            }
+        });
+        File[] chunks = Utils.listFiles(_repo.chunksDir());
+        if (chunks != null && chunks.length > 0) {
+            _blobs.parallelStream().forEach(this::markChunks);
+        }
+    }
+
+    /** Marks the chunks of the blob ID, if it is chunked. */
+    private void markChunks(ObjectId id) {
+        File file = _repo.objectFile(id.toString());
+        if (!file.exists()) {
+            return;
+        }
+        Blob blob = Utils.readObject(file, Blob.class);
+        if (blob.isChunked()) {
+            for (String chunk : blob.getChunks()) {
+                _chunks.add(ObjectId.fromHex(chunk));
+            }
+        }
+    }
+
+    /** Deletes the unmarked files in the objects, chunks and commits
+     *  directories, and abandoned temporary files, that are older than
+     *  the grace period. The collector runs holding the writer and head
+     *  locks after flushing, and every command writes its temporary files
+     *  while holding one of them, so the temporary files left are
+     *  abandoned unless still waiting for a flush. Returns the result. */
+    GcResult sweep() {
+        GcResult result = new GcResult(_commits.size(), _blobs.size());
+        sweep(_repo.nodesDir(), _commits, result);
+        sweep(_repo.objectsDir(), _blobs, result);
+        sweep(_repo.chunksDir(), _chunks, result);
+        dropCorruptChunks(result);
+        sweep(_repo.tmpDir(), null, result);
+        return result;
+    }
+
+    /** Deletes the marked chunks whose contents no longer hash to their
+     *  IDs, such as chunks torn by a crash, recording them in RESULT.
+     *  Reading such a chunk then fails instead of returning the wrong
+     *  bytes, and the next file added that has it stores it anew. */
+    private void dropCorruptChunks(GcResult result) {
+        List<File> corrupt = _chunks.parallelStream()
+            .filter(this::isCorrupt)
+            .map(id -> _repo.chunkFile(id.toString()))
+            .collect(Collectors.toList());
+        for (File file : corrupt) {
+            long length = file.length();
+            _repo.deleteObject(file);
+            result.deleted(length);
+        }
+    }
+
+    /** Returns iff the stored chunk ID has contents that do not hash to
+     *  ID. */
+    private boolean isCorrupt(ObjectId id) {
+        File file = _repo.chunkFile(id.toString());
+        return file.isFile()
+            && !_repo.hash(Utils.readContents(file)).equals(id.toString());
+    }
+
+    /** Marks the blobs of NODE. */
+    private void markBlobs(CommitNode node) {
+        if (node.getFiles() != null) {
+            for (String blob : node.getFiles().values()) {
+                _blobs.add(ObjectId.fromHex(blob));
+            }
+        }
+    }
+
+    /** Marks the blobs staged in DIR. */
+    private void markStaged(File dir) {
+        File[] files = Utils.listFiles(dir);
+        if (files != null) {
+            for (File file : files) {
+                _blobs.add(ObjectId.fromHex(
+                    Utils.readObject(file, Blob.class).getID()));
+            }
+        }
+    }
+
+    /** Deletes the files in DIR whose names are not in MARKED, or all
+     *  files if MARKED is null, that are older than the grace period,
+     *  recording them in RESULT. */
+    private void sweep(File dir, Set<ObjectId> marked, GcResult result) {
+        File[] files = Utils.listFiles(dir);
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.lastModified() >= _cutoff
+                    || marked != null && isMarked(file, marked)
+                    || marked == null && _repo.isPending(file)) {
+                continue;
+            }
+            long length = file.length();
+            _repo.deleteObject(file);
+            result.deleted(length);
+        }
+    }
+
+    /** Returns iff FILE is named by an ID in MARKED. Files whose names
+     *  are not IDs are kept. */
+    private boolean isMarked(File file, Set<ObjectId> marked) {
+        String name = file.getName();
+        if (name.length() != _repo.idLength()) {
+            return true;
+        }
+        try {
+            return marked.contains(ObjectId.fromHex(name));
+        } catch (GitletException excp) {
+            return true;
+        }
+    }
+
+    /** The repository collected. */
+    private final Repository _repo;
+    /** Its commit tree. */
+    private final CommitTree _tree;
+    /** Its commit graph. */
+    private final CommitGraph _graph;
+    /** Files last modified at or after this time are kept. */
+    private final long _cutoff;
+    /** The IDs of the reachable commits. */
+    private final Set<ObjectId> _commits = ConcurrentHashMap.newKeySet();
+    /** The IDs of the reachable blobs. */
+    private final Set<ObjectId> _blobs = ConcurrentHashMap.newKeySet();
+    /** The IDs of the chunks of reachable blobs. */
+    private final Set<ObjectId> _chunks = ConcurrentHashMap.newKeySet();
+}
@@ -0,0 +1,57 @@
+package gitlet;
+
+/** The result of the gc command: how much was kept and deleted.
+ *  @author ryangaray
+ */
+public class GcResult {
+
+    /** A result in which COMMITS commits and BLOBS blobs were reachable
+     *  and nothing has yet been deleted. */
+    GcResult(int commits, int blobs) {
+        _commits = commits;
+        _blobs = blobs;
+    }
+
+    /** Records the deletion of a file of LENGTH bytes. */
+    void deleted(long length) {
+        _deleted += 1;
+        _bytes += length;
+    }
+
+    /** Returns the number of reachable commits. */
+    public int reachableCommits() {
+        return _commits;
+    }
+
+    /** Returns the number of reachable blobs. */
+    public int reachableBlobs() {
+        return _blobs;
+    }
+
+    /** Returns the number of files deleted. */
+    public int deletedFiles() {
+        return _deleted;
+    }
+
+    /** Returns the number of bytes freed. */
+    public long deletedBytes() {
+        return _bytes;
+    }
+
+    /** Returns the summary printed by the gc command. */
+    @Override
+    public String toString() {
+        return String.format("Kept %d commits and %d blobs; "
+                             + "removed %d files (%d bytes).",
+                             _commits, _blobs, _deleted, _bytes);
+    }
+
+    /** Number of reachable commits. */
+    private final int _commits;
+    /** Number of reachable blobs. */
+    private final int _blobs;
+    /** Number of files deleted. */
+    private int _deleted;
+    /** Number of bytes freed. */
+    private long _bytes;
+}
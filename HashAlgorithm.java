@@ -0,0 +1,141 @@
+package gitlet;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/** The hash functions that name Gitlet objects. A repository uses one,
+ *  chosen when it is created. Each algorithm keeps one MessageDigest per
+ *  thread, and files are read through MappedFiles, so hashing allocates
+ *  nothing but its result.
+ *  @author ryangaray
+ */
+public enum HashAlgorithm {
+    /** SHA-1, with 20-byte IDs. The default, and the only algorithm of
+     *  repositories created before algorithms could be chosen. */
+    SHA1("sha1", "SHA-1", 20),
+    /** SHA-256, with 32-byte IDs. */
+    SHA256("sha256", "SHA-256", 32);
+
+    /** An algorithm called NAME in Gitlet and JCANAME in the Java
+     *  security API, whose digests are LENGTH bytes long. */
+    HashAlgorithm(String name, String jcaName, int length) {
+        _name = name;
+        _jcaName = jcaName;
+        _length = length;
+        _digests = ThreadLocal.withInitial(this::newDigest);
+    }
+
+    /** Returns the algorithm called NAME, as in "sha1" or "sha256". */
+    static HashAlgorithm forName(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm._name.equals(name)) {
+                return algorithm;
+            }
+        }
+        throw Utils.error("Unknown object format %s.", name);
+    }
+
+    /** Returns the name of this algorithm in Gitlet. */
+    public String algorithmName() {
+        return _name;
+    }
+
+    /** Returns the number of bytes in a digest. */
+    public int length() {
+        return _length;
+    }
+
+    /** Returns the number of hexadecimal digits in a digest. */
+    public int hexLength() {
+        return 2 * _length;
+    }
+
+    /** Returns the digest of BYTES. */
+    ObjectId hash(byte[] bytes) {
+        long start = Metrics.start();
+        MessageDigest md = digest();
+        md.update(bytes);
+        Metrics.count(Metrics.Counter.BYTES_HASHED, bytes.length);
+        return finish(md, start);
+    }
+
+    /** Returns the digest of the remaining bytes of BUFFER, consuming
+     *  them. */
+    ObjectId hash(ByteBuffer buffer) {
+        long start = Metrics.start();
+        MessageDigest md = digest();
+        Metrics.count(Metrics.Counter.BYTES_HASHED, buffer.remaining());
+        md.update(buffer);
+        return finish(md, start);
+    }
+
+    /** Returns the digest of the concatenation of VALS, which may be any
+     *  mixture of byte arrays and Strings, the latter encoded in UTF-8. */
+    ObjectId hash(Object... vals) {
+        long start = Metrics.start();
+        MessageDigest md = digest();
+        for (Object val : vals) {
+            byte[] bytes;
+            if (val instanceof byte[]) {
+                bytes = (byte[]) val;
+            } else if (val instanceof String) {
+                bytes = ((String) val).getBytes(StandardCharsets.UTF_8);
+            } else {
+                throw new IllegalArgumentException("improper type to hash");
+            }
+            md.update(bytes);
+            Metrics.count(Metrics.Counter.BYTES_HASHED, bytes.length);
+        }
+        return finish(md, start);
+    }
+
+    /** Returns the digest of the contents of FILE, which is streamed or,
+     *  if large, memory-mapped by MappedFiles. */
+    ObjectId hash(Path file) {
+        long start = Metrics.start();
+        MessageDigest md = digest();
+        MappedFiles.forEach(file, buffer -> {
+            Metrics.count(Metrics.Counter.BYTES_HASHED, buffer.remaining());
+            md.update(buffer);
+        });
+        return finish(md, start);
+    }
+
+    /** Returns this thread's digest, reset. */
+    private MessageDigest digest() {
+        MessageDigest md = _digests.get();
+        md.reset();
+        return md;
+    }
+
+    /** Returns the digest computed by MD, counting a hash that began at
+     *  START. */
+    private ObjectId finish(MessageDigest md, long start) {
+        ObjectId id = ObjectId.wrap(md.digest());
+        Metrics.count(Metrics.Counter.HASHES, 1);
+        Metrics.time(Metrics.Timer.HASH, start);
+        return id;
+    }
+
+    /** Returns a new MessageDigest for this algorithm. */
+    MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(_jcaName);
+        } catch (NoSuchAlgorithmException excp) {
+            throw new IllegalArgumentException("System does not support "
+                                               + _jcaName);
+        }
+    }
+
+    /** Name of this algorithm in Gitlet. */
+    private final String _name;
+    /** Name of this algorithm in the Java security API. */
+    private final String _jcaName;
+    /** Length of a digest in bytes. */
+    private final int _length;
+    /** Per-thread digests. */
+    private final ThreadLocal<MessageDigest> _digests;
+}
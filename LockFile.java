@@ -0,0 +1,127 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/** A readers-writer lock shared by every process using a repository,
+ *  held as an operating-system lock on a file with FileChannel.lock.
+ *  Such locks belong to the whole process, so threads of one process
+ *  share a single shared lock, counting its holders, and wait for each
+ *  other before asking for the exclusive one. For the same reason there
+ *  is one LockFile per file in a process, however many Repository
+ *  objects are open on it.
+ *  @author ryangaray
+ */
+class LockFile {
+
+    /** A lock on FILE, which is created when first locked. */
+    private LockFile(File file) {
+        _file = file;
+    }
+
+    /** Returns the lock on FILE, the same object for every path naming
+     *  it. */
+    static LockFile of(File file) {
+        File canonical;
+        try {
+            canonical = file.getCanonicalFile();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot lock %s: %s", file, excp.getMessage());
+        }
+        return LOCKS.computeIfAbsent(canonical, LockFile::new);
+    }
+
+    /** Waits for and takes the shared lock. */
+    synchronized void lockShared() {
+        while (_holders < 0) {
+            await();
+        }
+        if (_holders == 0) {
+            lock(true);
+        }
+        _holders += 1;
+    }
+
+    /** Releases the shared lock taken by lockShared. */
+    synchronized void unlockShared() {
+        _holders -= 1;
+        if (_holders == 0) {
+            unlock();
+            notifyAll();
+        }
+    }
+
+    /** Waits for and takes the exclusive lock. */
+    synchronized void lockExclusive() {
+        while (_holders != 0) {
+            await();
+        }
+        lock(false);
+        _holders = -1;
+    }
+
+    /** Releases the exclusive lock taken by lockExclusive. */
+    synchronized void unlockExclusive() {
+        _holders = 0;
+        unlock();
+        notifyAll();
+    }
+
+    /** Waits for another thread of this process to release the lock. */
+    private void await() {
+        try {
+            wait();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            throw Utils.error("Interrupted while waiting for %s.", _file);
+        }
+    }
+
+    /** Opens the file and waits for a lock on it, shared iff SHARED. */
+    private void lock(boolean shared) {
+        try {
+            _channel = FileChannel.open(_file.toPath(),
+                                        StandardOpenOption.CREATE,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+            _channel.lock(0, Long.MAX_VALUE, shared);
+        } catch (IOException excp) {
+            unlock();
+            throw Utils.error("Cannot lock %s: %s", _file, excp.getMessage());
+        } catch (OverlappingFileLockException excp) {
+            unlock();
+            throw Utils.error("Cannot lock %s: already locked in this "
+                              + "process.", _file);
+        }
+    }
+
+    /** Releases the lock and closes the file. */
+    private void unlock() {
+        try {
+            if (_channel != null) {
+                _channel.close();
+            }
+        } catch (IOException excp) {
+            /* Closing the channel released the lock regardless. */
+        } finally {
+            _channel = null;
+        }
+    }
+
+    /** The lock on each canonical file locked by this process. */
+    private static final Map<File, LockFile> LOCKS =
+        new ConcurrentHashMap<>();
+
+    /** The lock file. */
+    private final File _file;
+    /** The open lock file, while locked. */
+    private FileChannel _channel;
+    /** Number of holders of the shared lock, or -1 while the exclusive
+     *  lock is held. */
+    private int _holders;
+}
@@ -0,0 +1,148 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/** Tests of LockFile.
+ *  @author ryangaray
+ */
+public class LockFileTest {
+
+    /** Milliseconds to wait for a lock that should be granted. */
+    static final long GRANTED = 10_000;
+    /** Milliseconds to wait for a lock that should not be granted. */
+    static final long REFUSED = 300;
+
+    /** Holds the exclusive lock on the file ARGS[0] until its standard
+     *  input is closed, saying "locked" once it has it. Run in a separate
+     *  process, since FileChannel locks exclude only other processes. */
+    public static class Holder {
+        /** Locks ARGS[0]. */
+        public static void main(String[] args) throws IOException {
+            LockFile lock = LockFile.of(new File(args[0]));
+            lock.lockExclusive();
+            System.out.println("locked");
+            System.out.flush();
+            while (System.in.read() >= 0) {
+                continue;
+            }
+            lock.unlockExclusive();
+        }
+    }
+
+    /** Returns a new temporary lock file. */
+    File newFile() throws IOException {
+        _file = Files.createTempFile("gitlet-lock", ".lock").toFile();
+        return _file;
+    }
+
+    /** Deletes the lock file and repositories of the last test. */
+    @After
+    public void deleteFiles() throws IOException {
+        if (_file != null) {
+            _file.delete();
+            _file = null;
+        }
+        _repos.deleteAll();
+    }
+
+    /** Starts a thread running ACTION and returns a latch counted down
+     *  once ACTION is done. */
+    static CountDownLatch start(Runnable action) {
+        CountDownLatch done = new CountDownLatch(1);
+        Thread thread = new Thread(() -> {
+            action.run();
+            done.countDown();
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return done;
+    }
+
+    @Test
+    public void readersShareTheLock() throws Exception {
+        LockFile lock = LockFile.of(newFile());
+        lock.lockShared();
+        CountDownLatch other = start(lock::lockShared);
+        assertTrue(other.await(GRANTED, TimeUnit.MILLISECONDS));
+        lock.unlockShared();
+        lock.unlockShared();
+        lock.lockExclusive();
+        lock.unlockExclusive();
+    }
+
+    @Test
+    public void writerWaitsForReaders() throws Exception {
+        LockFile lock = LockFile.of(newFile());
+        lock.lockShared();
+        CountDownLatch writer = start(lock::lockExclusive);
+        assertFalse(writer.await(REFUSED, TimeUnit.MILLISECONDS));
+        lock.unlockShared();
+        assertTrue(writer.await(GRANTED, TimeUnit.MILLISECONDS));
+        CountDownLatch reader = start(lock::lockShared);
+        assertFalse(reader.await(REFUSED, TimeUnit.MILLISECONDS));
+        lock.unlockExclusive();
+        assertTrue(reader.await(GRANTED, TimeUnit.MILLISECONDS));
+        lock.unlockShared();
+    }
+
+    @Test
+    public void oneLockPerFile() throws Exception {
+        File file = newFile();
+        LockFile lock = LockFile.of(file);
+        assertSame(lock, LockFile.of(new File(file.getParentFile(),
+                                              "./" + file.getName())));
+        lock.lockShared();
+        LockFile.of(file).lockShared();
+        lock.unlockShared();
+        lock.unlockShared();
+    }
+
+    @Test
+    public void repositoriesOnOneRootShareLocks() throws Exception {
+        Repository first = _repos.create();
+        Repository second = new Repository(first.root());
+        first.read(tree -> second.branches());
+        first.branch("one");
+        second.branch("two");
+        assertTrue(first.branches().containsKey("two"));
+    }
+
+    @Test
+    public void otherProcessesAreExcluded() throws Exception {
+        File file = newFile();
+        Process holder = new ProcessBuilder(
+            new File(System.getProperty("java.home"), "bin/java").getPath(),
+            "-cp", System.getProperty("java.class.path"),
+            Holder.class.getName(), file.getPath())
+            .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try {
+            BufferedReader out = new BufferedReader(
+                new InputStreamReader(holder.getInputStream()));
+            assertEquals("locked", out.readLine());
+            LockFile lock = LockFile.of(file);
+            CountDownLatch reader = start(lock::lockShared);
+            assertFalse(reader.await(REFUSED, TimeUnit.MILLISECONDS));
+            holder.getOutputStream().close();
+            assertTrue(reader.await(GRANTED, TimeUnit.MILLISECONDS));
+            lock.unlockShared();
+        } finally {
+            holder.destroy();
+            holder.waitFor();
+        }
+    }
+
+    /** The lock file of the current test. */
+    private File _file;
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
@@ -1,9 +1,17 @@
 package gitlet;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.util.Objects;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
 
 /** Driver class for Gitlet, the tiny stupid version-control system.
+ *  This is a thin command-line adapter over Repository.
  *  @author Ryan Garay
  */
 public class Main {
@@ -14,333 +22,377 @@ public class Main {
     /** Pointer to the working directory. */
     static final File CWD = new File(WORKINGDIRECTORY);
 
-    /** Pointer to the .gitlet directory. */
-    static final File GITLET = new File(".gitlet");
-
-    /** Pointer to the stage directory. */
-    static final File STAGE = Utils.join(GITLET, "stage");
-
-    /** Pointer to the objects directory. */
-    static final File OBJECTS = Utils.join(GITLET, "objects");
-
-    /** Pointer to the nodes directory. */
-    static final File NODES = Utils.join(GITLET, "commits");
+    /** Usage: java gitlet.Main [--stats] [--stats-file=FILE] ARGS, where
+     *  ARGS contains <COMMAND> <OPERAND> .... Commands are forwarded to a
+     *  running daemon if there is one, and are otherwise run in this
+     *  process. */
+    public static void main(String... args) {
+        try {
+            Repository repo = new Repository(CWD);
+            if (args.length > 0 && args[0].equals("daemon")) {
+                daemonCommand(repo, args);
+            } else if (isBatch(args) || !Daemon.forward(repo, args)) {
+                run(repo, System.out, args);
+            }
+        } catch (GitletException excp) {
+            System.out.println(excp.getMessage());
+        }
+    }
 
-    /** Pointer to the stage removal directory. */
-    static final File REMOVE = Utils.join(GITLET, "remove");
+    /** Runs the command given by ARGS on REPO, printing its output to
+     *  OUT. ARGS may start with the options --stats, which prints a
+     *  summary of performance metrics after the output, and
+     *  --stats-file=FILE, which appends them as a line of JSON to FILE.
+     *  Throws a GitletException with the message to be printed on
+     *  errors. */
+    static void run(Repository repo, PrintStream out, String... args) {
+        int first = 0;
+        boolean stats = false;
+        String statsFile = null;
+        for (; first < args.length && args[first].startsWith("--stats");
+             first += 1) {
+            if (args[first].equals("--stats")) {
+                stats = true;
+            } else if (args[first].startsWith("--stats-file=")) {
+                statsFile = args[first].substring("--stats-file=".length());
+            } else {
+                throw Utils.error("Incorrect operands.");
+            }
+        }
+        String[] command = Arrays.copyOfRange(args, first, args.length);
+        if (!stats && statsFile == null) {
+            dispatch(repo, out, command);
+            return;
+        }
+        String name = String.join(" ", command);
+        Metrics.reset();
+        Metrics.enable();
+        try {
+            dispatch(repo, out, command);
+        } finally {
+            Metrics.disable();
+            if (stats) {
+                Metrics.printSummary(name, out);
+            }
+            if (statsFile != null) {
+                Metrics.appendJson(name, Paths.get(statsFile));
+            }
+        }
+    }
 
-    /** Pointer to the head directory. */
-    static final File HEAD = Utils.join(GITLET, "head");
+    /** Returns iff ARGS, possibly after options, is a batch command. */
+    private static boolean isBatch(String[] args) {
+        for (String arg : args) {
+            if (!arg.startsWith("--stats")) {
+                return arg.equals("batch");
+            }
+        }
+        return false;
+    }
 
-    /** Value for Shortened commit ID. */
-    static final int IDLENGTH = 40;
+    /** Runs the command ARGS, without options, on REPO, printing to OUT
+     *  and timing it. */
+    static void dispatch(Repository repo, PrintStream out, String... args) {
+        if (args.length > 0 && args[0].equals("batch")) {
+            batchCommand(repo, out, args);
+            return;
+        }
+        long start = Metrics.start();
+        try {
+            execute(repo, out, args);
+        } finally {
+            Metrics.time(Metrics.Timer.COMMAND, start);
+        }
+    }
 
-    /** Usage: java gitlet.Main ARGS, where ARGS contains
-     *  <COMMAND> <OPERAND> .... */
-    public static void main(String... args) {
+    /** Runs the single command ARGS on REPO, printing to OUT. */
+    private static void execute(Repository repo, PrintStream out,
+                                String... args) {
         if (args.length == 0) {
-            System.out.println("Please enter a command.");
-            System.exit(0);
+            throw Utils.error("Please enter a command.");
         }
         switch (args[0]) {
         case "init":
-            initCommand(args);
+            initCommand(repo, args);
             break;
         case "add":
-            addCommand(args);
+            validateNumArgs(repo, "add", args, 2);
+            repo.add(args[1]);
             break;
         case "commit":
-            commitCommand(args);
+            validateNumArgs(repo, "commit", args, 2);
+            repo.commit(args[1]);
             break;
         case "checkout":
-            checkoutCommand(args);
+            checkoutCommand(repo, args);
             break;
         case "log":
-            logCommand(args);
+            if (args.length == 3 && args[1].equals("--")) {
+                repo.checkInitialized();
+                for (CommitNode commit : repo.log(args[2])) {
+                    out.println(commit);
+                }
+                break;
+            }
+            validateNumArgs(repo, "log", args, 1);
+            for (CommitNode commit : repo.log()) {
+                out.println(commit);
+            }
             break;
         case "rm":
-            rmCommand(args);
+            validateNumArgs(repo, "rm", args, 2);
+            repo.remove(args[1]);
             break;
         case "global-log":
-            globalLogCommand(args);
+            validateNumArgs(repo, "global-log", args, 1);
+            for (CommitNode commit : repo.globalLog()) {
+                out.println(commit);
+            }
+            break;
+        case "blame":
+            validateNumArgs(repo, "blame", args, 2);
+            out.print(repo.blame(args[1]));
             break;
         case "find":
-            findCommand(args);
+            validateNumArgs(repo, "find", args, 2);
+            for (String id : repo.find(args[1])) {
+                out.println(id);
+            }
             break;
         case "status":
-            statusCommand(args);
+            validateNumArgs(repo, "status", args, 1);
+            out.println(repo.status());
             break;
         case "branch":
-            branchCommand(args);
+            validateNumArgs(repo, "branch", args, 2);
+            repo.branch(args[1]);
             break;
         case "rm-branch":
-            rmBranch(args);
+            validateNumArgs(repo, "rm-branch", args, 2);
+            repo.removeBranch(args[1]);
             break;
         case "reset":
-            resetCommand(args);
+            validateNumArgs(repo, "reset", args, 2);
+            repo.reset(args[1]);
             break;
         case "merge":
-            mergeCommand(args);
+            mergeCommand(repo, out, args);
+            break;
+        case "cherry-pick":
+            validateNumArgs(repo, "cherry-pick", args, 2);
+            repo.cherryPick(args[1]);
+            break;
+        case "rebase":
+            validateNumArgs(repo, "rebase", args, 2);
+            printMergeResult(out, repo.rebase(args[1]));
+            break;
+        case "add-remote":
+            validateNumArgs(repo, "add-remote", args, 3);
+            repo.addRemote(args[1], args[2]);
+            break;
+        case "rm-remote":
+            validateNumArgs(repo, "rm-remote", args, 2);
+            repo.removeRemote(args[1]);
+            break;
+        case "fetch":
+            validateNumArgs(repo, "fetch", args, 3);
+            repo.fetch(args[1], args[2]);
+            break;
+        case "push":
+            validateNumArgs(repo, "push", args, 3);
+            repo.push(args[1], args[2]);
+            break;
+        case "pull":
+            validateNumArgs(repo, "pull", args, 3);
+            printMergeResult(out, repo.pull(args[1], args[2]));
+            break;
+        case "clone":
+            if (args.length == 4 && args[1].equals("--filter=blob:none")) {
+                new Repository(new File(args[3])).cloneFrom(args[2], true);
+                break;
+            } else if (args.length != 3) {
+                throw Utils.error("Incorrect operands.");
+            }
+            new Repository(new File(args[2])).cloneFrom(args[1], false);
+            break;
+        case "bundle":
+            bundleCommand(repo, out, args);
+            break;
+        case "sparse-checkout":
+            sparseCheckoutCommand(repo, out, args);
+            break;
+        case "gc":
+            gcCommand(repo, out, args);
             break;
         default:
-            System.out.println("No command with that name exists.");
-            System.exit(0);
+            throw Utils.error("No command with that name exists.");
         }
     }
 
-    /** Sets up persistence of gitlet. */
-    public static void setupPersistence() {
-        if (!GITLET.exists()) {
-            GITLET.mkdir();
-        }
-        if (!STAGE.exists()) {
-            STAGE.mkdir();
-        }
-        if (!OBJECTS.exists()) {
-            OBJECTS.mkdir();
-        }
-        if (!NODES.exists()) {
-            NODES.mkdir();
-        }
-        if (!REMOVE.exists()) {
-            REMOVE.mkdir();
-        }
-        if (!HEAD.exists()) {
-            HEAD.mkdir();
+    /** The init command for Gitlet on REPO. Args ARGS, which may
+     *  include --object-format=NAME, where NAME is sha1 or sha256. */
+    public static void initCommand(Repository repo, String[] args) {
+        String option = "--object-format=";
+        if (args.length == 2 && args[1].startsWith(option)) {
+            repo.init(HashAlgorithm.forName(
+                args[1].substring(option.length())));
+            return;
         }
+        validateNumArgs(repo, "init", args, 1);
+        repo.init();
     }
 
-    /** The amazing merge command for Gitlet. Args ARGS. */
-    public static void mergeCommand(String[] args) {
-        validateNumArgs("merge", args, 2);
-        CommitTree initial = getTree();
-        String branch = args[1];
-        initial.merge(branch);
-        updateHead(initial);
-    }
-
-    /** The reset command for Gitlet. Args ARGS. */
-    public static void resetCommand(String[] args) {
-        validateNumArgs("reset", args, 2);
-        CommitTree initial = getTree();
-        String commitID = args[1];
-        initial.reset(commitID);
-        updateHead(initial);
-    }
-
-    /** The rm-branch command for Gitlet. Args ARGS. */
-    public static void rmBranch(String[] args) {
-        validateNumArgs("rm-branch", args, 2);
-        String name = args[1];
-        CommitTree initial = getTree();
-        initial.removeBranch(name);
-        updateHead(initial);
-    }
-
-    /** The branch command for Gitlet. Args ARGS.*/
-    public static void branchCommand(String[] args) {
-        validateNumArgs("branch", args, 2);
-        String branchName = args[1];
-        CommitTree initial = getTree();
-        initial.branch(branchName);
-        updateHead(initial);
-    }
-
-    /** The status command for Gitlet. Args ARGS.*/
-    public static void statusCommand(String[] args) {
-        validateNumArgs("status", args, 1);
-        CommitTree initial = getTree();
-        initial.status();
-    }
-
-    /** The find command for Gitlet. Args ARGS.*/
-    public static void findCommand(String[] args) {
-        validateNumArgs("find", args, 2);
-        CommitTree initial = getTree();
-        initial.find(args[1]);
-    }
-
-    /** The global-log command for Gitlet. Args ARGS.*/
-    public static void globalLogCommand(String[] args) {
-        validateNumArgs("global-log", args, 1);
-        CommitTree initial = getTree();
-        initial.globalLog();
-    }
-
-    /** The rm command for Gitlet. Args ARGS.*/
-    public static void rmCommand(String[] args) {
-        validateNumArgs("rm", args, 2);
-        String filename = args[1];
-        CommitTree initial = getTree();
-        initial.removeFile(filename);
-        updateHead(initial);
-    }
-
-    /** The init command for Gitlet. Args ARGS.*/
-    public static void initCommand(String[] args) {
-        validateNumArgs("init", args, 1);
-        if (NODES.exists()) {
-            System.out.println("A Gitlet version-control "
-                + "system already exists in the current directory.");
-            System.exit(0);
+    /** The gc command for Gitlet on REPO, printing to OUT. Args ARGS,
+     *  which may include --grace=SECONDS, the age below which unreachable
+     *  files are kept. */
+    public static void gcCommand(Repository repo, PrintStream out,
+                                 String[] args) {
+        String option = "--grace=";
+        long grace = GarbageCollector.GRACE;
+        if (args.length == 2 && args[1].startsWith(option)) {
+            repo.checkInitialized();
+            try {
+                grace = Long.parseLong(args[1].substring(option.length()));
+            } catch (NumberFormatException excp) {
+                throw Utils.error("Incorrect operands.");
+            }
+        } else {
+            validateNumArgs(repo, "gc", args, 1);
         }
-        setupPersistence();
-        CommitTree initial = new CommitTree("initial commit");
-        updateHead(initial);
+        out.println(repo.gc(grace));
     }
 
-    /** The add command for Gitlet. Args ARGS.*/
-    public static void addCommand(String[] args) {
-        validateNumArgs("add", args, 2);
-        String filename = args[1];
-        File file = new File(filename);
-        CommitTree initial = getTree();
-        if (!file.exists()) {
-            System.out.println("File does not exist.");
-            System.exit(0);
-        }
-        String fileID = Utils.sha1((Object) Utils.readContents(file));
-        File blobFile = new File(STAGE, filename);
-        File stageRemoveFile = new File(REMOVE, filename);
-        if (initial.getHead().getFiles() != null
-                && initial.getHead().getFiles().containsKey(filename)) {
-            Blob blob
-                = Blob.fromFileObj(initial.getHead().getFiles().get(filename));
-            if (blob.getContents().equals(Utils.readContentsAsString(file))) {
-                if (blobFile.exists()) {
-                    blobFile.delete();
-                }
-                if (stageRemoveFile.exists()) {
-                    stageRemoveFile.delete();
-                }
-                System.exit(0);
+    /** The bundle command for Gitlet on REPO, printing to OUT. Args
+     *  ARGS. */
+    public static void bundleCommand(Repository repo, PrintStream out,
+                                     String[] args) {
+        repo.checkInitialized();
+        if (args.length == 4 && args[1].equals("create")) {
+            repo.createBundle(args[2], args[3]);
+        } else if (args.length == 3 && args[1].equals("unbundle")) {
+            for (Map.Entry<String, String> ref
+                     : repo.unbundle(args[2]).entrySet()) {
+                out.println(ref.getValue() + " " + ref.getKey());
             }
-        }
-        if (blobFile.exists()) {
-            Blob blob = Utils.readObject(blobFile, Blob.class);
-            blob.setFile(file);
         } else {
-            Blob blob = new Blob(file);
-            blob.saveBlob();
-        }
-        if (stageRemoveFile.exists()) {
-            stageRemoveFile.delete();
+            throw Utils.error("Incorrect operands.");
         }
-        updateHead(initial);
     }
 
-    /** The amazing commit command for Gitlet. Args ARGS.*/
-    public static void commitCommand(String[] args) {
-        validateNumArgs("commit", args, 2);
-        if (Objects.requireNonNull(STAGE.listFiles()).length
-            == 0 && Objects.requireNonNull(REMOVE.listFiles()).length == 0) {
-            System.out.println("No changes added to the commit.");
-            System.exit(0);
-        }
-        String msg = args[1];
-        if (msg.equals("")) {
-            System.out.println("Please enter a commit message.");
-            System.exit(0);
+    /** The sparse-checkout command for Gitlet on REPO, printing to OUT.
+     *  Args ARGS: set PATTERN..., list or disable. */
+    public static void sparseCheckoutCommand(Repository repo,
+                                             PrintStream out,
+                                             String[] args) {
+        repo.checkInitialized();
+        if (args.length >= 3 && args[1].equals("set")) {
+            repo.setSparseCheckout(
+                Arrays.asList(args).subList(2, args.length));
+        } else if (args.length == 2 && args[1].equals("list")) {
+            for (String pattern : repo.sparseCheckoutPatterns()) {
+                out.println(pattern);
+            }
+        } else if (args.length == 2 && args[1].equals("disable")) {
+            repo.setSparseCheckout(Arrays.asList());
+        } else {
+            throw Utils.error("Incorrect operands.");
         }
-        CommitTree initial = getTree();
-        initial.commit(msg);
-        updateHead(initial);
     }
 
-    /** The checkout command for Gitlet. Args ARGS.*/
-    public static void checkoutCommand(String[] args) {
-        validateNumArgs("checkout", args, 3);
-        CommitTree initial = getTree();
-        if (initial.getHead().getFiles() != null) {
-            if (args.length == 3) {
-                String filename = args[2];
-                Blob blob = Utils.readObject(
-                    new File(OBJECTS,
-                    initial.getHead().getFiles().get(filename)), Blob.class);
-                initial.checkout(blob);
-            } else if (args.length == 4) {
-                String commitID = args[1];
-                String filename = args[3];
-                if (commitID.length() < IDLENGTH) {
-                    commitID = initial.findCommitID(commitID);
-                }
-                File file = new File(NODES, commitID);
-                if (file.exists()) {
-                    CommitNode node = Utils.readObject(file,
-                            CommitNode.class);
-                    if (node.getFiles().containsKey(filename)) {
-                        Blob blob = Utils.readObject(new File(OBJECTS,
-                                node.getFiles().get(filename)), Blob.class);
-                        initial.checkout(commitID, blob);
-                    } else {
-                        System.out.println("File does not exist in "
-                                + "that commit.");
-                        System.exit(0);
-                    }
-                } else {
-                    System.out.println("No commit with that id exists.");
-                    System.exit(0);
-                }
-            } else {
-                initial.checkout(args[1]);
+    /** The daemon command for Gitlet on REPO. Args ARGS. */
+    public static void daemonCommand(Repository repo, String[] args) {
+        repo.checkInitialized();
+        if (args.length == 1 || args.length == 2 && args[1].equals("start")) {
+            Daemon.serve(repo);
+        } else if (args.length == 2 && args[1].equals("stop")) {
+            if (!Daemon.forward(repo, args)) {
+                throw Utils.error("No Gitlet daemon is running.");
             }
         } else {
-            initial.checkout(args[1]);
+            throw Utils.error("Incorrect operands.");
         }
-        updateHead(initial);
     }
 
-    /** The log command for Gitlet. Args ARGS.*/
-    public static void logCommand(String[] args) {
-        validateNumArgs("log", args, 1);
-        CommitTree initial = getTree();
-        initial.log();
+    /** The batch command for Gitlet on REPO, printing to OUT. Args
+     *  ARGS. */
+    public static void batchCommand(Repository repo, PrintStream out,
+                                    String[] args) {
+        if (args.length > 2) {
+            throw Utils.error("Incorrect operands.");
+        }
+        try (BufferedReader in = args.length == 2
+                 ? Files.newBufferedReader(Paths.get(args[1]))
+                 : new BufferedReader(new InputStreamReader(System.in))) {
+            Batch.run(repo, in, out);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read batch: %s", excp.getMessage());
+        }
     }
 
-    /** Updates the CommitTree stored in HEAD to initial. Tree INITIAL.*/
-    private static void updateHead(CommitTree initial) {
-        File file = Utils.join(HEAD, "currentHead");
-        Utils.writeObject(file, initial);
+    /** The amazing merge command for Gitlet on REPO, printing to OUT.
+     *  Args ARGS. */
+    public static void mergeCommand(Repository repo, PrintStream out,
+                                    String[] args) {
+        validateNumArgs(repo, "merge", args, 2);
+        printMergeResult(out, repo.merge(args[1]));
     }
 
-    /** Returns the CommitTree stored in HEAD. Args ARGS.*/
-    private static CommitTree getTree() {
-        return Utils.readObject(new File(HEAD,
-                "currentHead"), CommitTree.class);
+    /** Prints to OUT the message for the merge outcome RESULT. */
+    private static void printMergeResult(PrintStream out,
+                                         MergeResult result) {
+        switch (result) {
+        case CONFLICTED:
+            out.println("Encountered a merge conflict.");
+            break;
+        case FAST_FORWARDED:
+            out.println("Current branch fast-forwarded.");
+            break;
+        default:
+            break;
+        }
+    }
+
+    /** The checkout command for Gitlet on REPO. Args ARGS.*/
+    public static void checkoutCommand(Repository repo, String[] args) {
+        validateNumArgs(repo, "checkout", args, 3);
+        if (args.length == 3) {
+            repo.checkoutFile(args[2]);
+        } else if (args.length == 4) {
+            repo.checkoutFile(args[1], args[3]);
+        } else if (args.length == 2) {
+            repo.checkoutBranch(args[1]);
+        } else {
+            throw Utils.error("Incorrect operands.");
+        }
     }
 
     /**
      * Checks the number of arguments versus the expected number,
      * throws a RuntimeException if they do not match.
      *
+     * @param repo The repository the command runs on
      * @param cmd Name of command you are validating
      * @param args Argument array from command line
      * @param n Number of expected arguments
      */
-    public static void validateNumArgs(String cmd, String[] args, int n) {
-        if (!GITLET.exists() && !cmd.equals("init")) {
-            System.out.println("Not in an initialized Gitlet directory.");
-            System.exit(0);
+    public static void validateNumArgs(Repository repo, String cmd,
+                                       String[] args, int n) {
+        if (!cmd.equals("init")) {
+            repo.checkInitialized();
         }
         if (cmd.equals("checkout")) {
             if (args.length == 3 && !args[1].equals("--")) {
-                System.out.println("Incorrect operands.");
-                System.exit(0);
+                throw Utils.error("Incorrect operands.");
             } else if (args.length == 4 && !args[2].equals("--")) {
-                System.out.println("Incorrect operands.");
-                System.exit(0);
-            } else if (args.length == 2) {
-                return;
+                throw Utils.error("Incorrect operands.");
             }
             return;
         }
         if (args.length != n) {
             if (cmd.equals("commit")) {
-                System.out.println("Please enter a commit message.");
-                System.exit(0);
+                throw Utils.error("Please enter a commit message.");
             }
-            System.out.println("Incorrect operands.");
-            System.exit(0);
+            throw Utils.error("Incorrect operands.");
         }
     }
 }
@@ -0,0 +1,73 @@
+package gitlet;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/** Reads working files for hashing and comparison without copying them
+ *  onto the heap. Files smaller than a threshold are read through a
+ *  per-thread direct buffer; larger ones are memory-mapped one window at
+ *  a time, so files of any size, including those over 2 GB, are read in
+ *  constant memory. The threshold is the system property PROPERTY, in
+ *  bytes.
+ *  @author ryangaray
+ */
+class MappedFiles {
+
+    /** Name of the system property giving the threshold. */
+    static final String PROPERTY = "gitlet.mmapThreshold";
+    /** Threshold used if the property is not set. */
+    static final long DEFAULT_THRESHOLD = 8L << 20;
+    /** Most bytes mapped at once. */
+    static final long WINDOW = 64L << 20;
+    /** Size of the buffer used for files below the threshold. */
+    static final int BUFFER_SIZE = 1 << 16;
+
+    /** Passes the contents of FILE to ACTION in order, as buffers that
+     *  are valid only until ACTION returns. */
+    static void forEach(Path file, Consumer<ByteBuffer> action) {
+        try (FileChannel channel = FileChannel.open(file,
+                                                    StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size >= threshold()) {
+                for (long at = 0; at < size; at += WINDOW) {
+                    action.accept(channel.map(FileChannel.MapMode.READ_ONLY,
+                        at, Math.min(WINDOW, size - at)));
+                }
+                return;
+            }
+            ByteBuffer buffer = BUFFERS.get();
+            buffer.clear();
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                action.accept(buffer);
+                buffer.clear();
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read %s: %s", file.getFileName(),
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns the size in bytes of the smallest file that is mapped:
+     *  the system property PROPERTY, or DEFAULT_THRESHOLD if it is not
+     *  set. */
+    static long threshold() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null) {
+            return DEFAULT_THRESHOLD;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException excp) {
+            throw Utils.error("Invalid mmap threshold %s.", value);
+        }
+    }
+
+    /** Per-thread buffers for reading files below the threshold. */
+    private static final ThreadLocal<ByteBuffer> BUFFERS =
+        ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+}
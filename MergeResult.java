@@ -0,0 +1,13 @@
+package gitlet;
+
+/** The outcome of a successful merge.
+ *  @author ryangaray
+ */
+public enum MergeResult {
+    /** A merge commit was made without conflicts. */
+    MERGED,
+    /** A merge commit was made, but some files were in conflict. */
+    CONFLICTED,
+    /** The current branch was fast-forwarded to the given branch. */
+    FAST_FORWARDED
+}
@@ -0,0 +1,249 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/** A lightweight, process-wide registry of performance counters and
+ *  latency histograms. Recording is off unless enabled, and recording a
+ *  count or a latency never allocates: counters are slots of an atomic
+ *  array, and each histogram has one slot per power of two nanoseconds.
+ *  @author ryangaray
+ */
+class Metrics {
+
+    /** Things counted. */
+    enum Counter {
+        /** Files read whole. */
+        FILES_READ,
+        /** Bytes of files read. */
+        BYTES_READ,
+        /** Files written. */
+        FILES_WRITTEN,
+        /** Bytes of files written. */
+        BYTES_WRITTEN,
+        /** Directory listings. */
+        DIRECTORY_LISTINGS,
+        /** Objects deserialized. */
+        OBJECTS_DESERIALIZED,
+        /** Blobs read from the object store. */
+        BLOBS_READ,
+        /** Commits read from the object store. */
+        COMMITS_READ,
+        /** Object reads served from an ObjectCache. */
+        CACHE_HITS,
+        /** Hashes computed. */
+        HASHES,
+        /** Bytes hashed. */
+        BYTES_HASHED,
+        /** Files and directories forced to disk. */
+        FSYNCS
+    }
+
+    /** Operations timed. */
+    enum Timer {
+        /** Whole commands. */
+        COMMAND,
+        /** Reading files. */
+        READ,
+        /** Writing files. */
+        WRITE,
+        /** Deserializing objects. */
+        DESERIALIZE,
+        /** Hashing. */
+        HASH
+    }
+
+    /** Number of histogram buckets; bucket B counts latencies in
+     *  [2^B, 2^(B+1)) nanoseconds. */
+    static final int BUCKETS = 64;
+
+    /** Starts recording. */
+    static void enable() {
+        _enabled = true;
+    }
+
+    /** Stops recording. */
+    static void disable() {
+        _enabled = false;
+    }
+
+    /** Returns iff recording. */
+    static boolean enabled() {
+        return _enabled;
+    }
+
+    /** Sets every counter and histogram to zero. */
+    static void reset() {
+        for (int i = 0; i < COUNTS.length(); i += 1) {
+            COUNTS.set(i, 0);
+        }
+        for (int i = 0; i < TIMES.length(); i += 1) {
+            TIMES.set(i, 0);
+        }
+    }
+
+    /** Adds N to COUNTER. */
+    static void count(Counter counter, long n) {
+        if (_enabled) {
+            COUNTS.addAndGet(counter.ordinal(), n);
+        }
+    }
+
+    /** Returns the value of COUNTER. */
+    static long get(Counter counter) {
+        return COUNTS.get(counter.ordinal());
+    }
+
+    /** Returns a start time to be passed to time, or 0 when not
+     *  recording. */
+    static long start() {
+        return _enabled ? System.nanoTime() : 0;
+    }
+
+    /** Records the time since START, from start(), in TIMER. */
+    static void time(Timer timer, long start) {
+        if (_enabled && start != 0) {
+            long elapsed = Math.max(1, System.nanoTime() - start);
+            int base = timer.ordinal() * SLOTS;
+            TIMES.incrementAndGet(base);
+            TIMES.addAndGet(base + 1, elapsed);
+            TIMES.incrementAndGet(base + 2
+                                  + 63 - Long.numberOfLeadingZeros(elapsed));
+        }
+    }
+
+    /** Returns the number of times recorded in TIMER. */
+    static long samples(Timer timer) {
+        return TIMES.get(timer.ordinal() * SLOTS);
+    }
+
+    /** Returns the total nanoseconds recorded in TIMER. */
+    static long totalNanos(Timer timer) {
+        return TIMES.get(timer.ordinal() * SLOTS + 1);
+    }
+
+    /** Returns an upper bound in nanoseconds on the Qth quantile
+     *  (0 < Q <= 1) of the times in TIMER, or 0 if it is empty. */
+    static long quantile(Timer timer, double q) {
+        long n = samples(timer);
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        int base = timer.ordinal() * SLOTS + 2;
+        for (int b = 0; b < BUCKETS; b += 1) {
+            seen += TIMES.get(base + b);
+            if (seen >= rank) {
+                return b >= 62 ? Long.MAX_VALUE : 1L << (b + 1);
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /** Prints a human-readable summary of the metrics of COMMAND to
+     *  OUT. */
+    static void printSummary(String command, PrintStream out) {
+        out.println("=== Stats: " + command + " ===");
+        for (Counter counter : Counter.values()) {
+            out.printf("%-22s %d%n", name(counter) + ":", get(counter));
+        }
+        for (Timer timer : Timer.values()) {
+            if (samples(timer) > 0) {
+                out.printf(Locale.ROOT,
+                    "%-22s %d in %.3f ms (p50 < %.3f ms, p99 < %.3f ms)%n",
+                    name(timer) + ":", samples(timer),
+                    totalNanos(timer) / 1e6, quantile(timer, 0.5) / 1e6,
+                    quantile(timer, 0.99) / 1e6);
+            }
+        }
+    }
+
+    /** Returns the metrics of COMMAND as one line of JSON. */
+    static String toJson(String command) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"time\":").append(System.currentTimeMillis())
+            .append(",\"command\":\"").append(escape(command))
+            .append("\",\"counters\":{");
+        for (Counter counter : Counter.values()) {
+            if (counter.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(name(counter)).append("\":")
+                .append(get(counter));
+        }
+        json.append("},\"timers\":{");
+        for (Timer timer : Timer.values()) {
+            if (timer.ordinal() > 0) {
+                json.append(',');
+            }
+            json.append('"').append(name(timer)).append("\":{\"count\":")
+                .append(samples(timer)).append(",\"nanos\":")
+                .append(totalNanos(timer)).append(",\"buckets\":[");
+            int base = timer.ordinal() * SLOTS + 2;
+            int last = BUCKETS - 1;
+            while (last > 0 && TIMES.get(base + last) == 0) {
+                last -= 1;
+            }
+            for (int b = 0; b <= last; b += 1) {
+                json.append(b > 0 ? "," : "").append(TIMES.get(base + b));
+            }
+            json.append("]}");
+        }
+        return json.append("}}").toString();
+    }
+
+    /** Appends the metrics of COMMAND as a line of JSON to the file
+     *  FILE. */
+    static void appendJson(String command, Path file) {
+        try {
+            Files.write(file, (toJson(command) + "\n")
+                            .getBytes(StandardCharsets.UTF_8),
+                        StandardOpenOption.CREATE,
+                        StandardOpenOption.APPEND);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write stats to %s: %s", file,
+                              excp.getMessage());
+        }
+    }
+
+    /** Returns the name of the enum constant VALUE in lower case. */
+    private static String name(Enum<?> value) {
+        return value.name().toLowerCase(Locale.ROOT);
+    }
+
+    /** Returns S with the characters special to JSON strings escaped. */
+    private static String escape(String s) {
+        StringBuilder result = new StringBuilder();
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                result.append('\\').append(c);
+            } else if (c < ' ') {
+                result.append(String.format("\\u%04x", (int) c));
+            } else {
+                result.append(c);
+            }
+        }
+        return result.toString();
+    }
+
+    /** Slots per timer: count, total nanoseconds, then the buckets. */
+    private static final int SLOTS = BUCKETS + 2;
+
+    /** The counters, indexed by ordinal. */
+    private static final AtomicLongArray COUNTS =
+        new AtomicLongArray(Counter.values().length);
+
+    /** The timers, SLOTS per timer in order of ordinal. */
+    private static final AtomicLongArray TIMES =
+        new AtomicLongArray(Timer.values().length * SLOTS);
+
+    /** True iff recording. */
+    private static volatile boolean _enabled;
+}
@@ -0,0 +1,75 @@
+package gitlet;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/** A bounded in-memory cache of the serialized objects and commits of a
+ *  repository. Those files are named by their SHA-1 IDs and never change
+ *  once written, so repeated reads of them can be served without touching
+ *  the disk. The least recently used files are dropped first.
+ *  @author ryangaray
+ */
+class ObjectCache {
+
+    /** Default maximum number of bytes held by a cache. */
+    static final long CAPACITY = 64L << 20;
+
+    /** A cache holding at most CAPACITY bytes. */
+    ObjectCache(long capacity) {
+        _capacity = capacity;
+    }
+
+    /** Returns the contents of FILE, reading them from disk only if they
+     *  are not already cached. The disk is read without holding the lock,
+     *  so that threads reading different files do not wait for each
+     *  other. */
+    byte[] contents(File file) {
+        byte[] contents;
+        synchronized (this) {
+            contents = _cache.get(file.getPath());
+        }
+        if (contents != null) {
+            Metrics.count(Metrics.Counter.CACHE_HITS, 1);
+            return contents;
+        }
+        contents = Utils.readContents(file);
+        put(file, contents);
+        return contents;
+    }
+
+    /** Records that FILE was just written with CONTENTS, dropping the
+     *  least recently used files until the cache fits its capacity.
+     *  CONTENTS larger than the whole capacity are not cached. */
+    synchronized void put(File file, byte[] contents) {
+        invalidate(file);
+        if (contents.length > _capacity) {
+            return;
+        }
+        _size += contents.length;
+        _cache.put(file.getPath(), contents);
+        Iterator<byte[]> eldest = _cache.values().iterator();
+        while (_size > _capacity) {
+            _size -= eldest.next().length;
+            eldest.remove();
+        }
+    }
+
+    /** Forgets anything cached for FILE, which has been deleted. */
+    synchronized void invalidate(File file) {
+        byte[] old = _cache.remove(file.getPath());
+        if (old != null) {
+            _size -= old.length;
+        }
+    }
+
+    /** Maximum number of bytes held. */
+    private final long _capacity;
+
+    /** Cached contents by path, in least-recently-used order. */
+    private final LinkedHashMap<String, byte[]> _cache =
+        new LinkedHashMap<>(16, 0.75f, true);
+
+    /** Total number of bytes currently cached. */
+    private long _size;
+}
@@ -0,0 +1,83 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests of ObjectCache.
+ *  @author ryangaray
+ */
+public class ObjectCacheTest {
+
+    /** Returns a new temporary file holding "disk", which is deleted
+     *  after the test. */
+    File newFile() throws IOException {
+        File file = Files.createTempFile("gitlet-cache", ".tmp").toFile();
+        _files.add(file);
+        Utils.writeContents(file, "disk");
+        return file;
+    }
+
+    /** Deletes the files made by the last test. */
+    @After
+    public void deleteFiles() {
+        for (File file : _files) {
+            file.delete();
+        }
+        _files.clear();
+    }
+
+    /** Returns what CACHE holds for FILE, as a String. */
+    static String cached(ObjectCache cache, File file) {
+        return new String(cache.contents(file));
+    }
+
+    @Test
+    public void evictsUntilUnderCapacity() throws IOException {
+        ObjectCache cache = new ObjectCache(10);
+        File a = newFile();
+        File b = newFile();
+        File c = newFile();
+        cache.put(a, "aaaa".getBytes());
+        cache.put(b, "bbbb".getBytes());
+        cache.put(c, "cccccccc".getBytes());
+        assertEquals("cccccccc", cached(cache, c));
+        assertEquals("disk", cached(cache, a));
+        assertEquals("disk", cached(cache, b));
+    }
+
+    @Test
+    public void keepsRecentlyUsed() throws IOException {
+        ObjectCache cache = new ObjectCache(10);
+        File a = newFile();
+        File b = newFile();
+        File c = newFile();
+        cache.put(a, "aaaa".getBytes());
+        cache.put(b, "bbbb".getBytes());
+        assertEquals("aaaa", cached(cache, a));
+        cache.put(c, "cccc".getBytes());
+        assertEquals("aaaa", cached(cache, a));
+        assertEquals("cccc", cached(cache, c));
+        assertEquals("disk", cached(cache, b));
+    }
+
+    @Test
+    public void skipsOversizedContents() throws IOException {
+        ObjectCache cache = new ObjectCache(10);
+        File a = newFile();
+        File big = newFile();
+        cache.put(a, "aaaa".getBytes());
+        cache.put(big, "far too large".getBytes());
+        assertEquals("aaaa", cached(cache, a));
+        assertEquals("disk", cached(cache, big));
+    }
+
+    /** The files made by the current test. */
+    private final List<File> _files = new ArrayList<>();
+}
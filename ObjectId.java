@@ -0,0 +1,150 @@
+package gitlet;
+
+/** The binary ID of a Gitlet object: the 20- or 32-byte digest of its
+ *  contents. Files and commits name objects by the lower-case hex form
+ *  returned by toString. An ID is packed big-endian into four longs, so
+ *  it takes a fraction of the memory of its hex String and compares in a
+ *  few instructions.
+ *  @author ryangaray
+ */
+public final class ObjectId implements Comparable<ObjectId> {
+
+    /** Largest number of bytes in an ID. */
+    static final int MAX_LENGTH = 32;
+
+    /** An ID of LENGTH bytes packed into the words W0 to W3. */
+    private ObjectId(int length, long w0, long w1, long w2, long w3) {
+        _length = (byte) length;
+        _w0 = w0;
+        _w1 = w1;
+        _w2 = w2;
+        _w3 = w3;
+    }
+
+    /** Returns the ID whose digest is BYTES. */
+    static ObjectId wrap(byte[] bytes) {
+        if (bytes.length < 4 || bytes.length > MAX_LENGTH) {
+            throw new IllegalArgumentException("bad ID length");
+        }
+        return new ObjectId(bytes.length, word(bytes, 0), word(bytes, 1),
+                            word(bytes, 2), word(bytes, 3));
+    }
+
+    /** Returns the ID whose hex form is HEX. */
+    public static ObjectId fromHex(String hex) {
+        int n = hex.length();
+        if (n % 2 != 0 || n < 8 || n > 2 * MAX_LENGTH) {
+            throw Utils.error("Malformed ID %s.", hex);
+        }
+        long[] words = new long[4];
+        for (int i = 0; i < n; i += 1) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0) {
+                throw Utils.error("Malformed ID %s.", hex);
+            }
+            words[i / 16] |= (long) digit << (60 - 4 * (i % 16));
+        }
+        return new ObjectId(n / 2, words[0], words[1], words[2], words[3]);
+    }
+
+    /** Returns the number of bytes in this ID. */
+    public int length() {
+        return _length;
+    }
+
+    /** Returns word K, 0 to 3, of this ID. */
+    long word(int k) {
+        switch (k) {
+        case 0:
+            return _w0;
+        case 1:
+            return _w1;
+        case 2:
+            return _w2;
+        default:
+            return _w3;
+        }
+    }
+
+    /** Returns a copy of the bytes of this ID. */
+    public byte[] toByteArray() {
+        byte[] result = new byte[_length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = (byte) (word(i / 8) >>> (56 - 8 * (i % 8)));
+        }
+        return result;
+    }
+
+    /** Returns the lower-case hex form of BYTES. */
+    static String toHex(byte[] bytes) {
+        char[] result = new char[2 * bytes.length];
+        for (int i = 0; i < bytes.length; i += 1) {
+            result[2 * i] = HEX[(bytes[i] >> 4) & 0xf];
+            result[2 * i + 1] = HEX[bytes[i] & 0xf];
+        }
+        return new String(result);
+    }
+
+    /** Returns the lower-case hex form of this ID. */
+    @Override
+    public String toString() {
+        char[] result = new char[2 * _length];
+        for (int i = 0; i < result.length; i += 1) {
+            result[i] = HEX[(int) (word(i / 16) >>> (60 - 4 * (i % 16)))
+                            & 0xf];
+        }
+        return new String(result);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof ObjectId)) {
+            return false;
+        }
+        ObjectId other = (ObjectId) obj;
+        return _w0 == other._w0 && _w1 == other._w1 && _w2 == other._w2
+            && _w3 == other._w3 && _length == other._length;
+    }
+
+    /** Returns the first four bytes of this ID, which being part of a
+     *  digest are as well distributed as any hash of them. */
+    @Override
+    public int hashCode() {
+        return (int) (_w0 >>> 32);
+    }
+
+    @Override
+    public int compareTo(ObjectId other) {
+        for (int k = 0; k < 4; k += 1) {
+            int c = Long.compareUnsigned(word(k), other.word(k));
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(_length, other._length);
+    }
+
+    /** Returns the Kth big-endian word of BYTES, padded with zeros. */
+    private static long word(byte[] bytes, int k) {
+        long result = 0;
+        for (int i = 0; i < 8; i += 1) {
+            int b = 8 * k + i;
+            result = result << 8 | (b < bytes.length ? bytes[b] & 0xff : 0);
+        }
+        return result;
+    }
+
+    /** Hex digits, indexed by value. */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /** Number of bytes in this ID. */
+    private final byte _length;
+    /** Bytes 0-7 of this ID. */
+    private final long _w0;
+    /** Bytes 8-15 of this ID. */
+    private final long _w1;
+    /** Bytes 16-23 of this ID, zero-padded. */
+    private final long _w2;
+    /** Bytes 24-31 of this ID, zero-padded. */
+    private final long _w3;
+}
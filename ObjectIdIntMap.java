@@ -0,0 +1,133 @@
+package gitlet;
+
+import java.util.Arrays;
+
+/** A map from ObjectIds to ints using open addressing with linear
+ *  probing. Keys are stored inline, four longs to a slot, in one array,
+ *  so a lookup touches one or two cache lines and neither the map nor
+ *  its entries allocate anything per key.
+ *  @author ryangaray
+ */
+class ObjectIdIntMap {
+
+    /** An empty map. */
+    ObjectIdIntMap() {
+        this(MIN_CAPACITY / 2);
+    }
+
+    /** An empty map with room for EXPECTED keys before it grows. */
+    ObjectIdIntMap(int expected) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * LOAD_FACTOR < expected) {
+            capacity *= 2;
+        }
+        allocate(capacity);
+    }
+
+    /** Returns the number of keys. */
+    int size() {
+        return _size;
+    }
+
+    /** Returns iff ID is a key. */
+    boolean containsKey(ObjectId id) {
+        return _lengths[slot(id)] != 0;
+    }
+
+    /** Returns the value of ID, or ABSENT if it is not a key. */
+    int get(ObjectId id, int absent) {
+        int slot = slot(id);
+        return _lengths[slot] == 0 ? absent : _values[slot];
+    }
+
+    /** Sets the value of ID to VALUE. Returns iff ID was not a key. */
+    boolean put(ObjectId id, int value) {
+        int slot = slot(id);
+        _values[slot] = value;
+        if (_lengths[slot] != 0) {
+            return false;
+        }
+        _lengths[slot] = (byte) id.length();
+        for (int k = 0; k < WIDTH; k += 1) {
+            _keys[WIDTH * slot + k] = id.word(k);
+        }
+        _size += 1;
+        if (_size > _threshold) {
+            grow();
+        }
+        return true;
+    }
+
+    /** Removes every key. */
+    void clear() {
+        Arrays.fill(_lengths, (byte) 0);
+        _size = 0;
+    }
+
+    /** Returns the slot holding ID, or the empty slot where it would be
+     *  added. */
+    private int slot(ObjectId id) {
+        int mask = _lengths.length - 1;
+        int slot = id.hashCode() & mask;
+        while (_lengths[slot] != 0 && !matches(slot, id)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /** Returns iff SLOT, which is occupied, holds ID. */
+    private boolean matches(int slot, ObjectId id) {
+        int base = WIDTH * slot;
+        return _keys[base] == id.word(0) && _keys[base + 1] == id.word(1)
+            && _keys[base + 2] == id.word(2) && _keys[base + 3] == id.word(3)
+            && _lengths[slot] == id.length();
+    }
+
+    /** Doubles the capacity, reinserting every key. */
+    private void grow() {
+        long[] keys = _keys;
+        byte[] lengths = _lengths;
+        int[] values = _values;
+        allocate(2 * lengths.length);
+        int mask = _lengths.length - 1;
+        for (int old = 0; old < lengths.length; old += 1) {
+            if (lengths[old] != 0) {
+                int slot = (int) (keys[WIDTH * old] >>> 32) & mask;
+                while (_lengths[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                System.arraycopy(keys, WIDTH * old, _keys, WIDTH * slot,
+                                 WIDTH);
+                _lengths[slot] = lengths[old];
+                _values[slot] = values[old];
+            }
+        }
+    }
+
+    /** Replaces the tables with empty ones of CAPACITY slots, keeping
+     *  _size. */
+    private void allocate(int capacity) {
+        _keys = new long[WIDTH * capacity];
+        _lengths = new byte[capacity];
+        _values = new int[capacity];
+        _threshold = (int) (capacity * LOAD_FACTOR);
+    }
+
+    /** Longs per key. */
+    private static final int WIDTH = 4;
+    /** Smallest number of slots. */
+    private static final int MIN_CAPACITY = 16;
+    /** Largest fraction of slots in use before growing. */
+    private static final double LOAD_FACTOR = 0.6;
+
+    /** The words of the key in each slot. */
+    private long[] _keys;
+    /** The length of the key in each slot, or 0 if it is empty. */
+    private byte[] _lengths;
+    /** The value in each slot. */
+    private int[] _values;
+    /** Number of keys. */
+    private int _size;
+    /** Number of keys at which to grow. */
+    private int _threshold;
+}
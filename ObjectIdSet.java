@@ -0,0 +1,54 @@
+package gitlet;
+
+/** A set of ObjectIds, stored inline in an open-addressed table.
+ *  @author ryangaray
+ */
+class ObjectIdSet {
+
+    /** An empty set. */
+    ObjectIdSet() {
+        _map = new ObjectIdIntMap();
+    }
+
+    /** An empty set with room for EXPECTED IDs before it grows. */
+    ObjectIdSet(int expected) {
+        _map = new ObjectIdIntMap(expected);
+    }
+
+    /** Returns a set of the IDs whose hex forms are HEXIDS. */
+    static ObjectIdSet ofHex(Iterable<String> hexIDs) {
+        ObjectIdSet result = new ObjectIdSet();
+        for (String hex : hexIDs) {
+            result.add(ObjectId.fromHex(hex));
+        }
+        return result;
+    }
+
+    /** Returns the number of IDs. */
+    int size() {
+        return _map.size();
+    }
+
+    /** Returns iff ID is in this set. */
+    boolean contains(ObjectId id) {
+        return _map.containsKey(id);
+    }
+
+    /** Returns iff the ID whose hex form is HEX is in this set. */
+    boolean contains(String hex) {
+        return hex != null && contains(ObjectId.fromHex(hex));
+    }
+
+    /** Adds ID. Returns iff it was not already present. */
+    boolean add(ObjectId id) {
+        return _map.put(id, 0);
+    }
+
+    /** Removes every ID. */
+    void clear() {
+        _map.clear();
+    }
+
+    /** The IDs, as keys. */
+    private final ObjectIdIntMap _map;
+}
@@ -0,0 +1,90 @@
+package gitlet;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+/** Tests of ObjectId and its open-addressed map and set.
+ *  @author ryangaray
+ */
+public class ObjectIdTest {
+
+    /** Returns an ID of LENGTH bytes whose first four bytes are PREFIX
+     *  and whose last four are SUFFIX. */
+    static ObjectId id(int length, int prefix, int suffix) {
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < 4; i += 1) {
+            bytes[i] = (byte) (prefix >>> (24 - 8 * i));
+            bytes[length - 4 + i] = (byte) (suffix >>> (24 - 8 * i));
+        }
+        return ObjectId.wrap(bytes);
+    }
+
+    @Test
+    public void hexRoundTrip() {
+        String sha1 = Utils.sha1("gitlet");
+        String sha256 = sha1 + "0123456789abcdef01234567";
+        for (String hex : List.of(sha1, sha256)) {
+            ObjectId id = ObjectId.fromHex(hex);
+            assertEquals(hex, id.toString());
+            assertEquals(hex.length() / 2, id.length());
+            assertEquals(id, ObjectId.wrap(id.toByteArray()));
+        }
+        assertNotEquals(ObjectId.fromHex("00000000"),
+                        ObjectId.fromHex("0000000000"));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsNonHex() {
+        ObjectId.fromHex("0123456789abcdeg");
+    }
+
+    @Test
+    public void probesPastCollisions() {
+        ObjectIdIntMap map = new ObjectIdIntMap();
+        for (int i = 0; i < 8; i += 1) {
+            assertTrue(map.put(id(20, 7, i), i));
+        }
+        assertTrue(map.put(id(24, 7, 0), 100));
+        assertEquals(9, map.size());
+        for (int i = 0; i < 8; i += 1) {
+            assertEquals(i, map.get(id(20, 7, i), -1));
+        }
+        assertEquals(100, map.get(id(24, 7, 0), -1));
+        assertEquals(-1, map.get(id(20, 7, 8), -1));
+        assertFalse(map.put(id(20, 7, 3), 33));
+        assertEquals(33, map.get(id(20, 7, 3), -1));
+        assertEquals(9, map.size());
+    }
+
+    @Test
+    public void growsKeepingEntries() {
+        ObjectIdIntMap map = new ObjectIdIntMap();
+        int n = 10000;
+        for (int i = 0; i < n; i += 1) {
+            map.put(id(32, i * 0x9E3779B1, i), i);
+        }
+        assertEquals(n, map.size());
+        for (int i = 0; i < n; i += 1) {
+            assertEquals(i, map.get(id(32, i * 0x9E3779B1, i), -1));
+        }
+        assertFalse(map.containsKey(id(32, 0, 1)));
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(id(32, 0, 0)));
+    }
+
+    @Test
+    public void setOfHex() {
+        String a = Utils.sha1("a");
+        String b = Utils.sha1("b");
+        ObjectIdSet set = ObjectIdSet.ofHex(List.of(a, a));
+        assertEquals(1, set.size());
+        assertTrue(set.contains(a));
+        assertFalse(set.contains(b));
+        assertFalse(set.contains((String) null));
+        assertTrue(set.add(ObjectId.fromHex(b)));
+        assertFalse(set.add(ObjectId.fromHex(b)));
+    }
+}
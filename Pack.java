@@ -0,0 +1,426 @@
+package gitlet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/** A stream of the objects and commits one repository lacks from
+ *  another. The sender is told what the receiver wants (the commits it
+ *  is fetching) and has (its branch heads), and packs the commits
+ *  reachable from the wants but not the haves, with the blobs of those
+ *  commits that are not in the commits at the edge of the haves. Blobs
+ *  come before the first commit naming them, the chunks of a chunked
+ *  blob before the blob, and parents before their children, so a pack is
+ *  written and read in one pass, holding one object at a time. A pack
+ *  may instead hold just some blobs, for a partial clone fetching the
+ *  contents it lacks.
+ *
+ *  A pack is an int MAGIC and an int VERSION, then for each entry a
+ *  type byte, the ID, an int length and the contents of the object file,
+ *  then an END byte and a CRC-32 of everything before it.
+ *
+ *  A pack may come from anywhere, so nothing in it is trusted: an entry
+ *  is accepted only if its ID is a full ID, its length is in bounds, it
+ *  holds only the classes Gitlet stores, and the ID computed again from
+ *  its contents is the one it is sent under. Commits must name files
+ *  and other objects by plain names and full IDs. The one exception is
+ *  a legacy commit, whose ID cannot be computed again: it is accepted
+ *  only from a pack its reader trusts, one written by a repository the
+ *  user named as a remote, and never from a bundle.
+ *  @author ryangaray
+ */
+class Pack {
+
+    /** First int of a pack. */
+    static final int MAGIC = 0x4750414b;
+    /** Format version. */
+    static final int VERSION = 3;
+    /** Entry type of a blob. */
+    static final byte BLOB = 1;
+    /** Entry type of a commit. */
+    static final byte COMMIT = 2;
+    /** Entry type of a chunk of a large blob. */
+    static final byte CHUNK = 3;
+    /** Type byte ending the entries. */
+    static final byte END = 0;
+    /** Largest entry read, in bytes. */
+    static final int MAX_ENTRY = 1 << 26;
+    /** Most objects, and longest array, in an entry read. */
+    static final int MAX_OBJECTS = 1 << 22;
+
+    /** A pack from REPO, whose commit tree is TREE, of the commits
+     *  reachable from the commit IDs WANTS and not from the commit IDs
+     *  HAVES, and their new blobs. Haves that REPO does not know are
+     *  ignored. */
+    Pack(Repository repo, CommitTree tree, Collection<String> wants,
+         Collection<String> haves) {
+        _repo = repo;
+        _graph = repo.graph(tree);
+        _graph.update(wants);
+        _missing = _graph.reachable(wants);
+        _missing.andNot(_graph.reachable(haves));
+        _missing.forEach(p -> {
+            for (int parent : _graph.parents(p)) {
+                if (parent != CommitGraph.NONE
+                    && !_missing.contains(parent)) {
+                    _edge.add(_graph.id(parent).toString());
+                }
+            }
+        });
+        _blobs = Collections.emptyList();
+    }
+
+    /** A pack from REPO of the blobs whose IDs are BLOBS and it has, with
+     *  their chunks, and no commits. */
+    private Pack(Repository repo, Collection<String> blobs) {
+        _repo = repo;
+        _graph = null;
+        _missing = new Bitmap();
+        _blobs = new ArrayList<>(blobs);
+    }
+
+    /** Writes to OUT the pack from REPO of the blobs whose IDs are BLOBS
+     *  and it has. Returns the number of entries written. */
+    static int writeBlobs(Repository repo, Collection<String> blobs,
+                          File out) {
+        try (OutputStream stream = new BufferedOutputStream(
+                 Files.newOutputStream(out.toPath()))) {
+            return new Pack(repo, blobs).write(stream);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write pack: %s", excp.getMessage());
+        }
+    }
+
+    /** Writes to OUT the pack from REPO, whose commit tree is TREE, of
+     *  the commits reachable from WANTS and not from HAVES. Returns the
+     *  number of entries written. */
+    static int write(Repository repo, CommitTree tree,
+                     Collection<String> wants, Collection<String> haves,
+                     File out) {
+        try (OutputStream stream = new BufferedOutputStream(
+                 Files.newOutputStream(out.toPath()))) {
+            return new Pack(repo, tree, wants, haves).write(stream);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write pack: %s", excp.getMessage());
+        }
+    }
+
+    /** Adds the objects and commits in the pack IN to REPO, accepting
+     *  legacy commits iff TRUSTLEGACY. Returns the number added. */
+    static int read(Repository repo, File in, boolean trustLegacy) {
+        try (InputStream stream = new BufferedInputStream(
+                 Files.newInputStream(in.toPath()))) {
+            return read(repo, stream, trustLegacy);
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read pack: %s", excp.getMessage());
+        }
+    }
+
+    /** Returns the IDs of the commits outside this pack that commits in
+     *  it name as parents, which the receiver must already have. */
+    Collection<String> edge() {
+        return _edge;
+    }
+
+    /** Writes this pack to OUT, which is flushed but not closed.
+     *  Returns the number of entries written. */
+    int write(OutputStream out) {
+        ObjectIdSet sent = new ObjectIdSet();
+        for (String id : _edge) {
+            addBlobs(id, sent, null);
+        }
+        int[] positions = new int[_missing.cardinality()];
+        int[] n = new int[1];
+        _missing.forEach(p -> positions[n[0]++] = p);
+
+        CRC32 crc = new CRC32();
+        DataOutputStream data =
+            new DataOutputStream(new CheckedOutputStream(out, crc));
+        List<String> blobs = new ArrayList<>();
+        try {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            for (int p : positions) {
+                String id = _graph.id(p).toString();
+                addBlobs(id, sent, blobs);
+                _repo.prefetch(blobs);
+                for (String blob : blobs) {
+                    writeChunks(data, blob, sent);
+                    writeEntry(data, BLOB, blob, _repo.objectFile(blob));
+                }
+                writeEntry(data, COMMIT, id, _repo.commitFile(id));
+                _size += blobs.size() + 1;
+                blobs.clear();
+            }
+            _repo.prefetch(_blobs);
+            for (String blob : _blobs) {
+                if (_repo.objectFile(blob).exists()
+                    && sent.add(ObjectId.fromHex(blob))) {
+                    writeChunks(data, blob, sent);
+                    writeEntry(data, BLOB, blob, _repo.objectFile(blob));
+                    _size += 1;
+                }
+            }
+            data.writeByte(END);
+            data.flush();
+            data.writeLong(crc.getValue());
+            data.flush();
+        } catch (IOException excp) {
+            throw Utils.error("Cannot write pack: %s", excp.getMessage());
+        }
+        return _size;
+    }
+
+    /** Adds the blobs of the commit ID that are not in SENT to SENT and,
+     *  unless it is null, to BLOBS. */
+    private void addBlobs(String id, ObjectIdSet sent, List<String> blobs) {
+        Map<String, String> files = _repo.readObject(
+            _repo.commitFile(id), CommitNode.class).getFiles();
+        if (files == null) {
+            return;
+        }
+        for (String blob : files.values()) {
+            if (sent.add(ObjectId.fromHex(blob)) && blobs != null) {
+                blobs.add(blob);
+            }
+        }
+    }
+
+    /** Writes to DATA the chunks of the blob ID that are not in SENT, if
+     *  it is chunked, and adds them to SENT. */
+    private void writeChunks(DataOutputStream data, String id,
+                             ObjectIdSet sent) throws IOException {
+        Blob blob = _repo.readObject(_repo.objectFile(id), Blob.class);
+        if (!blob.isChunked()) {
+            return;
+        }
+        for (String chunk : blob.getChunks()) {
+            if (sent.add(ObjectId.fromHex(chunk))) {
+                writeEntry(data, CHUNK, chunk, _repo.chunkFile(chunk));
+                _size += 1;
+            }
+        }
+    }
+
+    /** Writes the entry of TYPE for the object ID, stored in FILE, to
+     *  DATA. */
+    private void writeEntry(DataOutputStream data, byte type, String id,
+                            File file) throws IOException {
+        if (!file.isFile()) {
+            throw Utils.error("Cannot pack missing object %s.", id);
+        }
+        byte[] contents = Utils.readContents(file);
+        data.writeByte(type);
+        data.writeUTF(id);
+        data.writeInt(contents.length);
+        data.write(contents);
+    }
+
+    /** Adds the objects and commits in the pack read from IN to REPO,
+     *  skipping those it already has. Each is checked as it is read, and
+     *  a GitletException thrown if any is corrupt, including a legacy
+     *  commit unless TRUSTLEGACY. IN is not closed. Returns the number of
+     *  entries added. */
+    static int read(Repository repo, InputStream in, boolean trustLegacy) {
+        CRC32 crc = new CRC32();
+        int added = 0;
+        DataInputStream data =
+            new DataInputStream(new CheckedInputStream(in, crc));
+        try {
+            if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+                throw Utils.error("Not a pack.");
+            }
+            for (byte type = data.readByte(); type != END;
+                 type = data.readByte()) {
+                String id = checkID(repo, data.readUTF());
+                int length = data.readInt();
+                if (length < 0 || length > MAX_ENTRY
+                    || type == CHUNK && length > Chunker.MAX_SIZE) {
+                    throw corrupt();
+                }
+                byte[] contents = new byte[length];
+                data.readFully(contents);
+                if (readEntry(repo, type, id, contents, trustLegacy)) {
+                    added += 1;
+                }
+            }
+            long expected = crc.getValue();
+            if (data.readLong() != expected) {
+                throw corrupt();
+            }
+        } catch (IOException excp) {
+            throw Utils.error("Cannot read pack: %s", excp.getMessage());
+        }
+        return added;
+    }
+
+    /** Returns ID if it is a full ID in REPO, in lower-case hex, and
+     *  throws a GitletException otherwise. */
+    static String checkID(Repository repo, String id) {
+        if (id == null || id.length() != repo.idLength()) {
+            throw corrupt();
+        }
+        try {
+            if (ObjectId.fromHex(id).toString().equals(id)) {
+                return id;
+            }
+        } catch (GitletException excp) {
+            /* Reported below. */
+        }
+        throw corrupt();
+    }
+
+    /** Adds the entry of TYPE with ID and CONTENTS to REPO unless it is
+     *  already there whole, accepting a legacy commit iff TRUSTLEGACY.
+     *  Returns iff it was added. */
+    private static boolean readEntry(Repository repo, byte type, String id,
+                                     byte[] contents, boolean trustLegacy) {
+        File file;
+        if (type == CHUNK) {
+            if (!repo.hash(contents).equals(id)) {
+                throw corrupt();
+            }
+            if (repo.holds(repo.chunkFile(id), contents)) {
+                return false;
+            }
+            repo.writeChunk(contents);
+            return true;
+        } else if (type == BLOB) {
+            file = repo.objectFile(id);
+            Blob blob = deserialize(contents, Blob.class);
+            if (!blob.hasID(repo, id) || !isWellFormed(repo, blob)) {
+                throw corrupt();
+            }
+        } else if (type == COMMIT) {
+            file = repo.commitFile(id);
+            CommitNode commit = deserialize(contents, CommitNode.class);
+            if (!commit.hasID(repo, id, trustLegacy)
+                || !isWellFormed(repo, commit)) {
+                throw corrupt();
+            }
+        } else {
+            throw corrupt();
+        }
+        if (repo.holds(file, contents)) {
+            return false;
+        }
+        repo.writeObjectBytes(file, contents);
+        return true;
+    }
+
+    /** Returns iff BLOB, read from a pack for REPO, is for a file with a
+     *  plain name and has either contents or chunks with full IDs. */
+    private static boolean isWellFormed(Repository repo, Blob blob) {
+        if (blob.getFile() == null
+            || !isFileName(blob.getFile().getPath())
+            || blob.getFileID() == null) {
+            return false;
+        }
+        checkID(repo, blob.getFileID());
+        if (!blob.isChunked()) {
+            return blob.getContents(repo) != null;
+        }
+        for (String chunk : blob.getChunks()) {
+            checkID(repo, chunk);
+        }
+        return true;
+    }
+
+    /** Returns iff COMMIT, read from a pack for REPO, names its parents
+     *  and blobs by full IDs and its files by plain names. */
+    private static boolean isWellFormed(Repository repo,
+                                        CommitNode commit) {
+        if (commit.getLog() == null || commit.timestamp() == null) {
+            return false;
+        }
+        if (commit.getParent() != null) {
+            checkID(repo, commit.getParent());
+        }
+        if (commit.isMerged()) {
+            checkID(repo, commit.secondParent());
+        }
+        if (commit.getFiles() != null) {
+            for (Map.Entry<String, String> file
+                     : commit.getFiles().entrySet()) {
+                if (!isFileName(file.getKey())) {
+                    return false;
+                }
+                checkID(repo, file.getValue());
+            }
+        }
+        return true;
+    }
+
+    /** Returns iff NAME is the name of a file in a working directory,
+     *  not a path. */
+    private static boolean isFileName(String name) {
+        return name != null && !name.isEmpty() && !name.equals(".")
+            && !name.equals("..") && !name.equals(".gitlet")
+            && name.indexOf('/') < 0 && name.indexOf('\\') < 0
+            && name.indexOf(File.separatorChar) < 0
+            && name.indexOf('\0') < 0;
+    }
+
+    /** Returns the object of TYPE serialized as CONTENTS. Only the
+     *  classes of FILTER may be read. */
+    private static <T> T deserialize(byte[] contents, Class<T> type) {
+        try (ObjectInputStream in = new ObjectInputStream(
+                 new ByteArrayInputStream(contents))) {
+            in.setObjectInputFilter(FILTER);
+            T result = type.cast(in.readObject());
+            if (in.read() != -1) {
+                throw corrupt();
+            }
+            return result;
+        } catch (IOException | ClassNotFoundException
+                 | ClassCastException excp) {
+            throw corrupt();
+        }
+    }
+
+    /** Returns the exception reporting a corrupt pack. */
+    private static GitletException corrupt() {
+        return Utils.error("Corrupt pack.");
+    }
+
+    /** Admits only the classes of objects and commits, and bounds the
+     *  size of what is read. */
+    private static final ObjectInputFilter FILTER =
+        ObjectInputFilter.Config.createFilter(
+            "maxdepth=4;maxbytes=" + MAX_ENTRY + ";maxrefs=" + MAX_OBJECTS
+            + ";maxarray=" + MAX_OBJECTS + ";gitlet.Blob;gitlet.CommitNode;"
+            + "java.io.File;java.util.ArrayList;java.util.HashMap;"
+            + "java.util.Map$Entry;java.lang.Object;!*");
+
+    /** The repository packed. */
+    private final Repository _repo;
+    /** Its commit graph, or null for a pack of blobs. */
+    private final CommitGraph _graph;
+    /** The positions of the commits packed. */
+    private final Bitmap _missing;
+    /** The IDs of the commits just outside the pack. */
+    private final Set<String> _edge = new LinkedHashSet<>();
+    /** The IDs of the blobs packed besides those of the commits. */
+    private final List<String> _blobs;
+    /** Number of entries written. */
+    private int _size;
+}
@@ -0,0 +1,295 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Date;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+/** Tests of packs and bundles.
+ *  @author ryangaray
+ */
+public class PackTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Writes CONTENTS to the working file NAME of REPO, adds it and
+     *  commits it with message MSG. Returns the new commit. */
+    static CommitNode commitFile(Repository repo, String name,
+                                 String contents, String msg) {
+        Utils.writeContents(repo.workingFile(name), contents);
+        repo.add(name);
+        return repo.commit(msg);
+    }
+
+    /** Returns a pack for REPO of one entry of TYPE with ID, LENGTH and
+     *  CONTENTS. */
+    static byte[] pack(byte type, String id, int length, byte[] contents)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CRC32 crc = new CRC32();
+        DataOutputStream data =
+            new DataOutputStream(new CheckedOutputStream(bytes, crc));
+        data.writeInt(Pack.MAGIC);
+        data.writeInt(Pack.VERSION);
+        data.writeByte(type);
+        data.writeUTF(id);
+        data.writeInt(length);
+        data.write(contents);
+        data.writeByte(Pack.END);
+        data.flush();
+        data.writeLong(crc.getValue());
+        data.flush();
+        return bytes.toByteArray();
+    }
+
+    /** Returns the Blob of the file NAME of REPO whose _ID is ID. */
+    static Blob forgedBlob(Repository repo, String name, String id)
+        throws Exception {
+        Utils.writeContents(repo.workingFile(name), "payload\n");
+        Blob blob = new Blob(repo, name);
+        Field field = Blob.class.getDeclaredField("_ID");
+        field.setAccessible(true);
+        field.set(blob, id);
+        return blob;
+    }
+
+    /** Returns COMMIT, serialized after setting its field NAME to
+     *  VALUE. */
+    static byte[] forged(CommitNode commit, String name, Object value)
+        throws Exception {
+        Field field = CommitNode.class.getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(commit, value);
+        return Utils.serialize(commit);
+    }
+
+    /** Asserts that reading the pack BYTES into REPO is refused. */
+    static void assertRejected(Repository repo, byte[] bytes) {
+        try {
+            Pack.read(repo, new ByteArrayInputStream(bytes), false);
+            fail("corrupt pack accepted");
+        } catch (GitletException excp) {
+            assertEquals("Corrupt pack.", excp.getMessage());
+        }
+    }
+
+    @Test
+    public void bundleRoundTrip() throws IOException {
+        Repository from = _repos.create();
+        commitFile(from, "a.txt", "one\n", "first");
+        CommitNode head = commitFile(from, "b.txt", "two\n", "second");
+        File bundle = new File(from.root(), "all.bundle");
+        assertEquals(5, from.createBundle(bundle.getPath(), "master"));
+
+        Repository to = _repos.create();
+        Map<String, String> refs = to.unbundle(bundle.getPath());
+        assertEquals(head.getID(), refs.get("master"));
+        assertEquals(head.getID(), to.branches().get("bundle/master"));
+        CommitNode copy = to.readCommit(head.getID());
+        assertEquals("second", copy.getLog());
+        assertEquals("two\n", to.readBlob(copy.getFiles().get("b.txt"))
+                     .getContents(to));
+    }
+
+    @Test
+    public void incrementalBundleNeedsItsBase() throws IOException {
+        Repository from = _repos.create();
+        CommitNode base = commitFile(from, "a.txt", "one\n", "first");
+        commitFile(from, "a.txt", "two\n", "second");
+        File bundle = new File(from.root(), "tip.bundle");
+        assertEquals(2, from.createBundle(bundle.getPath(),
+                                          base.getID() + "..master"));
+        Repository to = _repos.create();
+        try {
+            to.unbundle(bundle.getPath());
+            fail("bundle applied without its prerequisite");
+        } catch (GitletException excp) {
+            assertEquals("The bundle needs commits this repository does "
+                         + "not have.", excp.getMessage());
+        }
+    }
+
+    @Test
+    public void failedBundleLeavesNoFile() throws IOException {
+        Repository from = _repos.create();
+        CommitNode head = commitFile(from, "a.txt", "one\n", "first");
+        from.objectFile(head.getFiles().get("a.txt")).delete();
+        File bundle = new File(from.root(), "broken.bundle");
+        try {
+            from.createBundle(bundle.getPath(), "master");
+            fail("bundle written without its objects");
+        } catch (GitletException excp) {
+            assertEquals("Cannot pack missing object "
+                         + head.getFiles().get("a.txt") + ".",
+                         excp.getMessage());
+            assertFalse(bundle.exists());
+        }
+        File[] left = from.root().listFiles(
+            (dir, name) -> name.startsWith("broken.bundle"));
+        assertEquals(0, left.length);
+    }
+
+    @Test
+    public void rejectsPathAsID() throws Exception {
+        Repository repo = _repos.create();
+        String id = "../../../PWNED";
+        while (id.length() < repo.idLength()) {
+            id += "0";
+        }
+        byte[] blob = Utils.serialize(forgedBlob(repo, "x.txt", id));
+        assertRejected(repo, pack(Pack.BLOB, id, blob.length, blob));
+        File outside = new File(repo.objectsDir(), id);
+        assertFalse(outside.getCanonicalFile().exists());
+    }
+
+    @Test
+    public void rejectsForgedID() throws Exception {
+        Repository repo = _repos.create();
+        String id = Utils.sha1("not the blob");
+        byte[] blob = Utils.serialize(forgedBlob(repo, "x.txt", id));
+        assertRejected(repo, pack(Pack.BLOB, id, blob.length, blob));
+        assertFalse(repo.objectFile(id).exists());
+    }
+
+    @Test
+    public void rejectsForgedChunk() throws IOException {
+        Repository repo = _repos.create();
+        byte[] chunk = "chunk".getBytes();
+        String id = Utils.sha1("another chunk");
+        assertRejected(repo, pack(Pack.CHUNK, id, chunk.length, chunk));
+        assertFalse(repo.chunkFile(id).exists());
+    }
+
+    @Test
+    public void rejectsOtherClasses() throws IOException {
+        Repository repo = _repos.create();
+        byte[] date = Utils.serialize((Serializable) new Date());
+        assertRejected(repo, pack(Pack.COMMIT, repo.hash(date),
+                                  date.length, date));
+    }
+
+    @Test
+    public void rejectsHugeEntries() throws IOException {
+        Repository repo = _repos.create();
+        String id = Utils.sha1("huge");
+        assertRejected(repo, pack(Pack.BLOB, id, Integer.MAX_VALUE,
+                                  new byte[0]));
+        assertRejected(repo, pack(Pack.BLOB, id, -1, new byte[0]));
+    }
+
+    @Test
+    public void commitIDsDoNotDependOnTheTableOfFiles() throws IOException {
+        Repository from = _repos.create();
+        for (int i = 0; i < 40; i += 1) {
+            Utils.writeContents(from.workingFile("f" + i), i + "\n");
+            from.add("f" + i);
+        }
+        CommitNode head = from.commit("many files");
+        File bundle = new File(from.root(), "many.bundle");
+        from.createBundle(bundle.getPath(), "master");
+        Repository to = _repos.create();
+        assertEquals(head.getID(),
+                     to.unbundle(bundle.getPath()).get("master"));
+        assertEquals(40, to.readCommit(head.getID()).getFiles().size());
+    }
+
+    @Test
+    public void rejectsForgedCommit() throws Exception {
+        Repository repo = _repos.create();
+        CommitNode head = commitFile(repo, "a.txt", "a\n", "honest");
+        String id = head.getID();
+        repo.deleteObject(repo.commitFile(id));
+        byte[] commit = forged(head, "_log", "forged");
+        assertRejected(repo, pack(Pack.COMMIT, id, commit.length, commit));
+        assertFalse(repo.commitFile(id).exists());
+    }
+
+    @Test
+    public void legacyCommitsOnlyFromTrustedPacks() throws Exception {
+        Repository repo = _repos.create();
+        CommitNode head = commitFile(repo, "a.txt", "a\n", "old");
+        String id = head.getID();
+        repo.deleteObject(repo.commitFile(id));
+        byte[] commit = forged(head, "_version", CommitNode.LEGACY);
+        byte[] bytes = pack(Pack.COMMIT, id, commit.length, commit);
+        assertRejected(repo, bytes);
+        assertEquals(1, Pack.read(repo, new ByteArrayInputStream(bytes),
+                                  true));
+        assertTrue(repo.commitFile(id).exists());
+    }
+
+    @Test
+    public void acceptsMergeCommits() throws IOException {
+        Repository from = _repos.create();
+        commitFile(from, "a.txt", "a\n", "a");
+        from.branch("other");
+        commitFile(from, "b.txt", "b\n", "b");
+        from.checkoutBranch("other");
+        from.remove("a.txt");
+        commitFile(from, "c.txt", "c\n", "remove a, add c");
+        from.checkoutBranch("master");
+        from.merge("other");
+        File bundle = new File(from.root(), "merged.bundle");
+        from.createBundle(bundle.getPath(), "master");
+        Repository to = _repos.create();
+        assertEquals(from.branches().get("master"),
+                     to.unbundle(bundle.getPath()).get("master"));
+    }
+
+    @Test
+    public void fetchCopiesBranch() throws IOException {
+        Repository remote = _repos.create();
+        CommitNode head = commitFile(remote, "a.txt", "remote\n", "first");
+        Repository repo = _repos.create();
+        repo.addRemote("origin", remote.gitletDir().getPath());
+        boolean sameRoot = repo.commitFile(head.getParent()).exists();
+        assertEquals(sameRoot ? 2 : 3, repo.fetch("origin", "master"));
+        assertEquals(head.getID(), repo.branches().get("origin/master"));
+        assertEquals(0, repo.fetch("origin", "master"));
+    }
+
+    @Test
+    public void fetchRejectsCorruptRemote() throws IOException {
+        Repository remote = _repos.create();
+        CommitNode head = commitFile(remote, "a.txt", "one\n", "first");
+        CommitNode other = commitFile(remote, "b.txt", "two\n", "second");
+        File blob = remote.objectFile(head.getFiles().get("a.txt"));
+        Files.copy(remote.objectFile(other.getFiles().get("b.txt"))
+                   .toPath(), blob.toPath(),
+                   StandardCopyOption.REPLACE_EXISTING);
+        Repository repo = _repos.create();
+        repo.addRemote("origin", remote.gitletDir().getPath());
+        try {
+            repo.fetch("origin", "master");
+            fail("corrupt object fetched");
+        } catch (GitletException excp) {
+            assertEquals("Corrupt pack.", excp.getMessage());
+        }
+        assertFalse(repo.branches().containsKey("origin/master"));
+    }
+
+    @Test(expected = GitletException.class)
+    public void rejectsPathsAsFileIDs() throws IOException {
+        _repos.create().objectFile("../head");
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
@@ -0,0 +1,100 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+/** Tests of cherry-pick and rebase.
+ *  @author ryangaray
+ */
+public class RebaseTest {
+
+    /** Deletes the repositories made by the last test. */
+    @After
+    public void deleteRepositories() throws IOException {
+        _repos.deleteAll();
+    }
+
+    /** Returns the recorded history of the current branch of REPO. */
+    static List<String> history(Repository repo) {
+        return repo.read(tree ->
+            tree.getBranchHistory().get(tree.currentBranch()));
+    }
+
+    /** Returns the head commit of REPO. */
+    static CommitNode head(Repository repo) {
+        return repo.readCommit(repo.branches().get(repo.currentBranch()));
+    }
+
+    @Test
+    public void rebaseReplaysBranch() throws IOException {
+        Repository repo = _repos.create();
+        PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        repo.branch("topic");
+        CommitNode onto = PackTest.commitFile(repo, "m.txt", "m\n", "m");
+        repo.checkoutBranch("topic");
+        PackTest.commitFile(repo, "t.txt", "t1\n", "t1");
+        PackTest.commitFile(repo, "t.txt", "t2\n", "t2");
+        assertEquals(MergeResult.MERGED, repo.rebase("master"));
+
+        CommitNode head = head(repo);
+        assertEquals("t2", head.getLog());
+        CommitNode first = repo.readCommit(head.getParent());
+        assertEquals("t1", first.getLog());
+        assertEquals(onto.getID(), first.getParent());
+        assertTrue(head.getFiles().containsKey("m.txt"));
+        assertEquals("t2\n",
+                     Utils.readContentsAsString(repo.workingFile("t.txt")));
+        List<String> history = history(repo);
+        assertEquals(1, Collections.frequency(history, onto.getID()));
+        assertEquals(1, Collections.frequency(history, first.getID()));
+        assertFalse(history.contains(head.getID()));
+        assertTrue(repo.isAncestor("master", "topic"));
+    }
+
+    @Test
+    public void rebaseAcrossMerge() throws IOException {
+        Repository repo = _repos.create();
+        PackTest.commitFile(repo, "a.txt", "a\n", "base");
+        repo.branch("other");
+        repo.checkoutBranch("other");
+        PackTest.commitFile(repo, "o.txt", "o\n", "o1");
+        repo.checkoutBranch("master");
+        PackTest.commitFile(repo, "m.txt", "m\n", "m1");
+        repo.merge("other");
+        repo.checkoutBranch("other");
+        CommitNode onto = PackTest.commitFile(repo, "p.txt", "p\n", "o2");
+        repo.checkoutBranch("master");
+        assertEquals(MergeResult.MERGED, repo.rebase("other"));
+
+        CommitNode head = head(repo);
+        assertEquals("m1", head.getLog());
+        assertEquals(onto.getID(), head.getParent());
+        assertTrue(head.getFiles().keySet().containsAll(
+            List.of("a.txt", "o.txt", "m.txt", "p.txt")));
+    }
+
+    @Test
+    public void cherryPickCopiesChange() throws IOException {
+        Repository repo = _repos.create();
+        PackTest.commitFile(repo, "a.txt", "a\n", "a");
+        repo.branch("other");
+        repo.checkoutBranch("other");
+        CommitNode picked = PackTest.commitFile(repo, "b.txt", "b\n", "b");
+        repo.checkoutBranch("master");
+        repo.cherryPick(picked.getID());
+        CommitNode head = head(repo);
+        assertEquals("b", head.getLog());
+        assertEquals(picked.getFiles().get("b.txt"),
+                     head.getFiles().get("b.txt"));
+        assertEquals("b\n",
+                     Utils.readContentsAsString(repo.workingFile("b.txt")));
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
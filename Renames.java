@@ -0,0 +1,278 @@
+package gitlet;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+/** Finds the files renamed between two versions of a tree. A file is
+ *  renamed if it is gone from the new version and a file added there has
+ *  the same contents, or, failing that, contents similar enough.
+ *
+ *  Similarity is estimated from MinHash sketches rather than by comparing
+ *  every removed file with every added one: each file is reduced to the
+ *  smallest hashes of its lines (of its chunk IDs, for chunked blobs)
+ *  under SKETCH hash functions, and the fraction of those two files share
+ *  estimates the Jaccard similarity of their lines. Sketches are split
+ *  into bands, and only files sharing a whole band are compared, so the
+ *  work grows about linearly with the number of files. Those are compared
+ *  exactly, on the hashes of their lines, so near-duplicates are told
+ *  apart. The least similarity accepted is the system property PROPERTY,
+ *  in percent.
+ *  @author ryangaray
+ */
+class Renames {
+
+    /** Name of the system property giving the threshold. */
+    static final String PROPERTY = "gitlet.renameThreshold";
+    /** Threshold in percent used if the property is not set. */
+    static final int DEFAULT_THRESHOLD = 50;
+    /** Number of hashes in a sketch. */
+    static final int SKETCH = 64;
+    /** Number of hashes in a band. */
+    static final int ROWS = 2;
+
+    /** Returns the files of BEFORE renamed in AFTER, each mapped to its
+     *  new name. BEFORE and AFTER map file names to the IDs of their
+     *  blobs in REPO; either may be null, meaning no files. */
+    static Map<String, String> detect(Repository repo,
+                                      Map<String, String> before,
+                                      Map<String, String> after) {
+        TreeMap<String, String> result = new TreeMap<>();
+        if (before == null || after == null) {
+            return result;
+        }
+        List<String> removed = new ArrayList<>();
+        for (String name : before.keySet()) {
+            if (!after.containsKey(name)) {
+                removed.add(name);
+            }
+        }
+        List<String> added = new ArrayList<>();
+        for (String name : after.keySet()) {
+            if (!before.containsKey(name)) {
+                added.add(name);
+            }
+        }
+        if (removed.isEmpty() || added.isEmpty()) {
+            return result;
+        }
+        Collections.sort(removed);
+        Collections.sort(added);
+        Map<String, Blob> blobs = new HashMap<>();
+        Map<String, Deque<String>> byContents = new HashMap<>();
+        for (String name : removed) {
+            Blob blob = Blob.fromFileObj(repo, before.get(name));
+            blobs.put(name, blob);
+            byContents.computeIfAbsent(blob.getFileID(),
+                                       k -> new ArrayDeque<>()).add(name);
+        }
+        List<String> unmatched = new ArrayList<>();
+        for (String name : added) {
+            Blob blob = Blob.fromFileObj(repo, after.get(name));
+            Deque<String> same = byContents.get(blob.getFileID());
+            if (same != null && !same.isEmpty()) {
+                result.put(same.poll(), name);
+            } else {
+                blobs.put(name, blob);
+                unmatched.add(name);
+            }
+        }
+        removed.removeIf(result::containsKey);
+        if (!removed.isEmpty() && !unmatched.isEmpty()) {
+            similar(repo, removed, unmatched, blobs, result);
+        }
+        return result;
+    }
+
+    /** Adds to RESULT the renames from REMOVED to ADDED of similar
+     *  contents, best matches first, where BLOBS has the blob of every
+     *  file. */
+    private static void similar(Repository repo, List<String> removed,
+                                List<String> added, Map<String, Blob> blobs,
+                                Map<String, String> result) {
+        int threshold = threshold();
+        Map<Long, List<String>> buckets = new HashMap<>();
+        Map<String, long[]> features = new HashMap<>();
+        for (String name : removed) {
+            long[] hashes = features(repo, blobs.get(name));
+            if (hashes != null) {
+                features.put(name, hashes);
+                long[] sketch = sketch(hashes);
+                for (int band = 0; band < SKETCH / ROWS; band += 1) {
+                    buckets.computeIfAbsent(bucket(sketch, band),
+                                            k -> new ArrayList<>()).add(name);
+                }
+            }
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (String name : added) {
+            long[] hashes = features(repo, blobs.get(name));
+            if (hashes == null) {
+                continue;
+            }
+            long[] sketch = sketch(hashes);
+            Set<String> compared = new HashSet<>();
+            for (int band = 0; band < SKETCH / ROWS; band += 1) {
+                List<String> bucket = buckets.get(bucket(sketch, band));
+                if (bucket == null) {
+                    continue;
+                }
+                for (String old : bucket) {
+                    if (!compared.add(old)) {
+                        continue;
+                    }
+                    double score = similarity(features.get(old), hashes);
+                    if (100 * score >= threshold) {
+                        candidates.add(new Candidate(old, name, score));
+                    }
+                }
+            }
+        }
+        Collections.sort(candidates);
+        Set<String> used = new HashSet<>();
+        for (Candidate candidate : candidates) {
+            if (!used.contains(candidate._old)
+                && !used.contains(candidate._new)) {
+                used.add(candidate._old);
+                used.add(candidate._new);
+                result.put(candidate._old, candidate._new);
+            }
+        }
+    }
+
+    /** Returns the least similarity of renamed files, in percent: the
+     *  system property PROPERTY, or DEFAULT_THRESHOLD if it is not set. */
+    static int threshold() {
+        String value = System.getProperty(PROPERTY);
+        if (value == null) {
+            return DEFAULT_THRESHOLD;
+        }
+        try {
+            int threshold = Integer.parseInt(value);
+            if (threshold >= 0 && threshold <= 100) {
+                return threshold;
+            }
+        } catch (NumberFormatException excp) {
+            /* Reported below. */
+        }
+        throw Utils.error("Invalid rename threshold %s.", value);
+    }
+
+    /** Returns the distinct hashes of the lines of BLOB in REPO, or of
+     *  its chunk IDs if it is chunked, in order, or null if it has none. */
+    private static long[] features(Repository repo, Blob blob) {
+        List<String> features;
+        if (blob.isChunked()) {
+            features = blob.getChunks();
+        } else {
+            String contents = blob.getContents(repo);
+            if (contents.isEmpty()) {
+                return null;
+            }
+            features = Arrays.asList(contents.split("\n"));
+        }
+        long[] hashes = new long[features.size()];
+        for (int i = 0; i < hashes.length; i += 1) {
+            String feature = features.get(i);
+            hashes[i] = mix(feature.hashCode() * 0x9e3779b97f4a7c15L
+                            + feature.length());
+        }
+        Arrays.sort(hashes);
+        return Arrays.stream(hashes).distinct().toArray();
+    }
+
+    /** Returns the MinHash sketch of the distinct hashes FEATURES. */
+    private static long[] sketch(long[] features) {
+        long[] sketch = new long[SKETCH];
+        Arrays.fill(sketch, Long.MAX_VALUE);
+        for (long hash : features) {
+            for (int i = 0; i < SKETCH; i += 1) {
+                sketch[i] = Math.min(sketch[i], mix(hash ^ SEEDS[i]));
+            }
+        }
+        return sketch;
+    }
+
+    /** Returns the Jaccard similarity of the sorted, distinct hashes A
+     *  and B. */
+    private static double similarity(long[] a, long[] b) {
+        int same = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] == b[j]) {
+                same += 1;
+                i += 1;
+                j += 1;
+            } else if (a[i] < b[j]) {
+                i += 1;
+            } else {
+                j += 1;
+            }
+        }
+        return (double) same / (a.length + b.length - same);
+    }
+
+    /** Returns the key of the bucket of band BAND of SKETCH. */
+    private static long bucket(long[] sketch, int band) {
+        long key = band;
+        for (int i = band * ROWS; i < (band + 1) * ROWS; i += 1) {
+            key = mix(key * 31 + sketch[i]);
+        }
+        return key;
+    }
+
+    /** Returns H with its bits mixed, as in MurmurHash3. */
+    private static long mix(long h) {
+        h = (h ^ (h >>> 33)) * 0xff51afd7ed558ccdL;
+        h = (h ^ (h >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+
+    /** A possible rename. */
+    private static class Candidate implements Comparable<Candidate> {
+
+        /** A rename from OLD to NAME of similarity SCORE. */
+        Candidate(String old, String name, double score) {
+            _old = old;
+            _new = name;
+            _score = score;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            if (_score != other._score) {
+                return Double.compare(other._score, _score);
+            } else if (!_old.equals(other._old)) {
+                return _old.compareTo(other._old);
+            }
+            return _new.compareTo(other._new);
+        }
+
+        /** The removed file. */
+        private final String _old;
+        /** The added file. */
+        private final String _new;
+        /** Similarity, from 0 to 1. */
+        private final double _score;
+    }
+
+    /** The seed of each hash function of a sketch. */
+    private static final long[] SEEDS = new long[SKETCH];
+
+    static {
+        Random random = new Random(SKETCH);
+        for (int i = 0; i < SKETCH; i += 1) {
+            SEEDS[i] = random.nextLong();
+        }
+    }
+}
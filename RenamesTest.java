@@ -0,0 +1,102 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/** Tests of rename detection.
+ *  @author ryangaray
+ */
+public class RenamesTest {
+
+    /** Deletes the repositories made by the last test and clears the
+     *  threshold property. */
+    @After
+    public void deleteRepositories() throws IOException {
+        System.clearProperty(Renames.PROPERTY);
+        _repos.deleteAll();
+    }
+
+    /** Adds to FILES the file NAME of REPO with CONTENTS, saving its
+     *  blob. */
+    static void put(Repository repo, Map<String, String> files, String name,
+                    String contents) {
+        Utils.writeContents(repo.workingFile(name), contents);
+        files.put(name, new Blob(repo, name).getID());
+    }
+
+    /** Returns the lines "line 0" to "line N-1", each followed by a
+     *  newline, with line K replaced by REPLACEMENT if K >= 0. */
+    static String lines(int n, int k, String replacement) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < n; i += 1) {
+            result.append(i == k ? replacement : "line " + i).append('\n');
+        }
+        return result.toString();
+    }
+
+    @Test
+    public void exactRenames() throws IOException {
+        Repository repo = _repos.create();
+        Map<String, String> before = new HashMap<>();
+        Map<String, String> after = new HashMap<>();
+        put(repo, before, "a.txt", "same\n");
+        put(repo, before, "kept.txt", "kept\n");
+        put(repo, after, "b.txt", "same\n");
+        put(repo, after, "kept.txt", "kept\n");
+        assertEquals(Map.of("a.txt", "b.txt"),
+                     Renames.detect(repo, before, after));
+        assertTrue(Renames.detect(repo, before, null).isEmpty());
+    }
+
+    @Test
+    public void similarRenamesMeetTheThreshold() throws IOException {
+        Repository repo = _repos.create();
+        Map<String, String> before = new HashMap<>();
+        Map<String, String> after = new HashMap<>();
+        put(repo, before, "old.txt", lines(20, -1, null));
+        put(repo, after, "new.txt", lines(20, 7, "changed"));
+        put(repo, after, "other.txt", "something else\nentirely\n");
+        assertEquals(Map.of("old.txt", "new.txt"),
+                     Renames.detect(repo, before, after));
+        System.setProperty(Renames.PROPERTY, "95");
+        assertTrue(Renames.detect(repo, before, after).isEmpty());
+        System.setProperty(Renames.PROPERTY, "0");
+        assertEquals(0, Renames.threshold());
+    }
+
+    @Test
+    public void bestMatchWins() throws IOException {
+        Repository repo = _repos.create();
+        Map<String, String> before = new HashMap<>();
+        Map<String, String> after = new HashMap<>();
+        put(repo, before, "close.txt", lines(20, 3, "close"));
+        put(repo, before, "far.txt", lines(20, -1, null)
+            .replace("line 1\n", "x\n").replace("line 2\n", "y\n")
+            .replace("line 4\n", "z\n"));
+        put(repo, after, "new.txt", lines(20, -1, null));
+        assertEquals(Map.of("close.txt", "new.txt"),
+                     Renames.detect(repo, before, after));
+    }
+
+    @Test
+    public void invalidThresholdsAreRefused() {
+        for (String value : new String[] {"101", "-1", "half"}) {
+            System.setProperty(Renames.PROPERTY, value);
+            try {
+                Renames.threshold();
+                fail("threshold " + value + " accepted");
+            } catch (GitletException excp) {
+                assertEquals("Invalid rename threshold " + value + ".",
+                             excp.getMessage());
+            }
+        }
+    }
+
+    /** The repositories made by the current test. */
+    private final TestRepositories _repos = new TestRepositories();
+}
@@ -0,0 +1,1429 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/** A Gitlet repository rooted at an arbitrary directory. This is the
+ *  embeddable entry point to Gitlet: every command is a method that
+ *  returns its result or throws a GitletException whose message is the
+ *  error Gitlet would print, and nothing here prints or exits. Several
+ *  repositories may be open in one JVM. Reading methods (log, status,
+ *  find, object reads, ...) may run concurrently with each other, while
+ *  commands that change the repository run one at a time.
+ *  @author ryangaray
+ */
+public class Repository {
+
+    /** A repository whose working directory is ROOT. The repository
+     *  need not exist yet; see init. */
+    public Repository(File root) {
+        _root = root.getAbsoluteFile();
+        _gitlet = new File(_root, ".gitlet");
+        _stage = Utils.join(_gitlet, "stage");
+        _objects = Utils.join(_gitlet, "objects");
+        _nodes = Utils.join(_gitlet, "commits");
+        _remove = Utils.join(_gitlet, "remove");
+        _head = Utils.join(_gitlet, "head");
+        _headFile = Utils.join(_head, "currentHead");
+        _formatFile = Utils.join(_gitlet, "format");
+        _tmp = Utils.join(_gitlet, "tmp");
+        _durability = Durability.fromProperty();
+        _headLock = LockFile.of(Utils.join(_gitlet, "lock"));
+        _writerLock = LockFile.of(Utils.join(_gitlet, "write.lock"));
+        _graphFile = Utils.join(_gitlet, "commit-graph");
+        _remotes = Utils.join(_gitlet, "remotes");
+        _chunks = Utils.join(_gitlet, "chunks");
+        _sparseFile = Utils.join(_gitlet, "sparse-checkout");
+        _promisorFile = Utils.join(_gitlet, "promisor");
+    }
+
+    /** Returns iff this repository has been initialized. */
+    public boolean isInitialized() {
+        return _gitlet.exists();
+    }
+
+    /** Throws a GitletException unless this repository is initialized. */
+    void checkInitialized() {
+        if (!isInitialized()) {
+            throw Utils.error("Not in an initialized Gitlet directory.");
+        }
+    }
+
+    /* COMMANDS */
+
+    /** Creates this repository with a single initial commit, naming
+     *  objects with SHA-1. */
+    public void init() {
+        init(HashAlgorithm.SHA1);
+    }
+
+    /** Creates this repository with a single initial commit, naming
+     *  objects with ALGORITHM. */
+    public void init(HashAlgorithm algorithm) {
+        _lock.writeLock().lock();
+        try {
+            if (_nodes.exists()) {
+                throw Utils.error("A Gitlet version-control "
+                    + "system already exists in the current directory.");
+            }
+            setupPersistence();
+            if (algorithm != HashAlgorithm.SHA1) {
+                Utils.writeContents(_formatFile, algorithm.algorithmName());
+            }
+            _hash = algorithm;
+            _writerLock.lockExclusive();
+            try {
+                store(new CommitTree(this, "initial commit"));
+            } finally {
+                _writerLock.unlockExclusive();
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /** Stages the working file named FILENAME for addition. */
+    public void add(String filename) {
+        update(tree -> {
+            File file = workingFile(filename);
+            if (!file.exists()) {
+                throw Utils.error("File does not exist.");
+            }
+            File blobFile = new File(_stage, filename);
+            File stageRemoveFile = new File(_remove, filename);
+            Map<String, String> headFiles = tree.getHead().getFiles();
+            if (headFiles != null && headFiles.containsKey(filename)) {
+                Blob blob = Blob.fromFileObj(this, headFiles.get(filename));
+                if (!blob.modified(this)) {
+                    blobFile.delete();
+                    stageRemoveFile.delete();
+                    return null;
+                }
+            }
+            if (blobFile.exists()) {
+                Blob blob = readObject(blobFile, Blob.class);
+                blob.setFile(this, filename);
+            } else {
+                Blob blob = new Blob(this, filename);
+                blob.saveBlob(this);
+            }
+            stageRemoveFile.delete();
+            return null;
+        });
+    }
+
+    /** Commits the staged files with message MSG and returns the new
+     *  head commit. */
+    public CommitNode commit(String msg) {
+        return update(tree -> {
+            File[] staged = Objects.requireNonNull(Utils.listFiles(_stage));
+            File[] removed = Objects.requireNonNull(Utils.listFiles(_remove));
+            if (staged.length == 0 && removed.length == 0) {
+                throw Utils.error("No changes added to the commit.");
+            }
+            if (msg.equals("")) {
+                throw Utils.error("Please enter a commit message.");
+            }
+            tree.commit(msg);
+            return tree.getHead();
+        });
+    }
+
+    /** Unstages FILENAME, and stages it for removal if it is tracked. */
+    public void remove(String filename) {
+        update(tree -> {
+            tree.removeFile(filename);
+            return null;
+        });
+    }
+
+    /** Creates a branch NAME at the head commit. */
+    public void branch(String name) {
+        update(tree -> {
+            tree.branch(name);
+            return null;
+        });
+    }
+
+    /** Deletes the branch NAME. */
+    public void removeBranch(String name) {
+        update(tree -> {
+            tree.removeBranch(name);
+            return null;
+        });
+    }
+
+    /** Restores FILENAME in the working directory as it is in the head
+     *  commit. */
+    public void checkoutFile(String filename) {
+        update(tree -> {
+            Map<String, String> files = tree.getHead().getFiles();
+            if (files == null || !files.containsKey(filename)) {
+                throw Utils.error("File does not exist in that commit.");
+            }
+            tree.checkout(Blob.fromFileObj(this, files.get(filename)));
+            return null;
+        });
+    }
+
+    /** Restores FILENAME in the working directory as it is in the
+     *  commit whose possibly abbreviated ID is COMMITID. */
+    public void checkoutFile(String commitID, String filename) {
+        update(tree -> {
+            String id = resolve(tree, commitID);
+            CommitNode node = readObject(commitFile(id), CommitNode.class);
+            if (node.getFiles() == null
+                || !node.getFiles().containsKey(filename)) {
+                throw Utils.error("File does not exist in that commit.");
+            }
+            tree.checkout(id,
+                Blob.fromFileObj(this, node.getFiles().get(filename)));
+            return null;
+        });
+    }
+
+    /** Checks out the branch named BRANCH. */
+    public void checkoutBranch(String branch) {
+        update(tree -> {
+            tree.checkout(branch);
+            return null;
+        });
+    }
+
+    /** Checks out the commit whose possibly abbreviated ID is COMMITID
+     *  and moves the current branch to it. */
+    public void reset(String commitID) {
+        update(tree -> {
+            tree.reset(commitID);
+            return null;
+        });
+    }
+
+    /** Applies the changes of the commit COMMITID to the head as a new
+     *  commit. */
+    public void cherryPick(String commitID) {
+        update(tree -> {
+            tree.cherryPick(commitID);
+            return null;
+        });
+    }
+
+    /** Replays the current branch's own commits onto BRANCH. */
+    public MergeResult rebase(String branch) {
+        return update(tree -> tree.rebase(branch));
+    }
+
+    /** Merges BRANCH into the current branch. */
+    public MergeResult merge(String branch) {
+        return update(tree -> merge(tree, branch, false));
+    }
+
+    /** Records the repository whose .gitlet directory is at PATH, with
+     *  '/' separating its components, as the remote NAME. */
+    public void addRemote(String name, String path) {
+        checkInitialized();
+        File file = new File(_remotes, name);
+        if (file.exists()) {
+            throw Utils.error("A remote with that name already exists.");
+        }
+        _remotes.mkdir();
+        Utils.writeContents(file, path.replace("/", File.separator));
+    }
+
+    /** Forgets the remote NAME. */
+    public void removeRemote(String name) {
+        checkInitialized();
+        if (!new File(_remotes, name).delete()) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+    }
+
+    /** Returns a sorted map from the name of each remote to the path of
+     *  its .gitlet directory. */
+    public Map<String, String> remotes() {
+        checkInitialized();
+        Map<String, String> result = new TreeMap<>();
+        List<String> names = Utils.plainFilenamesIn(_remotes);
+        if (names != null) {
+            for (String name : names) {
+                result.put(name, Utils.readContentsAsString(
+                    new File(_remotes, name)));
+            }
+        }
+        return result;
+    }
+
+    /** Copies the commits of the branch BRANCH of the remote REMOTE that
+     *  this repository lacks, with their blobs, and points the branch
+     *  REMOTE/BRANCH at its head. Returns the number of objects and
+     *  commits copied. */
+    public int fetch(String remote, String branch) {
+        Repository from = remote(remote);
+        String head = from.read(tree -> tree.getBranches().get(branch));
+        if (head == null) {
+            throw Utils.error("That remote does not have that branch.");
+        }
+        Pack.checkID(this, head);
+        List<String> haves = read(tree ->
+            new ArrayList<>(tree.getBranches().values()));
+        File pack = packFile();
+        try {
+            return update(tree -> {
+                from.read(theirs -> Pack.write(from, theirs,
+                    Collections.singletonList(head), haves, pack));
+                int added = Pack.read(this, pack, true);
+                tree.setBranch(remote + "/" + branch, head,
+                               history(tree, head));
+                return added;
+            });
+        } finally {
+            pack.delete();
+        }
+    }
+
+    /** Copies the commits of the current branch that the remote REMOTE
+     *  lacks, with their blobs, and points its branch BRANCH at the
+     *  current head. The remote's branch must be an ancestor of the
+     *  head. Returns the number of objects and commits copied. */
+    public int push(String remote, String branch) {
+        Repository to = remote(remote);
+        Map<String, String> theirs = to.branches();
+        String theirHead = theirs.get(branch);
+        for (String id : theirs.values()) {
+            Pack.checkID(this, id);
+        }
+        String head = read(tree -> {
+            if (theirHead != null && !isUnborn(to, theirHead)
+                && !isAncestor(tree, theirHead, tree.getHead().getID())) {
+                throw Utils.error("Please pull down remote changes "
+                                  + "before pushing.");
+            }
+            return tree.getHead().getID();
+        });
+        File pack = to.packFile();
+        try {
+            return to.update(tree -> {
+                if (!Objects.equals(tree.getBranches().get(branch),
+                                    theirHead)) {
+                    throw Utils.error("Please pull down remote changes "
+                                      + "before pushing.");
+                }
+                read(ours -> Pack.write(this, ours,
+                    Collections.singletonList(head), theirs.values(),
+                    pack));
+                int added = Pack.read(to, pack, true);
+                tree.setBranch(branch, head, to.history(tree, head));
+                return added;
+            });
+        } finally {
+            pack.delete();
+        }
+    }
+
+    /** Fetches the branch BRANCH of the remote REMOTE and merges
+     *  REMOTE/BRANCH into the current branch, fast-forwarding it if it
+     *  is an ancestor of REMOTE/BRANCH or still unborn. */
+    public MergeResult pull(String remote, String branch) {
+        fetch(remote, branch);
+        String name = remote + "/" + branch;
+        return update(tree -> merge(tree, name, true));
+    }
+
+    /** Merges BRANCH into the current branch of TREE. A current branch
+     *  that is still unborn is fast-forwarded to BRANCH, as is one that
+     *  BRANCH descends from if KEEPBRANCH; the plain merge command
+     *  instead fast-forwards by checking BRANCH out. */
+    private MergeResult merge(CommitTree tree, String branch,
+                              boolean keepBranch) {
+        String theirs = tree.getBranches().get(branch);
+        String ours = tree.getHead().getID();
+        if (theirs != null && !ours.equals(theirs)) {
+            boolean ancestor = isAncestor(tree, ours, theirs);
+            if (!ancestor && isUnborn(this, ours)
+                || ancestor && keepBranch) {
+                tree.fastForward(branch);
+                return MergeResult.FAST_FORWARDED;
+            }
+        }
+        return tree.merge(branch);
+    }
+
+    /** Makes this repository, which must not exist yet, a clone of the
+     *  one at PATH: shares its objects and commits, which never change
+     *  once written, as hard links (copying them where links cannot be
+     *  made), adds it as the remote origin with its branches as
+     *  origin/NAME, and checks out its current branch. If PARTIAL, only
+     *  the commits are shared, and blobs are fetched from origin when
+     *  first needed. */
+    public void cloneFrom(String path, boolean partial) {
+        File gitlet = new File(path).getAbsoluteFile();
+        if (!gitlet.getName().equals(".gitlet")) {
+            gitlet = new File(gitlet, ".gitlet");
+        }
+        Repository from = new Repository(gitlet.getParentFile());
+        if (!from.isInitialized()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        String[] existing = _root.list();
+        if (existing != null && existing.length > 0) {
+            throw Utils.error("Destination path already exists and is not "
+                              + "an empty directory.");
+        }
+        _root.mkdirs();
+        _lock.writeLock().lock();
+        try {
+            setupPersistence();
+            _hash = from.hashAlgorithm();
+            if (_hash != HashAlgorithm.SHA1) {
+                Utils.writeContents(_formatFile, _hash.algorithmName());
+            }
+            _remotes.mkdir();
+            Utils.writeContents(new File(_remotes, "origin"),
+                                gitlet.getPath());
+            if (partial) {
+                Utils.writeContents(_promisorFile, "origin");
+            }
+            CommitTree tree = from.read(source -> {
+                shareAll(from._nodes, _nodes);
+                if (partial) {
+                    return Utils.deserialize(Utils.serialize(source),
+                                             CommitTree.class);
+                }
+                shareAll(from._objects, _objects);
+                if (from._chunks.isDirectory()) {
+                    _chunks.mkdir();
+                    shareAll(from._chunks, _chunks);
+                }
+                return Utils.deserialize(Utils.serialize(source),
+                                         CommitTree.class);
+            });
+            tree.attach(this);
+            tree.trackAs("origin");
+            tree.getHead().toWorkingDir(this);
+            _writerLock.lockExclusive();
+            try {
+                store(tree);
+            } finally {
+                _writerLock.unlockExclusive();
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /** Fetches, as one pack, the blobs whose IDs are IDS that this
+     *  repository lacks from the remote it was partially cloned from.
+     *  Does nothing unless this is a partial clone. */
+    void prefetch(Collection<String> ids) {
+        if (!_promisorFile.exists()) {
+            return;
+        }
+        synchronized (_promisorFile) {
+            List<String> missing = new ArrayList<>();
+            for (String id : ids) {
+                if (!objectFile(id).exists()) {
+                    missing.add(id);
+                }
+            }
+            if (missing.isEmpty()) {
+                return;
+            }
+            Repository from =
+                remote(Utils.readContentsAsString(_promisorFile).trim());
+            File pack = packFile();
+            try {
+                from.read(tree -> Pack.writeBlobs(from, missing, pack));
+                Pack.read(this, pack, true);
+                flush();
+            } finally {
+                pack.delete();
+            }
+        }
+    }
+
+    /** Links every file in the directory FROM into the directory TO, or
+     *  copies those that cannot be linked. */
+    private static void shareAll(File from, File to) {
+        File[] files = Utils.listFiles(from);
+        if (files == null) {
+            return;
+        }
+        AtomicBoolean linking = new AtomicBoolean(true);
+        Arrays.stream(files).parallel().forEach(file -> {
+            Path target = new File(to, file.getName()).toPath();
+            try {
+                if (linking.get()) {
+                    try {
+                        Files.createLink(target, file.toPath());
+                        return;
+                    } catch (IOException | UnsupportedOperationException
+                             excp) {
+                        linking.set(false);
+                    }
+                }
+                Files.copy(file.toPath(), target,
+                           StandardCopyOption.COPY_ATTRIBUTES);
+            } catch (IOException excp) {
+                throw Utils.error("Cannot clone %s: %s", file.getName(),
+                                  excp.getMessage());
+            }
+        });
+    }
+
+    /** Writes to the file PATH a bundle of the commits in RANGE, which
+     *  is a branch or commit TIP, or BASE..TIP for the commits reachable
+     *  from TIP and not BASE. Returns the number of objects and commits
+     *  written. */
+    public int createBundle(String path, String range) {
+        int dots = range.indexOf("..");
+        String tip = dots < 0 ? range : range.substring(dots + 2);
+        return read(tree -> {
+            List<String> haves = new ArrayList<>();
+            if (dots >= 0) {
+                haves.add(revision(tree, range.substring(0, dots)));
+            }
+            return Bundle.write(this, tree,
+                Collections.singletonMap(tip, revision(tree, tip)),
+                haves, pathFile(path));
+        });
+    }
+
+    /** Adds the commits of the bundle in the file PATH to this
+     *  repository, pointing the branch bundle/NAME at the commit of each
+     *  ref NAME it carries. Returns the refs. */
+    public Map<String, String> unbundle(String path) {
+        return update(tree -> {
+            Map<String, String> refs = Bundle.read(this, pathFile(path));
+            for (Map.Entry<String, String> ref : refs.entrySet()) {
+                String head = ref.getValue();
+                if (!commitFile(head).exists()) {
+                    throw Utils.error("Corrupt bundle.");
+                }
+                tree.setBranch("bundle/" + ref.getKey(), head,
+                               history(tree, head));
+            }
+            return refs;
+        });
+    }
+
+    /** Returns the commits from the head back to the initial commit,
+     *  following first parents. */
+    public List<CommitNode> log() {
+        return read(CommitTree::log);
+    }
+
+    /** Returns the commits of the head's first-parent history that
+     *  changed the file NAME from their first parents, newest first. */
+    public List<CommitNode> log(String name) {
+        return read(tree -> log(tree, name));
+    }
+
+    /** Returns every commit ever made, in no particular order. */
+    public List<CommitNode> globalLog() {
+        return read(CommitTree::globalLog);
+    }
+
+    /** Returns the IDs of all commits whose message is MSG. */
+    public List<String> find(String msg) {
+        return read(tree -> tree.find(msg));
+    }
+
+    /** Returns the commit that last changed each line of the file NAME
+     *  in the head commit. */
+    public Blame blame(String name) {
+        return read(tree -> Blame.compute(this, tree, name));
+    }
+
+    /** Returns the status of the branches, stage and working
+     *  directory. */
+    public Status status() {
+        return read(CommitTree::status);
+    }
+
+    /** Returns the name of the current branch. */
+    public String currentBranch() {
+        return read(CommitTree::currentBranch);
+    }
+
+    /** Deletes the commits and blobs that cannot be reached from any
+     *  branch, the head or the stage, sparing those written in the last
+     *  GRACESECONDS seconds, and returns what was done. Readers in other
+     *  processes wait while files are deleted. Writes deferred by
+     *  Durability.COMMAND are flushed first, so that the temporary files
+     *  left are those of commands that no longer hold any lock. */
+    public GcResult gc(long graceSeconds) {
+        checkInitialized();
+        _lock.writeLock().lock();
+        try {
+            _writerLock.lockExclusive();
+            try {
+                flush();
+                CommitTree tree = tree();
+                GarbageCollector collector = new GarbageCollector(
+                    this, tree, graph(tree), graceSeconds);
+                collector.mark();
+                _headLock.lockExclusive();
+                try {
+                    return collector.sweep();
+                } finally {
+                    synchronized (_graphFile) {
+                        _graph = null;
+                        _graphChanged = false;
+                        _graphFile.delete();
+                    }
+                    _headLock.unlockExclusive();
+                }
+            } finally {
+                _writerLock.unlockExclusive();
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /** Returns iff the commit ANCESTOR is reachable from the commit
+     *  DESCENDANT, each given by a branch name or a possibly abbreviated
+     *  commit ID. A commit is its own ancestor. */
+    public boolean isAncestor(String ancestor, String descendant) {
+        return read(tree -> isAncestor(tree, revision(tree, ancestor),
+                                       revision(tree, descendant)));
+    }
+
+    /** Returns the number of commits reachable from the commit BRANCH
+     *  but not from the commit BASE, each given by a branch name or a
+     *  possibly abbreviated commit ID. */
+    public int countCommits(String branch, String base) {
+        return read(tree -> {
+            CommitGraph graph = graph(tree);
+            Bitmap result = graph.reachable(
+                position(graph, revision(tree, branch)));
+            result.andNot(graph.reachable(
+                position(graph, revision(tree, base))));
+            return result.cardinality();
+        });
+    }
+
+    /** Returns a sorted map from each branch name to its head commit
+     *  ID. */
+    public Map<String, String> branches() {
+        return read(tree ->
+            Collections.unmodifiableMap(new TreeMap<>(tree.getBranches())));
+    }
+
+    /** Returns the commit whose possibly abbreviated ID is COMMITID. */
+    public CommitNode readCommit(String commitID) {
+        return read(tree ->
+            readObject(commitFile(resolve(tree, commitID)),
+                       CommitNode.class));
+    }
+
+    /** Returns the blob whose ID is BLOBID. */
+    public Blob readBlob(String blobID) {
+        checkInitialized();
+        return Blob.fromFileObj(this, blobID);
+    }
+
+    /* BATCHES */
+
+    /** Starts keeping updates to the commit tree in memory until the next
+     *  checkpoint instead of writing them after every command. */
+    public void beginBatch() {
+        _lock.writeLock().lock();
+        try {
+            _batching = true;
+            _dirty = false;
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /** Writes the commit tree if it has changed since the last
+     *  checkpoint of a batch. */
+    public void checkpoint() {
+        _lock.writeLock().lock();
+        try {
+            if (_dirty) {
+                writeTree(_tree);
+                _dirty = false;
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /** Stops batching, dropping any updates not yet checkpointed. */
+    public void endBatch() {
+        _lock.writeLock().lock();
+        try {
+            _batching = false;
+            _dirty = false;
+            invalidateTree();
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /* PATHS */
+
+    /** Returns the directory of files being written. */
+    File tmpDir() {
+        return _tmp;
+    }
+
+    /** Returns the working directory of this repository. */
+    public File root() {
+        return _root;
+    }
+
+    /** Returns the .gitlet directory. */
+    File gitletDir() {
+        return _gitlet;
+    }
+
+    /** Returns the stage directory. */
+    File stageDir() {
+        return _stage;
+    }
+
+    /** Returns the stage removal directory. */
+    File removeDir() {
+        return _remove;
+    }
+
+    /** Returns the objects directory. */
+    File objectsDir() {
+        return _objects;
+    }
+
+    /** Returns the chunks directory. */
+    File chunksDir() {
+        return _chunks;
+    }
+
+    /** Returns the nodes directory. */
+    File nodesDir() {
+        return _nodes;
+    }
+
+    /** Returns the file in the working directory named NAME. */
+    File workingFile(String name) {
+        return new File(_root, name);
+    }
+
+    /** Returns the names of the plain files in the working directory
+     *  that the sparse checkout includes. */
+    List<String> workingFiles() {
+        WorkingTreeWatcher watcher = _watcher;
+        List<String> files = watcher != null ? watcher.files()
+            : Objects.requireNonNull(Utils.plainFilenamesIn(_root));
+        SparseCheckout sparse = sparseCheckout();
+        if (sparse.isSparse()) {
+            files = new ArrayList<>(files);
+            files.removeIf(name -> !sparse.includes(name));
+        }
+        return files;
+    }
+
+    /** Returns the sparse checkout of this repository, read again only
+     *  when its file has changed. */
+    SparseCheckout sparseCheckout() {
+        synchronized (_sparseFile) {
+            long stamp = _sparseFile.lastModified();
+            if (_sparse == null || stamp != _sparseStamp) {
+                _sparse = SparseCheckout.read(_sparseFile);
+                _sparseStamp = stamp;
+            }
+            return _sparse;
+        }
+    }
+
+    /** Returns the sparse-checkout patterns, none if every file is
+     *  checked out. */
+    public List<String> sparseCheckoutPatterns() {
+        checkInitialized();
+        return sparseCheckout().patterns();
+    }
+
+    /** Checks out only the files matching PATTERNS, or every file if
+     *  there are none, removing the others from the working
+     *  directory. */
+    public void setSparseCheckout(List<String> patterns) {
+        update(tree -> {
+            SparseCheckout sparse = new SparseCheckout(patterns);
+            tree.applySparseCheckout(sparse);
+            synchronized (_sparseFile) {
+                if (sparse.isSparse()) {
+                    Utils.writeAtomically(_sparseFile, _tmp,
+                                          sparse.toByteArray(), false);
+                } else {
+                    _sparseFile.delete();
+                }
+                _sparse = null;
+            }
+            return null;
+        });
+    }
+
+    /** Starts keeping the names of the working files from file system
+     *  events rather than listing the directory for each command, for a
+     *  long-lived process. Does nothing where directories cannot be
+     *  watched. */
+    void watchWorkingTree() {
+        try {
+            _watcher = new WorkingTreeWatcher(_root, _gitlet);
+        } catch (IOException | UnsupportedOperationException excp) {
+            _watcher = null;
+        }
+    }
+
+    /** Stops watching the working directory. */
+    void unwatchWorkingTree() {
+        WorkingTreeWatcher watcher = _watcher;
+        _watcher = null;
+        if (watcher != null) {
+            watcher.close();
+        }
+    }
+
+    /** Returns the file holding the blob with ID. */
+    File objectFile(String id) {
+        return idFile(_objects, id);
+    }
+
+    /** Returns the file holding the chunk with ID. */
+    File chunkFile(String id) {
+        return idFile(_chunks, id);
+    }
+
+    /** Returns the file in DIR named by ID, which may come from another
+     *  repository and so must not be a path. While it is waiting in
+     *  _tmp to be synced, that is the file returned. */
+    private File idFile(File dir, String id) {
+        if (id.isEmpty() || id.charAt(0) == '.' || id.indexOf('/') >= 0
+            || id.indexOf(File.separatorChar) >= 0) {
+            throw Utils.error("Malformed ID %s.", id);
+        }
+        File file = new File(dir, id);
+        if (!_pending.isEmpty()) {
+            File temp = _pending.get(file);
+            if (temp != null) {
+                return temp;
+            }
+        }
+        return file;
+    }
+
+    /** Stores the chunk CONTENTS unless it is already stored, and returns
+     *  its ID, the hash of CONTENTS. */
+    String writeChunk(byte[] contents) {
+        String id = hash(contents);
+        File file = chunkFile(id);
+        if (!holds(file, contents)) {
+            if (!_chunks.isDirectory()) {
+                _chunks.mkdir();
+            }
+            writeDurably(file, contents);
+        }
+        return id;
+    }
+
+    /** Returns the file holding the commit with ID. */
+    File commitFile(String id) {
+        return idFile(_nodes, id);
+    }
+
+    /* OBJECT STORE */
+
+    /** Returns the algorithm naming the objects of this repository:
+     *  the one recorded in .gitlet/format, or SHA-1 if there is none. */
+    public HashAlgorithm hashAlgorithm() {
+        HashAlgorithm hash = _hash;
+        if (hash == null) {
+            if (!_formatFile.exists()) {
+                return HashAlgorithm.SHA1;
+            }
+            hash = HashAlgorithm.forName(
+                Utils.readContentsAsString(_formatFile).trim());
+            _hash = hash;
+        }
+        return hash;
+    }
+
+    /** Returns the number of hex digits in a full ID. Shorter IDs are
+     *  abbreviations. */
+    int idLength() {
+        return hashAlgorithm().hexLength();
+    }
+
+    /** Returns the hex ID of an object whose serialized form or contents
+     *  are BYTES. */
+    String hash(byte[] bytes) {
+        return hashAlgorithm().hash(bytes).toString();
+    }
+
+    /** Returns the object of type T read from FILE. Objects and commits,
+     *  which never change once written, are served from memory when they
+     *  have been read or written before. */
+    <T extends Serializable> T readObject(File file, Class<T> expectedClass) {
+        if (expectedClass == Blob.class) {
+            Metrics.count(Metrics.Counter.BLOBS_READ, 1);
+        } else if (expectedClass == CommitNode.class) {
+            Metrics.count(Metrics.Counter.COMMITS_READ, 1);
+        }
+        Events.ObjectRead event = Events.ObjectRead.start(file,
+                                                          expectedClass);
+        byte[] contents = cacheable(file) ? _cache.contents(file)
+            : Utils.readContents(file);
+        T result = Utils.deserialize(contents, expectedClass);
+        event.finish(contents.length);
+        return result;
+    }
+
+    /** Writes OBJ to FILE. */
+    void writeObject(File file, Serializable obj) {
+        Events.ObjectWrite event = Events.ObjectWrite.start(file, obj);
+        byte[] contents = Utils.serialize(obj);
+        writeDurably(file, contents);
+        if (cacheable(file)) {
+            _cache.put(file, contents);
+        }
+        event.finish(contents.length);
+    }
+
+    /** Writes CONTENTS, the serialized form of an object or commit, to
+     *  FILE. */
+    void writeObjectBytes(File file, byte[] contents) {
+        writeDurably(file, contents);
+        if (cacheable(file)) {
+            _cache.put(file, contents);
+        }
+    }
+
+    /** Returns iff FILE, which is named by the hash of its contents,
+     *  already holds CONTENTS. The name is trusted once the length
+     *  matches, so that storing a large file again does not read back
+     *  every chunk it shares with what is stored. A file a crash left
+     *  shorter is written again; gc deletes chunks whose contents no
+     *  longer match their names, so that they are written again too. */
+    boolean holds(File file, byte[] contents) {
+        return file.length() == contents.length && file.isFile();
+    }
+
+    /** Atomically replaces the contents of FILE with CONTENTS, syncing it
+     *  now or at the next flush according to the durability. Under
+     *  Durability.COMMAND, an object, commit or chunk stays in _tmp until
+     *  the flush, so that it never has its name before its contents are
+     *  on disk. */
+    private void writeDurably(File file, byte[] contents) {
+        Durability durability = _durability;
+        File dir = file.getParentFile();
+        if (_tmp.equals(dir)) {
+            Utils.writeContents(file, contents);
+        } else if (durability == Durability.COMMAND
+                   && (cacheable(file) || _chunks.equals(dir))) {
+            _pending.put(file, Utils.writeTemporary(file, _tmp, contents,
+                                                    false));
+        } else {
+            Utils.writeAtomically(file, _tmp, contents,
+                                  durability == Durability.OBJECT);
+            if (durability == Durability.OBJECT) {
+                Utils.sync(dir);
+            } else if (durability == Durability.COMMAND) {
+                synchronized (_unsynced) {
+                    _unsynced.add(file);
+                }
+            }
+        }
+    }
+
+    /** Forces the files written since the last flush to disk all at
+     *  once, in parallel so that the file system can commit them
+     *  together, then moves the objects, commits and chunks waiting in
+     *  _tmp into place and syncs each of their directories once. */
+    void flush() {
+        Map<File, File> pending = new HashMap<>(_pending);
+        List<File> files = new ArrayList<>(pending.values());
+        synchronized (_unsynced) {
+            files.addAll(_unsynced);
+            _unsynced.clear();
+        }
+        if (files.isEmpty()) {
+            return;
+        }
+        files.parallelStream().forEach(Utils::sync);
+        Set<File> dirs = new LinkedHashSet<>();
+        for (Map.Entry<File, File> entry : pending.entrySet()) {
+            File file = entry.getKey();
+            try {
+                Files.move(entry.getValue().toPath(), file.toPath(),
+                           StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException excp) {
+                throw Utils.error("Cannot write %s: %s", file.getName(),
+                                  excp.getMessage());
+            }
+            _pending.remove(file, entry.getValue());
+            dirs.add(file.getParentFile());
+        }
+        for (File file : files) {
+            if (!_tmp.equals(file.getParentFile())) {
+                dirs.add(file.getParentFile());
+            }
+        }
+        for (File dir : dirs) {
+            Utils.sync(dir);
+        }
+    }
+
+    /** Returns iff FILE is a temporary file holding an object, commit or
+     *  chunk that waits for the next flush to be renamed into place. */
+    boolean isPending(File file) {
+        return _pending.containsValue(file);
+    }
+
+    /** Returns how hard this repository works to keep its writes across a
+     *  crash. */
+    public Durability durability() {
+        return _durability;
+    }
+
+    /** Sets the durability of later writes to DURABILITY. */
+    public void setDurability(Durability durability) {
+        _durability = Objects.requireNonNull(durability);
+    }
+
+    /** Deletes FILE, an object or commit that has been superseded. */
+    void deleteObject(File file) {
+        file.delete();
+        _pending.values().remove(file);
+        _cache.invalidate(file);
+    }
+
+    /** Returns iff FILE is an object or commit. */
+    private boolean cacheable(File file) {
+        File dir = file.getParentFile();
+        return _objects.equals(dir) || _nodes.equals(dir);
+    }
+
+    /* COMMIT TREE */
+
+    /** Sets up persistence of gitlet. */
+    private void setupPersistence() {
+        for (File dir : new File[] {
+                _gitlet, _stage, _objects, _nodes, _remove, _head, _tmp }) {
+            if (!dir.exists()) {
+                dir.mkdir();
+            }
+        }
+    }
+
+    /** Returns the repository that is the remote NAME, which must
+     *  exist. */
+    private Repository remote(String name) {
+        File file = new File(_remotes, name);
+        if (!file.exists()) {
+            throw Utils.error("A remote with that name does not exist.");
+        }
+        File gitlet = new File(Utils.readContentsAsString(file));
+        if (!gitlet.isAbsolute()) {
+            gitlet = new File(_root, gitlet.getPath());
+        }
+        Repository repo = new Repository(gitlet.getParentFile());
+        if (!repo.isInitialized()) {
+            throw Utils.error("Remote directory not found.");
+        }
+        return repo;
+    }
+
+    /** Returns the file PATH, relative to the working directory unless it
+     *  is absolute. */
+    private File pathFile(String path) {
+        File file = new File(path);
+        return file.isAbsolute() ? file : new File(_root, path);
+    }
+
+    /** Returns a new file name in this repository's tmp directory for a
+     *  pack. */
+    private File packFile() {
+        _tmp.mkdir();
+        return new File(_tmp, "pack-" + System.nanoTime() + ".pack");
+    }
+
+    /** Returns iff the commit ANCESTOR is reachable from the commit
+     *  DESCENDANT in TREE. ANCESTOR need not exist in this repository;
+     *  DESCENDANT must. */
+    private boolean isAncestor(CommitTree tree, String ancestor,
+                               String descendant) {
+        CommitGraph graph = graph(tree);
+        int d = position(graph, descendant);
+        int p = graph.position(ancestor);
+        return p != CommitGraph.NONE && graph.reachable(d).contains(p);
+    }
+
+    /** Returns iff the commit ID in REPO is an initial commit with no
+     *  files, which a branch may leave for any other commit. Every
+     *  repository starts with its own. */
+    private static boolean isUnborn(Repository repo, String id) {
+        CommitNode node = repo.readObject(repo.commitFile(id),
+                                          CommitNode.class);
+        return node.getParent() == null
+            && (node.getFiles() == null || node.getFiles().isEmpty());
+    }
+
+    /** Returns the IDs of the ancestors of the commit HEAD in TREE, not
+     *  including HEAD, parents before children. */
+    private List<String> history(CommitTree tree, String head) {
+        CommitGraph graph = graph(tree);
+        int position = position(graph, head);
+        List<String> result = new ArrayList<>();
+        graph.reachable(position).forEach(p -> {
+            if (p != position) {
+                result.add(graph.id(p).toString());
+            }
+        });
+        return result;
+    }
+
+    /** Returns the commit graph, brought up to date with the branches
+     *  and head of TREE in memory. Read-only commands may call this, so
+     *  the graph is saved only by saveGraph. */
+    CommitGraph graph(CommitTree tree) {
+        CommitGraph graph;
+        synchronized (_graphFile) {
+            if (_graph == null) {
+                _graph = CommitGraph.read(this, _graphFile);
+            }
+            graph = _graph;
+        }
+        List<String> roots = new ArrayList<>(tree.getBranches().values());
+        roots.add(tree.getHead().getID());
+        if (graph.update(roots)) {
+            synchronized (_graphFile) {
+                _graphChanged |= graph == _graph;
+            }
+        }
+        return graph;
+    }
+
+    /** Returns the position in GRAPH of the commit ID, first adding it
+     *  and its ancestors if it is not one of the branch heads or the head
+     *  GRAPH was brought up to date with, such as a detached commit.
+     *  Throws a GitletException if there is no such commit. */
+    private int position(CommitGraph graph, String id) {
+        if (graph.update(Collections.singletonList(id))) {
+            synchronized (_graphFile) {
+                _graphChanged |= graph == _graph;
+            }
+        }
+        int result = graph.position(id);
+        if (result == CommitGraph.NONE) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return result;
+    }
+
+    /** Writes the commit graph if commits were added to it since it was
+     *  read or last written. Called only while holding the writer lock,
+     *  so that one process at a time replaces the file. */
+    private void saveGraph() {
+        synchronized (_graphFile) {
+            if (_graph != null && _graphChanged) {
+                _graph.write(_graphFile);
+                _graphChanged = false;
+            }
+        }
+    }
+
+    /** Returns the commits of the first-parent history of the head of
+     *  TREE that changed the file NAME. Commits whose Bloom filters rule
+     *  the file out are passed over without being read. */
+    private List<CommitNode> log(CommitTree tree, String name) {
+        CommitGraph graph = graph(tree);
+        List<CommitNode> commits = new ArrayList<>();
+        CommitNode commit = tree.getHead();
+        int position = graph.position(commit.getID());
+        while (position != CommitGraph.NONE) {
+            int parentPosition = graph.parents(position)[0];
+            CommitNode parent = null;
+            if (graph.mayHaveChanged(position, name)) {
+                if (commit == null) {
+                    commit = readObject(commitFile(
+                        graph.id(position).toString()), CommitNode.class);
+                }
+                if (parentPosition != CommitGraph.NONE) {
+                    parent = readObject(commitFile(
+                        graph.id(parentPosition).toString()),
+                        CommitNode.class);
+                }
+                if (!Objects.equals(blobOf(commit, name),
+                                    blobOf(parent, name))) {
+                    commits.add(commit);
+                }
+            }
+            commit = parent;
+            position = parentPosition;
+        }
+        return commits;
+    }
+
+    /** Returns the ID of the blob of the file NAME in COMMIT, or null if
+     *  there is no such file or no COMMIT. */
+    private static String blobOf(CommitNode commit, String name) {
+        if (commit == null || commit.getFiles() == null) {
+            return null;
+        }
+        return commit.getFiles().get(name);
+    }
+
+    /** Returns the full ID of the commit named by NAME in TREE: the
+     *  branch NAME if there is one, and otherwise the commit NAME
+     *  abbreviates. */
+    private String revision(CommitTree tree, String name) {
+        String id = tree.getBranches().get(name);
+        return id != null ? id : resolve(tree, name);
+    }
+
+    /** Returns the full ID of the commit abbreviated as COMMITID in
+     *  TREE. */
+    private String resolve(CommitTree tree, String commitID) {
+        String id = commitID;
+        if (id.length() < idLength()) {
+            id = tree.findCommitID(id);
+        }
+        if (id == null || !commitFile(id).exists()) {
+            throw Utils.error("No commit with that id exists.");
+        }
+        return id;
+    }
+
+    /** Returns the result of ACTION on the commit tree, holding the read
+     *  lock and, against other processes, the shared head lock. */
+    <T> T read(Function<CommitTree, T> action) {
+        checkInitialized();
+        _lock.readLock().lock();
+        try {
+            _headLock.lockShared();
+            try {
+                return action.apply(tree());
+            } finally {
+                _headLock.unlockShared();
+            }
+        } finally {
+            _lock.readLock().unlock();
+        }
+    }
+
+    /** Returns the result of ACTION on the commit tree, holding the write
+     *  lock and, against other processes, the writer lock, and stores the
+     *  tree afterwards. If ACTION fails, which may leave the tree
+     *  partially changed, the tree is put back as it was: reread from
+     *  disk next time or, inside a batch with updates not yet
+     *  checkpointed, restored from a savepoint taken before ACTION. */
+    <T> T update(Function<CommitTree, T> action) {
+        checkInitialized();
+        _lock.writeLock().lock();
+        try {
+            _writerLock.lockExclusive();
+            try {
+                CommitTree tree = tree();
+                CommitTree.Savepoint saved = _dirty ? tree.savepoint() : null;
+                try {
+                    T result = action.apply(tree);
+                    store(tree);
+                    saveGraph();
+                    return result;
+                } catch (RuntimeException excp) {
+                    rollBack(tree, saved);
+                    throw excp;
+                }
+            } finally {
+                try {
+                    flush();
+                } finally {
+                    _writerLock.unlockExclusive();
+                }
+            }
+        } finally {
+            _lock.writeLock().unlock();
+        }
+    }
+
+    /** Drops the changes a failed command made to TREE, restoring it to
+     *  SAVED, taken before the command, or if SAVED is null, rereading
+     *  the tree from disk next time. */
+    private synchronized void rollBack(CommitTree tree,
+                                       CommitTree.Savepoint saved) {
+        if (saved == null) {
+            invalidateTree();
+        } else {
+            tree.restore(saved);
+            _tree = tree;
+        }
+    }
+
+    /** Returns the commit tree, rereading it only if another process has
+     *  rewritten it since it was last read or written. */
+    private synchronized CommitTree tree() {
+        if (_batching && _tree != null) {
+            return _tree;
+        }
+        String stamp = stamp(_headFile);
+        if (_tree == null || !Objects.equals(stamp, _treeStamp)) {
+            _tree = Utils.readObject(_headFile, CommitTree.class);
+            _tree.attach(this);
+            _treeStamp = stamp;
+        }
+        return _tree;
+    }
+
+    /** Records TREE as the commit tree, writing it unless batching. */
+    private synchronized void store(CommitTree tree) {
+        if (_batching) {
+            _tree = tree;
+            _dirty = true;
+        } else {
+            writeTree(tree);
+        }
+    }
+
+    /** Writes TREE to the head file, after making sure the objects it
+     *  refers to are on disk. The head file is replaced only if it is
+     *  still the one TREE was read from: if another process has replaced
+     *  it since, TREE is dropped and a GitletException thrown. Readers
+     *  in other processes are excluded only while the file is swapped. */
+    private synchronized void writeTree(CommitTree tree) {
+        flush();
+        byte[] contents = Utils.serialize(tree);
+        boolean sync = _durability != Durability.NONE;
+        _headLock.lockExclusive();
+        try {
+            if (!Objects.equals(stamp(_headFile), _treeStamp)) {
+                invalidateTree();
+                throw Utils.error("The repository was changed by another "
+                                  + "process; try again.");
+            }
+            Utils.writeAtomically(_headFile, _tmp, contents, sync);
+            if (sync) {
+                Utils.sync(_head);
+            }
+            _tree = tree;
+            _treeStamp = stamp(_headFile);
+        } finally {
+            _headLock.unlockExclusive();
+        }
+    }
+
+    /** Forgets the cached commit tree. */
+    private synchronized void invalidateTree() {
+        _tree = null;
+        _treeStamp = null;
+    }
+
+    /** Returns a stamp of the identity, size and modification time of
+     *  FILE that changes whenever another process replaces it, or null if
+     *  it does not exist. */
+    private static String stamp(File file) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(
+                file.toPath(), BasicFileAttributes.class);
+            return attrs.fileKey() + ":" + attrs.lastModifiedTime() + ":"
+                + attrs.size();
+        } catch (IOException excp) {
+            return null;
+        }
+    }
+
+    /** The working directory. */
+    private final File _root;
+    /** The .gitlet directory. */
+    private final File _gitlet;
+    /** The stage directory. */
+    private final File _stage;
+    /** The objects directory. */
+    private final File _objects;
+    /** The nodes directory. */
+    private final File _nodes;
+    /** The stage removal directory. */
+    private final File _remove;
+    /** The head directory. */
+    private final File _head;
+    /** The file holding the serialized CommitTree. */
+    private final File _headFile;
+    /** The file naming the hash algorithm, absent for SHA-1. */
+    private final File _formatFile;
+    /** The hash algorithm, or null until it is read from _formatFile. */
+    private volatile HashAlgorithm _hash;
+    /** Directory of files being written, renamed into place when
+     *  complete. */
+    private final File _tmp;
+    /** How hard to work to keep writes across a crash. */
+    private volatile Durability _durability;
+    /** Files written in place but not yet synced, under
+     *  Durability.COMMAND. */
+    private final Set<File> _unsynced = new LinkedHashSet<>();
+    /** The objects, commits and chunks written but not yet synced, under
+     *  Durability.COMMAND: each file mapped to the file in _tmp holding
+     *  it until the next flush. */
+    private final Map<File, File> _pending = new ConcurrentHashMap<>();
+    /** Lock on the head file among processes: shared by readers, and
+     *  exclusive while the head file is replaced. */
+    private final LockFile _headLock;
+    /** Lock among processes held by a command that changes the
+     *  repository. */
+    private final LockFile _writerLock;
+    /** The directory of remotes, one file per remote holding the path
+     *  of its .gitlet directory. */
+    private final File _remotes;
+    /** The directory of the chunks of large files, each named by the
+     *  hash of its contents. */
+    private final File _chunks;
+    /** The file holding the commit graph. */
+    private final File _graphFile;
+    /** The file naming the remote a partial clone fetches blobs from. */
+    private final File _promisorFile;
+    /** The file holding the sparse-checkout patterns. */
+    private final File _sparseFile;
+    /** The sparse checkout last read from _sparseFile, or null. */
+    private SparseCheckout _sparse;
+    /** The modification time of _sparseFile when _sparse was read. */
+    private long _sparseStamp;
+    /** Watches the working directory in a long-lived process, or
+     *  null. */
+    private volatile WorkingTreeWatcher _watcher;
+    /** The commit graph, or null until it is first needed. */
+    private CommitGraph _graph;
+    /** True iff _graph has commits that _graphFile lacks. */
+    private boolean _graphChanged;
+
+    /** Serialized objects and commits kept in memory. */
+    private final ObjectCache _cache = new ObjectCache(ObjectCache.CAPACITY);
+    /** Guards the commit tree, stage and working directory. */
+    private final ReentrantReadWriteLock _lock = new ReentrantReadWriteLock();
+    /** The commit tree last read or written. */
+    private CommitTree _tree;
+    /** The stamp of the head file when _tree was last read or written. */
+    private String _treeStamp;
+    /** True while batching. */
+    private boolean _batching;
+    /** True iff _tree has updates not yet written by a batch. */
+    private boolean _dirty;
+}
@@ -0,0 +1,94 @@
+package gitlet;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** The files of a repository present in its working directory. With no
+ *  patterns every tracked file is; otherwise only those whose names match
+ *  one of the glob patterns, one per line of .gitlet/sparse-checkout, as
+ *  in FileSystem.getPathMatcher. The others stay tracked, so commits keep
+ *  them, but commands that write the working directory neither read
+ *  their blobs nor write them, and the untracked-file checks and status
+ *  ignore working files of those names.
+ *  @author ryangaray
+ */
+class SparseCheckout {
+
+    /** The sparse checkout given by PATTERNS, of which there may be
+     *  none. */
+    SparseCheckout(List<String> patterns) {
+        _patterns = Collections.unmodifiableList(new ArrayList<>(patterns));
+        for (String pattern : patterns) {
+            try {
+                _matchers.add(FileSystems.getDefault()
+                              .getPathMatcher("glob:" + pattern));
+            } catch (IllegalArgumentException excp) {
+                throw Utils.error("Invalid sparse-checkout pattern %s.",
+                                  pattern);
+            }
+        }
+    }
+
+    /** Returns the sparse checkout stored in FILE, which includes every
+     *  file if there is no FILE. Blank lines and lines starting with '#'
+     *  are skipped. */
+    static SparseCheckout read(File file) {
+        List<String> patterns = new ArrayList<>();
+        if (file.exists()) {
+            for (String line : Utils.readContentsAsString(file).split("\n")) {
+                String pattern = line.trim();
+                if (!pattern.isEmpty() && !pattern.startsWith("#")) {
+                    patterns.add(pattern);
+                }
+            }
+        }
+        return new SparseCheckout(patterns);
+    }
+
+    /** Returns the contents of a sparse-checkout file for these
+     *  patterns. */
+    byte[] toByteArray() {
+        StringBuilder result = new StringBuilder();
+        for (String pattern : _patterns) {
+            result.append(pattern).append('\n');
+        }
+        return result.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /** Returns iff there are patterns, so that some files may be left
+     *  out. */
+    boolean isSparse() {
+        return !_patterns.isEmpty();
+    }
+
+    /** Returns the patterns. */
+    List<String> patterns() {
+        return _patterns;
+    }
+
+    /** Returns iff the file NAME belongs in the working directory. */
+    boolean includes(String name) {
+        if (_matchers.isEmpty()) {
+            return true;
+        }
+        Path path = Paths.get(name);
+        for (PathMatcher matcher : _matchers) {
+            if (matcher.matches(path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** The patterns, in order. */
+    private final List<String> _patterns;
+    /** A matcher for each pattern. */
+    private final List<PathMatcher> _matchers = new ArrayList<>();
+}
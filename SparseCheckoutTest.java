@@ -0,0 +1,82 @@
+package gitlet;
+
+import org.junit.After;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** Tests of sparse checkouts.
+ *  @author ryangaray
+ */
+public class SparseCheckoutTest {
+
+    /** Returns a new temporary directory, which is deleted after the
+     *  test. */
+    File newDirectory() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-test").toFile();
+        _dirs.add(dir);
+        return dir;
+    }
+
+    /** Deletes the directories made by the last test. */
+    @After
+    public void deleteDirectories() throws IOException {
+        for (File dir : _dirs) {
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+            }
+        }
+        _dirs.clear();
+    }
+
+    @Test
+    public void includes() {
+        SparseCheckout sparse =
+            new SparseCheckout(Collections.singletonList("*.txt"));
+        assertTrue(sparse.includes("a.txt"));
+        assertFalse(sparse.includes("a.bin"));
+        assertTrue(new SparseCheckout(new ArrayList<>()).includes("a.bin"));
+    }
+
+    @Test
+    public void mergeLeavesExcludedBlobsAlone() throws IOException {
+        Repository origin = new Repository(newDirectory());
+        origin.init();
+        PackTest.commitFile(origin, "a.txt", "a\n", "a");
+        PackTest.commitFile(origin, "x.bin", "x1\n", "x1");
+        origin.branch("other");
+        origin.checkoutBranch("other");
+        CommitNode theirs = PackTest.commitFile(origin, "x.bin", "x2\n",
+                                                "x2");
+        origin.checkoutBranch("master");
+        PackTest.commitFile(origin, "a.txt", "a2\n", "a2");
+
+        File dir = new File(newDirectory(), "clone");
+        Repository repo = new Repository(dir);
+        repo.cloneFrom(origin.gitletDir().getPath(), true);
+        repo.setSparseCheckout(Collections.singletonList("*.txt"));
+        assertFalse(repo.workingFile("x.bin").exists());
+
+        String x2 = theirs.getFiles().get("x.bin");
+        assertEquals(MergeResult.MERGED, repo.merge("origin/other"));
+        assertFalse(repo.objectFile(x2).exists());
+        assertFalse(repo.workingFile("x.bin").exists());
+        CommitNode merged = repo.readCommit(repo.branches().get("master"));
+        assertEquals(x2, merged.getFiles().get("x.bin"));
+        assertEquals("a2\n",
+                     Utils.readContentsAsString(repo.workingFile("a.txt")));
+    }
+
+    /** The directories made by the current test. */
+    private final List<File> _dirs = new ArrayList<>();
+}
@@ -0,0 +1,123 @@
+package gitlet;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/** The result of the status command: the branches of a repository and
+ *  the state of its stage and working directory.
+ *  @author ryangaray
+ */
+public class Status {
+
+    /** A status listing BRANCHES, of which CURRENT is checked out, the
+     *  files STAGED for addition, REMOVED, MODIFIED but not staged, and
+     *  UNTRACKED, and the staged RENAMED files mapped to their new names.
+     *  All lists are sorted. */
+    Status(List<String> branches, String current, List<String> staged,
+           List<String> removed, List<String> modified,
+           List<String> untracked, Map<String, String> renamed) {
+        _branches = Collections.unmodifiableList(branches);
+        _current = current;
+        _staged = Collections.unmodifiableList(staged);
+        _removed = Collections.unmodifiableList(removed);
+        _modified = Collections.unmodifiableList(modified);
+        _untracked = Collections.unmodifiableList(untracked);
+        _renamed = Collections.unmodifiableMap(renamed);
+    }
+
+    /** Returns the names of all branches. */
+    public List<String> getBranches() {
+        return _branches;
+    }
+
+    /** Returns the name of the current branch. */
+    public String currentBranch() {
+        return _current;
+    }
+
+    /** Returns the files staged for addition. */
+    public List<String> getStaged() {
+        return _staged;
+    }
+
+    /** Returns the files staged for removal. */
+    public List<String> getRemoved() {
+        return _removed;
+    }
+
+    /** Returns the tracked files modified but not staged. */
+    public List<String> getModified() {
+        return _modified;
+    }
+
+    /** Returns the untracked files in the working directory. */
+    public List<String> getUntracked() {
+        return _untracked;
+    }
+
+    /** Returns the files staged for removal that are renamed to files
+     *  staged for addition, mapped to their new names, in order. */
+    public Map<String, String> getRenamed() {
+        return _renamed;
+    }
+
+    /** Returns the status as printed by the status command. Renames are
+     *  listed only if there are any, so the output is otherwise
+     *  unchanged. */
+    @Override
+    public String toString() {
+        String branches = "";
+        for (String branch : _branches) {
+            if (_current.equals(branch)) {
+                branches += "*" + branch + "\n";
+            } else {
+                branches += branch + "\n";
+            }
+        }
+        return "=== Branches ===\n" + branches
+            + "\n=== Staged Files ===\n" + lines(_staged)
+            + "\n=== Removed Files ===\n" + lines(_removed)
+            + "\n=== Modifications Not Staged For Commit ===\n"
+            + lines(_modified)
+            + "\n=== Untracked Files ===\n" + lines(_untracked)
+            + renames();
+    }
+
+    /** Returns the section listing renames, or "" if there are none. */
+    private String renames() {
+        if (_renamed.isEmpty()) {
+            return "";
+        }
+        StringBuilder result = new StringBuilder("\n=== Renamed Files ===\n");
+        for (Map.Entry<String, String> rename : _renamed.entrySet()) {
+            result.append(rename.getKey()).append(" -> ")
+                .append(rename.getValue()).append('\n');
+        }
+        return result.toString();
+    }
+
+    /** Returns NAMES, each followed by a newline. */
+    private static String lines(List<String> names) {
+        StringBuilder result = new StringBuilder();
+        for (String name : names) {
+            result.append(name).append('\n');
+        }
+        return result.toString();
+    }
+
+    /** All branch names. */
+    private final List<String> _branches;
+    /** The current branch. */
+    private final String _current;
+    /** Files staged for addition. */
+    private final List<String> _staged;
+    /** Files staged for removal. */
+    private final List<String> _removed;
+    /** Tracked files modified but not staged. */
+    private final List<String> _modified;
+    /** Untracked files. */
+    private final List<String> _untracked;
+    /** Files renamed, mapped to their new names. */
+    private final Map<String, String> _renamed;
+}
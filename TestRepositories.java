@@ -0,0 +1,41 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/** The repositories a test makes, each initialized in a temporary
+ *  directory of its own and deleted together once the test is done.
+ *  @author ryangaray
+ */
+class TestRepositories {
+
+    /** Returns a new, initialized repository in a temporary
+     *  directory. */
+    Repository create() throws IOException {
+        File dir = Files.createTempDirectory("gitlet-test").toFile();
+        _dirs.add(dir);
+        Repository repo = new Repository(dir);
+        repo.init();
+        return repo;
+    }
+
+    /** Deletes every repository made by create. */
+    void deleteAll() throws IOException {
+        for (File dir : _dirs) {
+            try (Stream<Path> paths = Files.walk(dir.toPath())) {
+                paths.sorted(Comparator.reverseOrder())
+                    .forEach(path -> path.toFile().delete());
+            }
+        }
+        _dirs.clear();
+    }
+
+    /** The directories of the repositories made so far. */
+    private final List<File> _dirs = new ArrayList<>();
+}
@@ -0,0 +1,61 @@
+package gitlet;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/** Three-way merges of trees held in memory as maps from file names to
+ *  blob IDs. A blob's ID covers its name and contents, so two versions of
+ *  a file are compared by ID alone and no blob is read. Nothing is
+ *  written: callers make commits of the results and update the working
+ *  directory once they are done.
+ *  @author ryangaray
+ */
+class TreeMerge {
+
+    /** Returns the files of OURS with the changes from BASE to THEIRS
+     *  applied, adding to CONFLICTS the names of the files both changed
+     *  differently, which keep their versions in OURS. Any argument but
+     *  CONFLICTS may be null, meaning no files. */
+    static TreeMap<String, String> merge(Map<String, String> base,
+                                         Map<String, String> ours,
+                                         Map<String, String> theirs,
+                                         List<String> conflicts) {
+        TreeMap<String, String> result = new TreeMap<>();
+        TreeSet<String> names = new TreeSet<>();
+        addNames(names, base);
+        addNames(names, ours);
+        addNames(names, theirs);
+        for (String name : names) {
+            String b = get(base, name);
+            String o = get(ours, name);
+            String t = get(theirs, name);
+            String merged = o;
+            if (Objects.equals(b, o)) {
+                merged = t;
+            } else if (!Objects.equals(b, t) && !Objects.equals(o, t)) {
+                conflicts.add(name);
+            }
+            if (merged != null) {
+                result.put(name, merged);
+            }
+        }
+        return result;
+    }
+
+    /** Adds the names of FILES, if any, to NAMES. */
+    private static void addNames(Collection<String> names,
+                                 Map<String, String> files) {
+        if (files != null) {
+            names.addAll(files.keySet());
+        }
+    }
+
+    /** Returns the ID in FILES, which may be null, of the file NAME. */
+    private static String get(Map<String, String> files, String name) {
+        return files == null ? null : files.get(name);
+    }
+}
@@ -12,7 +12,19 @@ public class UnitTest {
     /** Run the JUnit tests in the loa package. Add xxxTest.class entries to
      *  the arguments of runClasses to run other JUnit tests. */
     public static void main(String[] ignored) {
-        System.exit(textui.runClasses(UnitTest.class));
+        System.exit(textui.runClasses(UnitTest.class, PackTest.class,
+                                       DurabilityTest.class,
+                                       ObjectCacheTest.class,
+                                       SparseCheckoutTest.class,
+                                       CommitGraphTest.class,
+                                       RebaseTest.class,
+                                       ObjectIdTest.class,
+                                       ChunkerTest.class,
+                                       BatchTest.class,
+                                       BitmapTest.class,
+                                       LockFileTest.class,
+                                       BlameTest.class,
+                                       RenamesTest.class));
     }
 
     /** A dummy test to avoid complaint. */
@@ -1,22 +1,26 @@
 package gitlet;
 
 import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
-import java.util.Formatter;
 import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 
 
 /** Assorted utilities.
@@ -32,25 +36,7 @@ class Utils {
     /** Returns the SHA-1 hash of the concatenation of VALS, which may
      *  be any mixture of byte arrays and Strings. */
     static String sha1(Object... vals) {
-        try {
-            MessageDigest md = MessageDigest.getInstance("SHA-1");
-            for (Object val : vals) {
-                if (val instanceof byte[]) {
-                    md.update((byte[]) val);
-                } else if (val instanceof String) {
-                    md.update(((String) val).getBytes(StandardCharsets.UTF_8));
-                } else {
-                    throw new IllegalArgumentException("improper type to sha1");
-                }
-            }
-            Formatter result = new Formatter();
-            for (byte b : md.digest()) {
-                result.format("%02x", b);
-            }
-            return result.toString();
-        } catch (NoSuchAlgorithmException excp) {
-            throw new IllegalArgumentException("System does not support SHA-1");
-        }
+        return HashAlgorithm.SHA1.hash(vals).toString();
     }
 
     /** Returns the SHA-1 hash of the concatenation of the strings in
@@ -93,10 +79,16 @@ class Utils {
         if (!file.isFile()) {
             throw new IllegalArgumentException("must be a normal file");
         }
+        long start = Metrics.start();
         try {
-            return Files.readAllBytes(file.toPath());
+            byte[] contents = Files.readAllBytes(file.toPath());
+            Metrics.count(Metrics.Counter.FILES_READ, 1);
+            Metrics.count(Metrics.Counter.BYTES_READ, contents.length);
+            return contents;
         } catch (IOException excp) {
             throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Metrics.time(Metrics.Timer.READ, start);
         }
     }
 
@@ -112,6 +104,7 @@ class Utils {
      *  either a String or a byte array.  Throws IllegalArgumentException
      *  in case of problems. */
     static void writeContents(File file, Object... contents) {
+        long start = Metrics.start();
         try {
             if (file.isDirectory()) {
                 throw
@@ -120,15 +113,21 @@ class Utils {
             BufferedOutputStream str =
                 new BufferedOutputStream(Files.newOutputStream(file.toPath()));
             for (Object obj : contents) {
+                byte[] bytes;
                 if (obj instanceof byte[]) {
-                    str.write((byte[]) obj);
+                    bytes = (byte[]) obj;
                 } else {
-                    str.write(((String) obj).getBytes(StandardCharsets.UTF_8));
+                    bytes = ((String) obj).getBytes(StandardCharsets.UTF_8);
                 }
+                str.write(bytes);
+                Metrics.count(Metrics.Counter.BYTES_WRITTEN, bytes.length);
             }
             str.close();
+            Metrics.count(Metrics.Counter.FILES_WRITTEN, 1);
         } catch (IOException | ClassCastException excp) {
             throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Metrics.time(Metrics.Timer.WRITE, start);
         }
     }
 
@@ -136,16 +135,7 @@ class Utils {
      *  Throws IllegalArgumentException in case of problems. */
     static <T extends Serializable> T readObject(File file,
                                                  Class<T> expectedClass) {
-        try {
-            ObjectInputStream in =
-                new ObjectInputStream(new FileInputStream(file));
-            T result = expectedClass.cast(in.readObject());
-            in.close();
-            return result;
-        } catch (IOException | ClassCastException
-                 | ClassNotFoundException excp) {
-            throw new IllegalArgumentException(excp.getMessage());
-        }
+        return deserialize(readContents(file), expectedClass);
     }
 
     /** Write OBJ to FILE. */
@@ -153,6 +143,84 @@ class Utils {
         writeContents(file, serialize(obj));
     }
 
+    /* ATOMIC WRITES */
+
+    /** Replaces the contents of FILE with CONTENTS atomically: they are
+     *  written to a new file in TMPDIR, which must be on the same file
+     *  system, and that file is renamed to FILE. After a crash FILE holds
+     *  either its old or its new contents. If SYNC, the new contents are
+     *  forced to disk before the rename. Throws IllegalArgumentException
+     *  in case of problems. */
+    static void writeAtomically(File file, File tmpDir, byte[] contents,
+                                boolean sync) {
+        File temp = writeTemporary(file, tmpDir, contents, sync);
+        try {
+            Files.move(temp.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException excp) {
+            temp.delete();
+            throw new IllegalArgumentException(excp.getMessage());
+        }
+    }
+
+    /** Writes CONTENTS to a new file in TMPDIR named after FILE, forcing
+     *  them to disk if SYNC, and returns the new file. It can later be
+     *  renamed to FILE. Throws IllegalArgumentException in case of
+     *  problems. */
+    static File writeTemporary(File file, File tmpDir, byte[] contents,
+                               boolean sync) {
+        long start = Metrics.start();
+        Path temp = tmpDir.toPath().resolve(
+            file.getName() + "."
+            + Long.toHexString(ThreadLocalRandom.current().nextLong())
+            + ".tmp");
+        try {
+            Files.createDirectories(tmpDir.toPath());
+            try (FileChannel channel = FileChannel.open(temp,
+                     StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE_NEW)) {
+                ByteBuffer buffer = ByteBuffer.wrap(contents);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                if (sync) {
+                    channel.force(true);
+                    Metrics.count(Metrics.Counter.FSYNCS, 1);
+                }
+            }
+            Metrics.count(Metrics.Counter.BYTES_WRITTEN, contents.length);
+            Metrics.count(Metrics.Counter.FILES_WRITTEN, 1);
+            return temp.toFile();
+        } catch (IOException excp) {
+            try {
+                Files.deleteIfExists(temp);
+            } catch (IOException ignored) {
+                /* The temporary file is left behind. */
+            }
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Metrics.time(Metrics.Timer.WRITE, start);
+        }
+    }
+
+    /** Forces the contents of FILE, which may be a directory, to disk.
+     *  Does nothing if FILE does not exist or, for a directory, if the
+     *  platform cannot sync directories. Throws IllegalArgumentException
+     *  if a plain file cannot be synced. */
+    static void sync(File file) {
+        try (FileChannel channel = FileChannel.open(file.toPath(),
+                                                    StandardOpenOption.READ)) {
+            channel.force(true);
+            Metrics.count(Metrics.Counter.FSYNCS, 1);
+        } catch (NoSuchFileException excp) {
+            return;
+        } catch (IOException excp) {
+            if (!file.isDirectory()) {
+                throw new IllegalArgumentException(excp.getMessage());
+            }
+        }
+    }
+
     /* DIRECTORIES */
 
     /** Filter out all but plain files. */
@@ -168,6 +236,7 @@ class Utils {
      *  lexicographic order as Java Strings.  Returns null if DIR does
      *  not denote a directory. */
     static List<String> plainFilenamesIn(File dir) {
+        Metrics.count(Metrics.Counter.DIRECTORY_LISTINGS, 1);
         String[] files = dir.list(PLAIN_FILES);
         if (files == null) {
             return null;
@@ -184,6 +253,13 @@ class Utils {
         return plainFilenamesIn(new File(dir));
     }
 
+    /** Returns the files in the directory DIR, in no particular order,
+     *  or null if DIR does not denote a directory. */
+    static File[] listFiles(File dir) {
+        Metrics.count(Metrics.Counter.DIRECTORY_LISTINGS, 1);
+        return dir.listFiles();
+    }
+
     /* OTHER FILE UTILITIES */
 
     /** Return the concatentation of FIRST and OTHERS into a File designator,
@@ -216,6 +292,27 @@ class Utils {
         }
     }
 
+    /** Returns the object of type T whose serialized contents are BYTES,
+     *  casting it to EXPECTEDCLASS.  Throws IllegalArgumentException in
+     *  case of problems. */
+    static <T extends Serializable> T deserialize(byte[] bytes,
+                                                  Class<T> expectedClass) {
+        long start = Metrics.start();
+        try {
+            ObjectInputStream in =
+                new ObjectInputStream(new ByteArrayInputStream(bytes));
+            T result = expectedClass.cast(in.readObject());
+            in.close();
+            Metrics.count(Metrics.Counter.OBJECTS_DESERIALIZED, 1);
+            return result;
+        } catch (IOException | ClassCastException
+                 | ClassNotFoundException excp) {
+            throw new IllegalArgumentException(excp.getMessage());
+        } finally {
+            Metrics.time(Metrics.Timer.DESERIALIZE, start);
+        }
+    }
+
 
 
     /* MESSAGES AND ERROR REPORTING */
@@ -0,0 +1,156 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/** Keeps the names of the plain files in a working directory up to date
+ *  from file system events, so that a long-lived process need not list
+ *  and stat the whole directory for every command. Only the paths named
+ *  by events since the last query are examined; if events were lost, the
+ *  directory is listed again.
+ *
+ *  Events arrive asynchronously. Before answering, a watcher creates a
+ *  cookie file in the .gitlet directory, which is also watched, and
+ *  processes events until that file's event arrives: anything changed
+ *  before the query has been seen by then.
+ *  @author ryangaray
+ */
+class WorkingTreeWatcher {
+
+    /** Longest wait in milliseconds for a cookie before listing the
+     *  directory instead. */
+    static final long TIMEOUT = 1000;
+    /** Prefix of the names of cookie files. */
+    static final String COOKIE = "watch-cookie-";
+
+    /** A watcher of the working directory ROOT, whose .gitlet directory
+     *  is GITLET. */
+    WorkingTreeWatcher(File root, File gitlet) throws IOException {
+        _root = root.toPath();
+        _cookies = gitlet.toPath();
+        _service = FileSystems.getDefault().newWatchService();
+        _rootKey = _root.register(_service,
+                                  StandardWatchEventKinds.ENTRY_CREATE,
+                                  StandardWatchEventKinds.ENTRY_DELETE);
+        _cookieKey = _cookies.register(_service,
+                                       StandardWatchEventKinds.ENTRY_CREATE);
+        rescan();
+    }
+
+    /** Returns the names of the plain files in the working directory, in
+     *  lexicographic order. */
+    synchronized List<String> files() {
+        sync();
+        return new ArrayList<>(_files);
+    }
+
+    /** Stops watching. */
+    synchronized void close() {
+        try {
+            _service.close();
+        } catch (IOException excp) {
+            return;
+        }
+    }
+
+    /** Processes every event up to now, listing the directory again if
+     *  that cannot be done. */
+    private void sync() {
+        if (_broken) {
+            rescan();
+            return;
+        }
+        String cookie = COOKIE + ProcessHandle.current().pid() + "-"
+            + _nextCookie;
+        _nextCookie += 1;
+        Path path = _cookies.resolve(cookie);
+        try {
+            Files.createFile(path);
+            long deadline = System.nanoTime()
+                + TimeUnit.MILLISECONDS.toNanos(TIMEOUT);
+            boolean seen = false;
+            while (!seen) {
+                WatchKey key = _service.poll(deadline - System.nanoTime(),
+                                             TimeUnit.NANOSECONDS);
+                if (key == null) {
+                    rescan();
+                    return;
+                }
+                seen = process(key, cookie);
+            }
+        } catch (IOException excp) {
+            rescan();
+        } catch (InterruptedException excp) {
+            Thread.currentThread().interrupt();
+            rescan();
+        } finally {
+            path.toFile().delete();
+        }
+    }
+
+    /** Applies the events of KEY. Returns iff one was the creation of the
+     *  cookie COOKIE. */
+    private boolean process(WatchKey key, String cookie) {
+        boolean seen = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                rescan();
+                continue;
+            }
+            String name = event.context().toString();
+            if (key == _cookieKey) {
+                seen |= name.equals(cookie);
+            } else if (key != _rootKey) {
+                continue;
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                _files.remove(name);
+            } else if (Files.isRegularFile(_root.resolve(name))) {
+                _files.add(name);
+            }
+        }
+        if (!key.reset()) {
+            _broken = true;
+            rescan();
+            return true;
+        }
+        return seen;
+    }
+
+    /** Lists the working directory again. */
+    private void rescan() {
+        _files.clear();
+        List<String> files = Utils.plainFilenamesIn(_root.toFile());
+        if (files != null) {
+            _files.addAll(files);
+        }
+    }
+
+    /** The working directory. */
+    private final Path _root;
+    /** The .gitlet directory, where cookies are made. */
+    private final Path _cookies;
+    /** Delivers the events. */
+    private final WatchService _service;
+    /** Registration of the working directory. */
+    private final WatchKey _rootKey;
+    /** Registration of the .gitlet directory. */
+    private final WatchKey _cookieKey;
+    /** The names of the plain files in the working directory. */
+    private final TreeSet<String> _files = new TreeSet<>();
+    /** Number of the next cookie. */
+    private long _nextCookie;
+    /** True once a directory can no longer be watched. */
+    private boolean _broken;
+}
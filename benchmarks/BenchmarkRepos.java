@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/** Scratch repositories and data shared by the benchmarks.
+ *  @author ryangaray
+ */
+class BenchmarkRepos {
+
+    /** Returns a new initialized repository in a fresh temporary
+     *  directory. */
+    static Repository create() {
+        Repository repo = createEmpty();
+        repo.init();
+        return repo;
+    }
+
+    /** Returns a repository, not yet initialized, in a fresh temporary
+     *  directory. */
+    static Repository createEmpty() {
+        try {
+            return new Repository(
+                Files.createTempDirectory("gitlet-bench").toFile());
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Deletes the working directory of REPO and everything in it. */
+    static void destroy(Repository repo) {
+        try (Stream<Path> paths = Files.walk(repo.root().toPath())) {
+            paths.sorted(Comparator.reverseOrder())
+                .map(Path::toFile).forEach(File::delete);
+        } catch (IOException excp) {
+            throw new IllegalStateException(excp);
+        }
+    }
+
+    /** Returns SIZE pseudo-random printable bytes generated from SEED. */
+    static byte[] randomText(int size, long seed) {
+        Random random = new Random(seed);
+        byte[] text = new byte[size];
+        for (int i = 0; i < size; i += 1) {
+            text[i] = (byte) (i % 64 == 63 ? '\n' : 'a' + random.nextInt(26));
+        }
+        return text;
+    }
+
+    /** Returns a pseudo-random 40-digit hexadecimal ID from RANDOM. */
+    static String randomID(Random random) {
+        StringBuilder id = new StringBuilder();
+        for (int i = 0; i < Utils.UID_LENGTH; i += 1) {
+            id.append(Character.forDigit(random.nextInt(16), 16));
+        }
+        return id.toString();
+    }
+
+    /** Writes CONTENTS to the file named NAME in the working directory of
+     *  REPO. */
+    static void write(Repository repo, String name, byte[] contents) {
+        Utils.writeContents(repo.workingFile(name), contents);
+    }
+}
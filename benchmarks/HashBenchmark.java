@@ -0,0 +1,69 @@
+package gitlet;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures Utils.sha1 and the HashAlgorithms over inputs of various
+ *  sizes.
+ *  @author ryangaray
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+    /** Number of bytes hashed. */
+    @Param({ "64", "4096", "262144", "4194304" })
+    private int _size;
+
+    /** The bytes hashed. */
+    private byte[] _bytes;
+
+    /** The same bytes, as a String. */
+    private String _string;
+
+    /** Generates the input. */
+    @Setup
+    public void setup() {
+        _bytes = BenchmarkRepos.randomText(_size, _size);
+        _string = new String(_bytes);
+    }
+
+    /** Hashes a byte array, as for file contents. */
+    @Benchmark
+    public String sha1Bytes() {
+        return Utils.sha1((Object) _bytes);
+    }
+
+    /** Hashes a String. */
+    @Benchmark
+    public String sha1String() {
+        return Utils.sha1(_string);
+    }
+
+    /** Hashes a byte array to a binary ID with SHA-1. */
+    @Benchmark
+    public ObjectId sha1Binary() {
+        return HashAlgorithm.SHA1.hash(_bytes);
+    }
+
+    /** Hashes a byte array to a binary ID with SHA-256. */
+    @Benchmark
+    public ObjectId sha256Binary() {
+        return HashAlgorithm.SHA256.hash(_bytes);
+    }
+}
@@ -0,0 +1,99 @@
+package gitlet;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures the object-store paths: constructing blobs, building the
+ *  file map of a new commit from the stage, and resolving abbreviated
+ *  commit IDs against stores of various sizes.
+ *  @author ryangaray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObjectStoreBenchmark {
+
+    /** Number of commits in the store, and of files in the parent
+     *  commit and on the stage. */
+    @Param({ "10", "1000", "10000" })
+    private int _count;
+
+    /** Fills a scratch repository with _count commit files, and a parent
+     *  commit and stage with _count files each. */
+    @Setup
+    public void setup() throws IOException {
+        _repo = BenchmarkRepos.create();
+        _tree = new CommitTree(_repo, "benchmark");
+        Random random = new Random(_count);
+        String id = null;
+        for (int i = 0; i < _count; i += 1) {
+            id = BenchmarkRepos.randomID(random);
+            _repo.commitFile(id).createNewFile();
+        }
+        _shortID = id.substring(0, 8);
+        for (int i = 0; i < _count; i += 1) {
+            String name = "f" + i + ".txt";
+            BenchmarkRepos.write(_repo, name, ("file " + i).getBytes());
+            _repo.add(name);
+        }
+        _parent = _repo.commit("parent").getID();
+        for (int i = 0; i < _count; i += 1) {
+            String name = "f" + i + ".txt";
+            BenchmarkRepos.write(_repo, name, ("changed " + i).getBytes());
+            _repo.add(name);
+        }
+        BenchmarkRepos.write(_repo, "blob.txt",
+            BenchmarkRepos.randomText(4096, 1));
+    }
+
+    /** Removes the scratch repository. */
+    @TearDown
+    public void tearDown() {
+        BenchmarkRepos.destroy(_repo);
+    }
+
+    /** Reads, hashes and stores a 4 KiB working file as a blob. */
+    @Benchmark
+    public Blob constructBlob() {
+        return new Blob(_repo, "blob.txt");
+    }
+
+    /** Builds a commit from a parent of _count files and a stage of
+     *  _count changed files. */
+    @Benchmark
+    public CommitNode buildBlobs() {
+        return new CommitNode(_repo, "benchmark", _parent);
+    }
+
+    /** Resolves an 8-digit abbreviation among _count commit files. */
+    @Benchmark
+    public String findCommitID() {
+        return _tree.findCommitID(_shortID);
+    }
+
+    /** The scratch repository. */
+    private Repository _repo;
+    /** A commit tree of _repo. */
+    private CommitTree _tree;
+    /** The ID of the parent commit. */
+    private String _parent;
+    /** An abbreviation of one of the commit files. */
+    private String _shortID;
+}
@@ -0,0 +1,154 @@
+package gitlet;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Builds reproducible synthetic repositories for benchmarking. The same
+ *  seed and shape always give the same sequence of commands, files and
+ *  contents; only the timestamps, and so the commit IDs, differ.
+ *
+ *  A repository starts with one commit of FILES files of FILESIZE bytes,
+ *  then BRANCHES - 1 branches besides master are made from it. Each of
+ *  the following COMMITS commits is made on a randomly chosen branch and
+ *  rewrites a few random files. After every MERGEEVERY commits, another
+ *  random branch is merged into the current one.
+ *
+ *  Usage: java gitlet.RepoGenerator DIR [seed=N] [commits=N] [files=N]
+ *  [fileSize=N] [branches=N] [mergeEvery=N]
+ *  @author ryangaray
+ */
+class RepoGenerator {
+
+    /** A generator of repositories of the given shape, using SEED. */
+    RepoGenerator(long seed, int commits, int files, int fileSize,
+                  int branches, int mergeEvery) {
+        _seed = seed;
+        _commits = commits;
+        _files = files;
+        _fileSize = fileSize;
+        _branches = Math.max(1, branches);
+        _mergeEvery = mergeEvery;
+    }
+
+    /** Generates a repository in the directory named by ARGS[0], with
+     *  the shape given by the key=value pairs in the rest of ARGS. */
+    public static void main(String... args) {
+        if (args.length == 0) {
+            System.out.println("Usage: java gitlet.RepoGenerator DIR "
+                + "[seed=N] [commits=N] [files=N] [fileSize=N] "
+                + "[branches=N] [mergeEvery=N]");
+            return;
+        }
+        long seed = 1;
+        int commits = 100, files = 10, fileSize = 1024, branches = 1;
+        int mergeEvery = 0;
+        for (int i = 1; i < args.length; i += 1) {
+            String[] pair = args[i].split("=", 2);
+            long value = Long.parseLong(pair[1]);
+            switch (pair[0]) {
+            case "seed":
+                seed = value;
+                break;
+            case "commits":
+                commits = (int) value;
+                break;
+            case "files":
+                files = (int) value;
+                break;
+            case "fileSize":
+                fileSize = (int) value;
+                break;
+            case "branches":
+                branches = (int) value;
+                break;
+            case "mergeEvery":
+                mergeEvery = (int) value;
+                break;
+            default:
+                throw new IllegalArgumentException("unknown option "
+                    + pair[0]);
+            }
+        }
+        File dir = new File(args[0]);
+        dir.mkdirs();
+        new RepoGenerator(seed, commits, files, fileSize, branches,
+                          mergeEvery).generate(new Repository(dir));
+    }
+
+    /** Returns the names of the branches of generated repositories. */
+    List<String> branchNames() {
+        List<String> names = new ArrayList<>();
+        names.add("master");
+        for (int i = 1; i < _branches; i += 1) {
+            names.add("branch" + i);
+        }
+        return names;
+    }
+
+    /** Returns the name of the Ith generated file. */
+    static String fileName(int i) {
+        return "file" + i + ".txt";
+    }
+
+    /** Initializes REPO, whose working directory must exist and be empty,
+     *  and fills it. */
+    void generate(Repository repo) {
+        Random random = new Random(_seed);
+        repo.init();
+        for (int i = 0; i < _files; i += 1) {
+            rewrite(repo, random, i);
+        }
+        repo.commit("generated " + _files + " files");
+        List<String> names = branchNames();
+        for (String name : names.subList(1, names.size())) {
+            repo.branch(name);
+        }
+        for (int c = 1; c <= _commits; c += 1) {
+            String branch = names.get(random.nextInt(names.size()));
+            if (!branch.equals(repo.currentBranch())) {
+                repo.checkoutBranch(branch);
+            }
+            int changes = 1 + random.nextInt(Math.min(3, _files));
+            for (int k = 0; k < changes; k += 1) {
+                rewrite(repo, random, random.nextInt(_files));
+            }
+            repo.commit("generated commit " + c);
+            if (_mergeEvery > 0 && c % _mergeEvery == 0 && names.size() > 1) {
+                String other = names.get(random.nextInt(names.size()));
+                try {
+                    repo.merge(other);
+                } catch (GitletException excp) {
+                    /* Nothing to merge, e.g. OTHER is an ancestor. */
+                    continue;
+                }
+            }
+        }
+    }
+
+    /** Gives the Ith file of REPO new contents from RANDOM and stages
+     *  it. */
+    private void rewrite(Repository repo, Random random, int i) {
+        byte[] contents = new byte[_fileSize];
+        for (int b = 0; b < _fileSize; b += 1) {
+            contents[b] = (byte) (b % 64 == 63 ? '\n'
+                                  : 'a' + random.nextInt(26));
+        }
+        Utils.writeContents(repo.workingFile(fileName(i)), contents);
+        repo.add(fileName(i));
+    }
+
+    /** Seed of the pseudo-random choices. */
+    private final long _seed;
+    /** Number of commits after the first. */
+    private final int _commits;
+    /** Number of files. */
+    private final int _files;
+    /** Size of each file in bytes. */
+    private final int _fileSize;
+    /** Number of branches, including master. */
+    private final int _branches;
+    /** Number of commits between merges, or 0 for no merges. */
+    private final int _mergeEvery;
+}
@@ -0,0 +1,177 @@
+package gitlet;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/** Times Gitlet commands on synthetic repositories while sweeping one
+ *  dimension of their shape at a time (commits, files, file size,
+ *  branches and how often they are merged) around a base shape, and
+ *  writes the scaling curves as CSV. Each row gives the shape, the
+ *  command and the median of its timings in milliseconds. A command
+ *  that fails measures only how soon it gave up, so it gets no row and
+ *  is reported on System.err instead. Every measurement opens a fresh
+ *  Repository, so no state is cached between repetitions, but the JIT
+ *  is warm.
+ *
+ *  Usage: java gitlet.ScalingHarness [OUTPUT.csv] [quick]
+ *  @author ryangaray
+ */
+class ScalingHarness {
+
+    /** Number of timed repetitions of each read-only command. */
+    static final int REPEATS = 5;
+
+    /** Seed for all generated repositories. */
+    static final long SEED = 61;
+
+    /** Runs the sweep, writing CSV to the file named by ARGS[0] or to
+     *  System.out. "quick" as ARGS[1] uses a smaller sweep. */
+    public static void main(String... args) throws IOException {
+        boolean quick = args.length > 1 && args[1].equals("quick");
+        PrintStream out = System.out;
+        if (args.length > 0) {
+            out = new PrintStream(Files.newOutputStream(Paths.get(args[0])));
+        }
+        new ScalingHarness(out, quick).run();
+        out.close();
+    }
+
+    /** A harness writing to OUT, using a smaller sweep iff QUICK. */
+    ScalingHarness(PrintStream out, boolean quick) {
+        _out = out;
+        _quick = quick;
+    }
+
+    /** Runs every sweep. */
+    void run() {
+        _out.println("dimension,commits,files,fileSize,branches,"
+                     + "mergeEvery,command,millis");
+        int[] commits = _quick ? new int[] { 10, 50, 100 }
+            : new int[] { 100, 500, 1000, 2000, 5000 };
+        int[] files = _quick ? new int[] { 10, 50 }
+            : new int[] { 10, 100, 1000 };
+        int[] sizes = _quick ? new int[] { 1024, 16384 }
+            : new int[] { 1024, 65536, 1048576 };
+        int[] branches = _quick ? new int[] { 1, 4 }
+            : new int[] { 1, 4, 16, 64 };
+        int[] merges = _quick ? new int[] { 0, 5, 10 }
+            : new int[] { 0, 2, 10, 50 };
+        int baseCommits = commits[1], baseFiles = files[0];
+        int baseSize = sizes[0], baseBranches = branches[1];
+        int baseMerges = 10;
+        for (int n : commits) {
+            measure("commits", n, baseFiles, baseSize, baseBranches,
+                    baseMerges);
+        }
+        for (int n : files) {
+            measure("files", baseCommits, n, baseSize, baseBranches,
+                    baseMerges);
+        }
+        for (int n : sizes) {
+            measure("fileSize", baseCommits, baseFiles, n, baseBranches,
+                    baseMerges);
+        }
+        for (int n : branches) {
+            measure("branches", baseCommits, baseFiles, baseSize, n,
+                    baseMerges);
+        }
+        for (int n : merges) {
+            measure("mergeEvery", baseCommits, baseFiles, baseSize,
+                    baseBranches, n);
+        }
+        _out.flush();
+        System.err.printf("%d commands failed and were left out.%n",
+                          _failures);
+    }
+
+    /** Generates a repository of the given shape (COMMITS, FILES,
+     *  FILESIZE, BRANCHES, merging every MERGEEVERY commits, or never if
+     *  it is 0), times each command on it, and writes one row per command
+     *  that succeeded, labelled DIMENSION. */
+    void measure(String dimension, int commits, int files, int fileSize,
+                 int branches, int mergeEvery) {
+        String shape = dimension + "," + commits + "," + files + ","
+            + fileSize + "," + branches + "," + mergeEvery + ",";
+        Repository repo = BenchmarkRepos.createEmpty();
+        RepoGenerator generator = new RepoGenerator(SEED, commits, files,
+            fileSize, branches, mergeEvery);
+        generator.generate(repo);
+        try {
+            row(shape, "log", repeat(repo, Repository::log));
+            row(shape, "status", repeat(repo, Repository::status));
+            row(shape, "global-log", repeat(repo, Repository::globalLog));
+            row(shape, "find",
+                repeat(repo, r -> r.find("generated commit 1")));
+            String start = new Repository(repo.root()).currentBranch();
+            List<String> names = generator.branchNames();
+            String other = names.get((names.indexOf(start) + 1)
+                                     % names.size());
+            row(shape, "commit", once(repo, r -> {
+                Utils.writeContents(r.workingFile(RepoGenerator.fileName(0)),
+                                    "measured commit\n");
+                r.add(RepoGenerator.fileName(0));
+                r.commit("measured commit");
+            }));
+            if (!other.equals(start)) {
+                row(shape, "checkout", once(repo,
+                    r -> r.checkoutBranch(other)));
+                row(shape, "merge", once(repo, r -> r.merge(start)));
+            }
+        } finally {
+            BenchmarkRepos.destroy(repo);
+        }
+    }
+
+    /** Returns the median time in milliseconds of REPEATS runs of ACTION,
+     *  each on a newly opened copy of REPO, or NaN if any run failed. */
+    private double repeat(Repository repo, Consumer<Repository> action) {
+        double[] times = new double[REPEATS];
+        for (int i = 0; i < REPEATS; i += 1) {
+            times[i] = once(repo, action);
+            if (Double.isNaN(times[i])) {
+                return Double.NaN;
+            }
+        }
+        Arrays.sort(times);
+        return times[REPEATS / 2];
+    }
+
+    /** Returns the time in milliseconds of running ACTION on a newly
+     *  opened copy of REPO, or NaN if it fails with a GitletException,
+     *  whose message is then reported on System.err. */
+    private double once(Repository repo, Consumer<Repository> action) {
+        Repository fresh = new Repository(repo.root());
+        long start = System.nanoTime();
+        try {
+            action.accept(fresh);
+        } catch (GitletException excp) {
+            System.err.println(excp.getMessage());
+            return Double.NaN;
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    /** Writes the row for COMMAND taking MILLIS on SHAPE, unless MILLIS
+     *  is NaN because the command failed. */
+    private void row(String shape, String command, double millis) {
+        if (Double.isNaN(millis)) {
+            _failures += 1;
+            System.err.printf("%s failed on %s; no row written.%n", command,
+                              shape.substring(0, shape.length() - 1));
+            return;
+        }
+        _out.printf("%s%s,%.3f%n", shape, command, millis);
+    }
+
+    /** Where the CSV goes. */
+    private final PrintStream _out;
+    /** True for a smaller sweep. */
+    private final boolean _quick;
+    /** Number of timed commands that failed. */
+    private int _failures;
+}
@@ -0,0 +1,115 @@
+package gitlet;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/** Measures serializing and deserializing commits and blobs, in memory
+ *  and through the files of the object store.
+ *  @author ryangaray
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    /** Number of files tracked by the commit. */
+    @Param({ "1", "100", "10000" })
+    private int _files;
+
+    /** Size in bytes of the blob. */
+    @Param({ "1024", "1048576" })
+    private int _blobSize;
+
+    /** Builds a commit tracking _files files and a blob of _blobSize
+     *  bytes. */
+    @Setup
+    public void setup() {
+        _repo = BenchmarkRepos.create();
+        for (int i = 0; i < _files; i += 1) {
+            String name = "f" + i + ".txt";
+            BenchmarkRepos.write(_repo, name, ("file " + i).getBytes());
+            _repo.add(name);
+        }
+        _commit = _repo.commit("benchmark");
+        _commitFile = _repo.commitFile(_commit.getID());
+        _commitBytes = Utils.serialize(_commit);
+        BenchmarkRepos.write(_repo, "blob.txt",
+            BenchmarkRepos.randomText(_blobSize, 1));
+        _blob = new Blob(_repo, "blob.txt");
+        _blobFile = _repo.objectFile(_blob.getID());
+        _blobBytes = Utils.serialize(_blob);
+    }
+
+    /** Removes the scratch repository. */
+    @TearDown
+    public void tearDown() {
+        BenchmarkRepos.destroy(_repo);
+    }
+
+    /** Serializes a commit in memory. */
+    @Benchmark
+    public byte[] serializeCommit() {
+        return Utils.serialize(_commit);
+    }
+
+    /** Deserializes a commit from memory. */
+    @Benchmark
+    public CommitNode deserializeCommit() {
+        return Utils.deserialize(_commitBytes, CommitNode.class);
+    }
+
+    /** Reads a commit from its file. */
+    @Benchmark
+    public CommitNode readCommit() {
+        return Utils.readObject(_commitFile, CommitNode.class);
+    }
+
+    /** Serializes a blob in memory. */
+    @Benchmark
+    public byte[] serializeBlob() {
+        return Utils.serialize(_blob);
+    }
+
+    /** Deserializes a blob from memory. */
+    @Benchmark
+    public Blob deserializeBlob() {
+        return Utils.deserialize(_blobBytes, Blob.class);
+    }
+
+    /** Reads a blob from its file. */
+    @Benchmark
+    public Blob readBlob() {
+        return Utils.readObject(_blobFile, Blob.class);
+    }
+
+    /** The scratch repository. */
+    private Repository _repo;
+    /** The commit measured. */
+    private CommitNode _commit;
+    /** The file holding _commit. */
+    private File _commitFile;
+    /** The serialized _commit. */
+    private byte[] _commitBytes;
+    /** The blob measured. */
+    private Blob _blob;
+    /** The file holding _blob. */
+    private File _blobFile;
+    /** The serialized _blob. */
+    private byte[] _blobBytes;
+}